@@ -27,6 +27,7 @@ public class DemoApplication extends Application {
         downloadManager = DownloadManagerBuilder
                 .newInstance(this, handler, R.mipmap.ic_launcher_round)
                 .withLogHandle(new DemoLogHandle())
+                .withLogCallerLocation()
                 .withStorageRequirementRules(StorageRequirementRuleFactory.createByteBasedRule(TWO_HUNDRED_MB_IN_BYTES))
                 .build();
     }
@@ -0,0 +1,139 @@
+package com.novoda.downloadmanager;
+
+import android.arch.persistence.room.Room;
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the load-then-write entity path against the targeted UPDATE/DELETE queries
+ * on an in-memory database. Run with {@code ./gradlew library:connectedAndroidTest}
+ * and read the timings from logcat under the {@link #TAG} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RoomBatchDaoBenchmark {
+
+    private static final String TAG = "RoomBatchDaoBenchmark";
+    private static final int BATCHES = 500;
+    private static final int WARM_UP_ROUNDS = 2;
+    private static final int MEASURED_ROUNDS = 5;
+
+    private RoomAppDatabase database;
+    private RoomBatchDao roomBatchDao;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, RoomAppDatabase.class).build();
+        roomBatchDao = database.roomBatchDao();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void statusUpdates() {
+        insertBatches();
+
+        long entityNanos = measure(() -> {
+            for (int i = 0; i < BATCHES; i++) {
+                RoomBatch roomBatch = roomBatchDao.load(batchIdFor(i));
+                roomBatch.status = DownloadBatchStatus.Status.DOWNLOADING.toRawValue();
+                roomBatchDao.update(roomBatch);
+            }
+        });
+        long directNanos = measure(() -> {
+            for (int i = 0; i < BATCHES; i++) {
+                roomBatchDao.updateStatus(batchIdFor(i), DownloadBatchStatus.Status.DOWNLOADING.toRawValue());
+            }
+        });
+
+        report("status update", entityNanos, directNanos);
+        assertEquals(1, roomBatchDao.updateStatus(batchIdFor(0), DownloadBatchStatus.Status.PAUSED.toRawValue()));
+        assertEquals(DownloadBatchStatus.Status.PAUSED.toRawValue(), roomBatchDao.load(batchIdFor(0)).status);
+    }
+
+    @Test
+    public void notificationSeenUpdates() {
+        insertBatches();
+
+        long entityNanos = measure(() -> {
+            for (int i = 0; i < BATCHES; i++) {
+                RoomBatch roomBatch = roomBatchDao.load(batchIdFor(i));
+                roomBatch.notificationSeen = true;
+                roomBatchDao.update(roomBatch);
+            }
+        });
+        long directNanos = measure(() -> {
+            for (int i = 0; i < BATCHES; i++) {
+                roomBatchDao.updateNotificationSeen(batchIdFor(i), true);
+            }
+        });
+
+        report("notification seen update", entityNanos, directNanos);
+        assertEquals(0, roomBatchDao.updateNotificationSeen("unknown", true));
+    }
+
+    @Test
+    public void deletes() {
+        long entityNanos = measure(() -> {
+            insertBatches();
+            for (int i = 0; i < BATCHES; i++) {
+                RoomBatch roomBatch = roomBatchDao.load(batchIdFor(i));
+                roomBatchDao.delete(roomBatch);
+            }
+        });
+        long directNanos = measure(() -> {
+            insertBatches();
+            for (int i = 0; i < BATCHES; i++) {
+                roomBatchDao.delete(batchIdFor(i));
+            }
+        });
+
+        report("delete (including re-insert)", entityNanos, directNanos);
+        assertEquals(0, roomBatchDao.loadAll().size());
+    }
+
+    private long measure(Runnable rounds) {
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            rounds.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            rounds.run();
+        }
+        return (System.nanoTime() - start) / MEASURED_ROUNDS;
+    }
+
+    private void report(String operation, long entityNanos, long directNanos) {
+        Log.i(TAG, operation + " of " + BATCHES + " batches"
+                + ", load + entity write: " + entityNanos / 1000 + "us"
+                + ", direct query: " + directNanos / 1000 + "us");
+    }
+
+    private void insertBatches() {
+        for (int i = 0; i < BATCHES; i++) {
+            RoomBatch roomBatch = new RoomBatch();
+            roomBatch.id = batchIdFor(i);
+            roomBatch.title = "title " + i;
+            roomBatch.status = DownloadBatchStatus.Status.QUEUED.toRawValue();
+            roomBatch.storageRoot = "/storage/root";
+            roomBatchDao.insert(roomBatch);
+        }
+    }
+
+    private static String batchIdFor(int index) {
+        return "batch_" + index;
+    }
+}
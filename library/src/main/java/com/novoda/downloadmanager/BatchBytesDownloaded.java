@@ -0,0 +1,32 @@
+package com.novoda.downloadmanager;
+
+/**
+ * Tracks the bytes downloaded for each file of a batch by position, keeping a running total
+ * so that every progress update costs the same regardless of the number of files.
+ *
+ * Files of a batch are downloaded one after the other on the batch worker, which is the only writer.
+ */
+final class BatchBytesDownloaded {
+
+    private final long[] bytesDownloadedPerFile;
+
+    private volatile long totalBytesDownloaded;
+
+    BatchBytesDownloaded(int fileCount) {
+        this.bytesDownloadedPerFile = new long[fileCount];
+    }
+
+    /**
+     * @return the total bytes downloaded for the batch after applying the update.
+     */
+    long update(int fileIndex, long bytesDownloaded) {
+        long delta = bytesDownloaded - bytesDownloadedPerFile[fileIndex];
+        bytesDownloadedPerFile[fileIndex] = bytesDownloaded;
+        totalBytesDownloaded += delta;
+        return totalBytesDownloaded;
+    }
+
+    long total() {
+        return totalBytesDownloaded;
+    }
+}
@@ -41,7 +41,7 @@ final class CallbackThrottleCreator {
     FileCallbackThrottle create() {
         switch (type) {
             case THROTTLE_BY_TIME:
-                ActionScheduler actionScheduler = SchedulerFactory.createFixedRateTimerScheduler(timeUnit.toMillis(frequency));
+                ActionScheduler actionScheduler = SchedulerFactory.createFixedRateScheduler(timeUnit.toMillis(frequency));
                 return new FileCallbackThrottleByTime(actionScheduler);
             case THROTTLE_BY_PROGRESS_INCREASE:
                 return new FileCallbackThrottleByProgressIncrease();
@@ -0,0 +1,13 @@
+package com.novoda.downloadmanager;
+
+import android.os.SystemClock;
+
+/**
+ * Monotonic time source, so that time based decisions can be driven from tests.
+ */
+interface Clock {
+
+    Clock ELAPSED_REALTIME = SystemClock::elapsedRealtime;
+
+    long elapsedTimeInMillis();
+}
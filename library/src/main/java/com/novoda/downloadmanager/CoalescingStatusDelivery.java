@@ -0,0 +1,64 @@
+package com.novoda.downloadmanager;
+
+import android.os.Handler;
+
+/**
+ * Merges the statuses reported by every batch and hands them to the {@link DownloadBatchStatusCallback}
+ * on the handler thread in a single post, at most once per drain interval.
+ *
+ * Only the latest status of each batch pending at drain time is delivered, in the order the batches first
+ * reported since the previous drain.
+ *
+ * This is the only place statuses are conflated on their way to the handler thread. Each batch keeps a
+ * reusable slot in {@link PendingStatuses} and every drain posts the same runnable, so once a batch has
+ * reported, its progress allocates nothing here, whether or not a drain ran in between.
+ */
+final class CoalescingStatusDelivery {
+
+    static final long FRAME_INTERVAL_IN_MILLIS = 16;
+
+    private final Handler handler;
+    private final Clock clock;
+    private final long drainIntervalInMillis;
+    private final DownloadBatchStatusCallback delivery;
+    private final Object lock = new Object();
+    private final Runnable drain = this::drain;
+    private final PendingStatuses pendingStatuses = new PendingStatuses();
+
+    private boolean drainPosted;
+    private long lastDrainInMillis;
+
+    CoalescingStatusDelivery(Handler handler, Clock clock, long drainIntervalInMillis, DownloadBatchStatusCallback delivery) {
+        this.handler = handler;
+        this.clock = clock;
+        this.drainIntervalInMillis = drainIntervalInMillis;
+        this.delivery = delivery;
+        this.lastDrainInMillis = clock.elapsedTimeInMillis() - drainIntervalInMillis;
+    }
+
+    void submit(DownloadBatchStatus downloadBatchStatus) {
+        long delayInMillis;
+        synchronized (lock) {
+            pendingStatuses.put(downloadBatchStatus);
+            if (drainPosted) {
+                return;
+            }
+            drainPosted = true;
+            delayInMillis = Math.max(0, lastDrainInMillis + drainIntervalInMillis - clock.elapsedTimeInMillis());
+        }
+        handler.postDelayed(drain, delayInMillis);
+    }
+
+    /**
+     * Runs on the handler thread only, so a single drain delivers at a time.
+     */
+    private void drain() {
+        synchronized (lock) {
+            pendingStatuses.moveToDraining();
+            drainPosted = false;
+            lastDrainInMillis = clock.elapsedTimeInMillis();
+        }
+
+        pendingStatuses.deliverDraining(delivery);
+    }
+}
@@ -0,0 +1,57 @@
+package com.novoda.downloadmanager;
+
+import java.util.UUID;
+
+/**
+ * Maps a {@link CompletedDownloadBatch} onto the batch and file records of a {@link DownloadsPersistence}.
+ */
+final class CompletedDownloadBatchWriter {
+
+    private static final boolean NOTIFICATION_SEEN = true;
+
+    private CompletedDownloadBatchWriter() {
+        // Uses static factory methods.
+    }
+
+    static void writeTo(DownloadsPersistence persistence, CompletedDownloadBatch completedDownloadBatch) {
+        DownloadBatchId downloadBatchId = completedDownloadBatch.downloadBatchId();
+        DownloadBatchTitle downloadBatchTitle = completedDownloadBatch.downloadBatchTitle();
+        DownloadBatchStatus.Status downloadBatchStatus = DownloadBatchStatus.Status.DOWNLOADED;
+        long downloadedDateTimeInMillis = completedDownloadBatch.downloadedDateTimeInMillis();
+        StorageRoot storageRoot = completedDownloadBatch.storageRoot();
+
+        DownloadsBatchPersisted persistedBatch = new LiteDownloadsBatchPersisted(
+                downloadBatchTitle,
+                downloadBatchId,
+                downloadBatchStatus,
+                downloadedDateTimeInMillis,
+                NOTIFICATION_SEEN,
+                storageRoot.path()
+        );
+        persistence.persistBatch(persistedBatch);
+
+        for (CompletedDownloadFile completedDownloadFile : completedDownloadBatch.completedDownloadFiles()) {
+            String url = completedDownloadFile.originalNetworkAddress();
+
+            String rawDownloadFileId = rawFileIdFrom(completedDownloadBatch.downloadBatchTitle(), completedDownloadFile);
+            DownloadFileId downloadFileId = DownloadFileIdCreator.createFrom(rawDownloadFileId);
+
+            DownloadsFilePersisted persistedFile = new LiteDownloadsFilePersisted(
+                    downloadBatchId,
+                    downloadFileId,
+                    new LiteFilePath(completedDownloadFile.newFileLocation()),
+                    completedDownloadFile.fileSize().totalSize(),
+                    url
+            );
+            persistence.persistFile(persistedFile);
+        }
+    }
+
+    private static String rawFileIdFrom(DownloadBatchTitle batch, CompletedDownloadFile completedDownloadFile) {
+        if (completedDownloadFile.fileId() == null || completedDownloadFile.fileId().isEmpty()) {
+            return batch.asString() + UUID.randomUUID();
+        } else {
+            return completedDownloadFile.fileId();
+        }
+    }
+}
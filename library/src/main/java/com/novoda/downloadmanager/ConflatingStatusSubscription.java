@@ -0,0 +1,157 @@
+package com.novoda.downloadmanager;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Delivers the matching {@link DownloadBatchStatus} changes to a {@link DownloadBatchStatusSubscriber}
+ * on its {@link Executor}, never more than it requested.
+ *
+ * Changes offered while there is no demand are kept as the latest status per batch, in the order
+ * the batches first changed, so memory is bounded by the number of batches rather than the number of changes.
+ * A run rejected by the executor, including the one calling {@link DownloadBatchStatusSubscriber#onSubscribe},
+ * is retried on the next offered change or request.
+ */
+final class ConflatingStatusSubscription implements DownloadBatchStatusSubscription, Runnable {
+
+    private final Executor executor;
+    private final DownloadBatchStatusSubscriber subscriber;
+    private final Matcher matcher;
+    private final Map<DownloadBatchId, DownloadBatchStatus> pendingStatuses = new LinkedHashMap<>();
+    private final Object lock = new Object();
+
+    private volatile boolean cancelled;
+    private boolean subscribed;
+    private boolean running;
+    private long demand;
+
+    static ConflatingStatusSubscription subscribe(Executor executor, DownloadBatchStatusSubscriber subscriber, Matcher matcher) {
+        ConflatingStatusSubscription subscription = new ConflatingStatusSubscription(executor, subscriber, matcher);
+        subscription.running = true;
+        subscription.execute();
+        return subscription;
+    }
+
+    private ConflatingStatusSubscription(Executor executor, DownloadBatchStatusSubscriber subscriber, Matcher matcher) {
+        this.executor = executor;
+        this.subscriber = subscriber;
+        this.matcher = matcher;
+    }
+
+    /**
+     * @return false once cancelled, so that the subscription can be dropped.
+     */
+    boolean offer(DownloadBatchStatus downloadBatchStatus) {
+        if (cancelled) {
+            return false;
+        }
+
+        boolean matches = matcher.matches(downloadBatchStatus);
+        synchronized (lock) {
+            if (matches) {
+                pendingStatuses.put(downloadBatchStatus.getDownloadBatchId(), downloadBatchStatus);
+            } else {
+                pendingStatuses.remove(downloadBatchStatus.getDownloadBatchId());
+            }
+            if (!matches || !scheduleIfNeeded()) {
+                return true;
+            }
+        }
+        execute();
+        return true;
+    }
+
+    @Override
+    public void request(long count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Requested count must be positive but was " + count);
+        }
+
+        synchronized (lock) {
+            demand = demand > Long.MAX_VALUE - count ? Long.MAX_VALUE : demand + count;
+            if (!scheduleIfNeeded()) {
+                return;
+            }
+        }
+        execute();
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        synchronized (lock) {
+            pendingStatuses.clear();
+        }
+    }
+
+    @Override
+    public void run() {
+        boolean subscribing;
+        synchronized (lock) {
+            subscribing = !subscribed;
+            subscribed = true;
+        }
+        if (subscribing) {
+            subscriber.onSubscribe(this);
+        }
+
+        while (true) {
+            DownloadBatchStatus downloadBatchStatus;
+            synchronized (lock) {
+                if (cancelled || demand == 0 || pendingStatuses.isEmpty()) {
+                    running = false;
+                    return;
+                }
+                downloadBatchStatus = takeFirstPendingStatus();
+                if (demand != Long.MAX_VALUE) {
+                    demand--;
+                }
+            }
+            subscriber.onNext(downloadBatchStatus);
+        }
+    }
+
+    private boolean scheduleIfNeeded() {
+        if (running || cancelled || subscribed && (demand == 0 || pendingStatuses.isEmpty())) {
+            return false;
+        }
+        running = true;
+        return true;
+    }
+
+    private void execute() {
+        try {
+            executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            synchronized (lock) {
+                running = false;
+            }
+            Logger.e(e, "Executor rejected the status subscription");
+        }
+    }
+
+    private DownloadBatchStatus takeFirstPendingStatus() {
+        Iterator<DownloadBatchStatus> iterator = pendingStatuses.values().iterator();
+        DownloadBatchStatus downloadBatchStatus = iterator.next();
+        iterator.remove();
+        return downloadBatchStatus;
+    }
+
+    static Matcher forBatch(DownloadBatchId downloadBatchId) {
+        return downloadBatchStatus -> downloadBatchStatus.getDownloadBatchId().equals(downloadBatchId);
+    }
+
+    static Matcher withStatus(DownloadBatchStatus.Status status) {
+        return downloadBatchStatus -> downloadBatchStatus.status() == status;
+    }
+
+    interface Matcher {
+
+        Matcher ALL_BATCHES = downloadBatchStatus -> true;
+
+        boolean matches(DownloadBatchStatus downloadBatchStatus);
+    }
+}
@@ -1,18 +1,73 @@
 package com.novoda.downloadmanager;
 
+import com.novoda.merlin.Disconnectable;
 import com.novoda.merlin.MerlinsBeard;
 
-class ConnectionChecker {
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers whether downloads may continue on the current connection.
+ *
+ * Losing the connection only takes effect once it has been lost for longer than the hold window,
+ * whereas regaining it takes effect immediately. Running transfers therefore ride out short drops,
+ * e.g. flapping Wi-Fi, instead of being stopped and restarted from scratch.
+ *
+ * The window starts when the allowed connection is lost, as reported by Merlin or first observed by a check,
+ * whichever comes first. Moving to a connection of a type that is not allowed takes effect immediately.
+ */
+class ConnectionChecker implements Disconnectable {
+
+    private static final long DEFAULT_HOLD_WINDOW_IN_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    private static final long CONNECTION_NOT_LOST = -1;
 
     private final MerlinsBeard merlinsBeard;
-    private ConnectionType allowedConnectionType;
+    private final Clock clock;
+    private final long holdWindowInMillis;
+    private final AtomicLong connectionLostTimeInMillis = new AtomicLong(CONNECTION_NOT_LOST);
+
+    private volatile ConnectionType allowedConnectionType;
+    private volatile boolean connectedWithAllowedType;
 
     ConnectionChecker(MerlinsBeard merlinsBeard, ConnectionType allowedConnectionType) {
+        this(merlinsBeard, allowedConnectionType, Clock.ELAPSED_REALTIME, DEFAULT_HOLD_WINDOW_IN_MILLIS);
+    }
+
+    ConnectionChecker(MerlinsBeard merlinsBeard, ConnectionType allowedConnectionType, Clock clock, long holdWindowInMillis) {
         this.merlinsBeard = merlinsBeard;
         this.allowedConnectionType = allowedConnectionType;
+        this.clock = clock;
+        this.holdWindowInMillis = holdWindowInMillis;
     }
 
     boolean isAllowedToDownload() {
+        if (isConnectedWithAllowedType()) {
+            connectedWithAllowedType = true;
+            connectionLostTimeInMillis.set(CONNECTION_NOT_LOST);
+            return true;
+        }
+
+        if (!connectedWithAllowedType || merlinsBeard.isConnected()) {
+            connectedWithAllowedType = false;
+            return false;
+        }
+
+        markConnectionLost();
+        return clock.elapsedTimeInMillis() - connectionLostTimeInMillis.get() < holdWindowInMillis;
+    }
+
+    @Override
+    public void onDisconnect() {
+        if (connectedWithAllowedType) {
+            markConnectionLost();
+        }
+    }
+
+    private void markConnectionLost() {
+        connectionLostTimeInMillis.compareAndSet(CONNECTION_NOT_LOST, clock.elapsedTimeInMillis());
+    }
+
+    private boolean isConnectedWithAllowedType() {
         switch (allowedConnectionType) {
             case UNMETERED:
                 return merlinsBeard.isConnectedToWifi();
@@ -25,5 +80,7 @@ class ConnectionChecker {
 
     void updateAllowedConnectionType(ConnectionType allowedConnectionType) {
         this.allowedConnectionType = allowedConnectionType;
+        connectedWithAllowedType = false;
+        connectionLostTimeInMillis.set(CONNECTION_NOT_LOST);
     }
 }
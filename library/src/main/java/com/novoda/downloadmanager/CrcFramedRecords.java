@@ -0,0 +1,83 @@
+package com.novoda.downloadmanager;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Frames records as {@code [length][crc32][payload]} so that a torn or corrupted tail,
+ * e.g. from the process dying mid-write, can be detected and discarded on read.
+ */
+final class CrcFramedRecords {
+
+    private static final int FRAME_HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 1024 * 1024;
+    private static final int READ_BUFFER_BYTES = 16 * 1024;
+
+    interface RecordConsumer {
+        void onRecord(byte[] record) throws IOException;
+    }
+
+    private CrcFramedRecords() {
+        // Uses static factory methods.
+    }
+
+    static int write(DataOutputStream out, byte[] record) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        out.writeInt(record.length);
+        out.writeInt((int) crc.getValue());
+        out.write(record);
+        return FRAME_HEADER_BYTES + record.length;
+    }
+
+    /**
+     * Reads every intact record from the given file, stopping at the first incomplete or corrupt frame.
+     *
+     * @return the length in bytes of the valid prefix of the file.
+     */
+    static long read(File file, RecordConsumer consumer) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+
+        long validLength = 0;
+        try (InputStream fileStream = new FileInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(fileStream, READ_BUFFER_BYTES))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] record = readFrame(in, crc);
+                if (record == null) {
+                    return validLength;
+                }
+                consumer.onRecord(record);
+                validLength += FRAME_HEADER_BYTES + record.length;
+            }
+        }
+    }
+
+    private static byte[] readFrame(DataInputStream in, CRC32 crc) throws IOException {
+        try {
+            int length = in.readInt();
+            int expectedCrc = in.readInt();
+            if (length < 0 || length > MAX_RECORD_BYTES) {
+                return null;
+            }
+
+            byte[] record = new byte[length];
+            in.readFully(record);
+
+            crc.reset();
+            crc.update(record, 0, length);
+            return (int) crc.getValue() == expectedCrc ? record : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+}
@@ -4,7 +4,6 @@ import android.support.annotation.Nullable;
 import android.support.annotation.WorkerThread;
 
 import java.util.List;
-import java.util.Map;
 
 import static com.novoda.downloadmanager.DownloadBatchStatus.Status.DELETED;
 import static com.novoda.downloadmanager.DownloadBatchStatus.Status.DELETING;
@@ -22,28 +21,33 @@ class DownloadBatch {
     private static final int ZERO_BYTES = 0;
     private static final String STATUS = "status";
 
-    private final Map<DownloadFileId, Long> fileBytesDownloadedMap;
+    private final BatchBytesDownloaded batchBytesDownloaded;
     private final InternalDownloadBatchStatus downloadBatchStatus;
     private final List<DownloadFile> downloadFiles;
     private final DownloadsBatchPersistence downloadsBatchPersistence;
     private final FileCallbackThrottle fileCallbackThrottle;
     private final ConnectionChecker connectionChecker;
+    private final DownloadFile.Callback[] fileDownloadCallbacks;
 
     private long totalBatchSizeBytes;
     private DownloadBatchStatusCallback callback;
 
     DownloadBatch(InternalDownloadBatchStatus internalDownloadBatchStatus,
                   List<DownloadFile> downloadFiles,
-                  Map<DownloadFileId, Long> fileBytesDownloadedMap,
+                  BatchBytesDownloaded batchBytesDownloaded,
                   DownloadsBatchPersistence downloadsBatchPersistence,
                   FileCallbackThrottle fileCallbackThrottle,
                   ConnectionChecker connectionChecker) {
         this.downloadFiles = downloadFiles;
-        this.fileBytesDownloadedMap = fileBytesDownloadedMap;
+        this.batchBytesDownloaded = batchBytesDownloaded;
         this.downloadBatchStatus = internalDownloadBatchStatus;
         this.downloadsBatchPersistence = downloadsBatchPersistence;
         this.fileCallbackThrottle = fileCallbackThrottle;
         this.connectionChecker = connectionChecker;
+        this.fileDownloadCallbacks = new DownloadFile.Callback[downloadFiles.size()];
+        for (int fileIndex = 0; fileIndex < fileDownloadCallbacks.length; fileIndex++) {
+            fileDownloadCallbacks[fileIndex] = new FileDownloadCallback(fileIndex);
+        }
     }
 
     void setCallback(DownloadBatchStatusCallback callback) {
@@ -53,10 +57,10 @@ class DownloadBatch {
 
     void download() {
         String rawBatchId = downloadBatchStatus.getDownloadBatchId().rawId();
-        Logger.v("start sync download " + rawBatchId + ", " + STATUS + " " + downloadBatchStatus.status());
+        Logger.v(() -> "start sync download " + rawBatchId + ", " + STATUS + " " + downloadBatchStatus.status());
 
         if (shouldAbortStartingBatch(connectionChecker, callback, downloadBatchStatus, downloadsBatchPersistence)) {
-            Logger.v("abort starting download " + rawBatchId + ", " + STATUS + " " + downloadBatchStatus.status());
+            Logger.v(() -> "abort starting download " + rawBatchId + ", " + STATUS + " " + downloadBatchStatus.status());
             return;
         }
 
@@ -64,20 +68,20 @@ class DownloadBatch {
 
         updateTotalSize();
 
-        Logger.v("batch " + downloadBatchStatus.getDownloadBatchId().rawId()
+        Logger.v(() -> "batch " + downloadBatchStatus.getDownloadBatchId().rawId()
                          + " " + STATUS + " " + downloadBatchStatus.status()
                          + " totalBatchSize " + totalBatchSizeBytes);
 
         if (shouldAbortAfterGettingTotalBatchSize(downloadBatchStatus, downloadsBatchPersistence, callback, totalBatchSizeBytes)) {
-            Logger.v("abort after getting total batch size download " + rawBatchId + ", " + STATUS + " " + downloadBatchStatus.status());
+            Logger.v(() -> "abort after getting total batch size download " + rawBatchId + ", " + STATUS + " " + downloadBatchStatus.status());
             return;
         }
 
-        for (DownloadFile downloadFile : downloadFiles) {
+        for (int fileIndex = 0; fileIndex < downloadFiles.size(); fileIndex++) {
             if (batchCannotContinue(downloadBatchStatus, connectionChecker, downloadsBatchPersistence, callback)) {
                 break;
             }
-            downloadFile.download(fileDownloadCallback);
+            downloadFiles.get(fileIndex).download(fileDownloadCallbacks[fileIndex]);
         }
 
         if (networkError(downloadBatchStatus)) {
@@ -87,40 +91,38 @@ class DownloadBatch {
         deleteBatchIfNeeded(downloadBatchStatus, downloadsBatchPersistence, callback);
         notifyCallback(callback, downloadBatchStatus);
         fileCallbackThrottle.stopUpdates();
-        Logger.v("end sync download " + rawBatchId);
+        Logger.v(() -> "end sync download " + rawBatchId);
     }
 
     private static boolean shouldAbortStartingBatch(ConnectionChecker connectionChecker,
                                                     DownloadBatchStatusCallback callback,
                                                     InternalDownloadBatchStatus downloadBatchStatus,
                                                     DownloadsBatchPersistence downloadsBatchPersistence) {
-        // WARNING: do not extract downloadBatchStatus.status() as a local variable, this will
-        // invalidate the checks when a batch is deleted from the main thread, as this code
-        // runs in a thread and its status can change at any point.
-        // deleteBatchIfNeeded() is an expensive task that will take few milliseconds, after that
-        // time the status might be different
-        if (downloadBatchStatus.status() == DELETED) {
+        // A status read here may be stale by the time it is acted upon, the transitions themselves reject
+        // any move that would override a concurrent pause or delete.
+        DownloadBatchStatus.Status status = downloadBatchStatus.status();
+        if (status == DELETED) {
             return true;
         }
 
-        if (downloadBatchStatus.status() == DELETING) {
+        if (status == DELETING) {
             deleteBatchIfNeeded(downloadBatchStatus, downloadsBatchPersistence, callback);
             notifyCallback(callback, downloadBatchStatus);
             return true;
         }
 
-        if (downloadBatchStatus.status() == PAUSED) {
+        if (status == PAUSED) {
             notifyCallback(callback, downloadBatchStatus);
             return true;
         }
 
-        if (connectionNotAllowedForDownload(connectionChecker, downloadBatchStatus.status())) {
+        if (connectionNotAllowedForDownload(connectionChecker, status)) {
             processNetworkError(downloadBatchStatus, callback, downloadsBatchPersistence);
             notifyCallback(callback, downloadBatchStatus);
             return true;
         }
 
-        if (downloadBatchStatus.status() == DOWNLOADED) {
+        if (status == DOWNLOADED) {
             notifyCallback(callback, downloadBatchStatus);
             return true;
         }
@@ -131,9 +133,8 @@ class DownloadBatch {
     private static void deleteBatchIfNeeded(InternalDownloadBatchStatus downloadBatchStatus,
                                             DownloadsBatchPersistence downloadsBatchPersistence,
                                             DownloadBatchStatusCallback callback) {
-        if (downloadBatchStatus.status() == DELETING) {
-            Logger.v("sync delete and mark as deleted batch " + downloadBatchStatus.getDownloadBatchId().rawId());
-            downloadBatchStatus.markAsDeleted();
+        if (downloadBatchStatus.markAsDeleted()) {
+            Logger.v(() -> "sync delete and mark as deleted batch " + downloadBatchStatus.getDownloadBatchId().rawId());
             downloadsBatchPersistence.deleteSync(downloadBatchStatus);
             notifyCallback(callback, downloadBatchStatus);
         }
@@ -152,14 +153,14 @@ class DownloadBatch {
     private static void processNetworkError(InternalDownloadBatchStatus downloadBatchStatus,
                                             DownloadBatchStatusCallback callback,
                                             DownloadsBatchPersistence downloadsBatchPersistence) {
-        if (downloadBatchStatus.status() == DELETING) {
-            Logger.v("abort processNetworkError, the batch " + downloadBatchStatus.getDownloadBatchId().rawId() + " is deleting");
+        if (!downloadBatchStatus.markAsWaitingForNetwork(downloadsBatchPersistence)) {
+            Logger.v(() -> "abort processNetworkError, the batch " + downloadBatchStatus.getDownloadBatchId().rawId()
+                    + " is " + downloadBatchStatus.status());
             return;
         }
-        downloadBatchStatus.markAsWaitingForNetwork(downloadsBatchPersistence);
         notifyCallback(callback, downloadBatchStatus);
         Logger.v(
-                "scheduleRecovery for batch "
+                () -> "scheduleRecovery for batch "
                         + downloadBatchStatus.getDownloadBatchId().rawId()
                         + ", "
                         + STATUS
@@ -171,9 +172,8 @@ class DownloadBatch {
     private static void markAsDownloadingIfNeeded(InternalDownloadBatchStatus downloadBatchStatus,
                                                   DownloadsBatchPersistence downloadsBatchPersistence,
                                                   DownloadBatchStatusCallback callback) {
-        if (downloadBatchStatus.status() != DOWNLOADED) {
-            Logger.v("mark " + downloadBatchStatus.getDownloadBatchId().rawId() + " from " + downloadBatchStatus.status() + " to DOWNLOADING");
-            downloadBatchStatus.markAsDownloading(downloadsBatchPersistence);
+        if (downloadBatchStatus.markAsDownloading(downloadsBatchPersistence)) {
+            Logger.v(() -> "marked " + downloadBatchStatus.getDownloadBatchId().rawId() + " as DOWNLOADING");
             notifyCallback(callback, downloadBatchStatus);
         }
     }
@@ -209,19 +209,26 @@ class DownloadBatch {
         DownloadBatchStatus.Status status = downloadBatchStatus.status();
 
         if (connectionNotAllowedForDownload(connectionChecker, status)) {
-            downloadBatchStatus.markAsWaitingForNetwork(downloadsBatchPersistence);
-            notifyCallback(callback, downloadBatchStatus);
+            if (downloadBatchStatus.markAsWaitingForNetwork(downloadsBatchPersistence)) {
+                notifyCallback(callback, downloadBatchStatus);
+            }
             return true;
         } else {
             return status == ERROR || status == DELETING || status == DELETED || status == PAUSED || status == WAITING_FOR_NETWORK;
         }
     }
 
-    private final DownloadFile.Callback fileDownloadCallback = new DownloadFile.Callback() {
+    private final class FileDownloadCallback implements DownloadFile.Callback {
+
+        private final int fileIndex;
+
+        FileDownloadCallback(int fileIndex) {
+            this.fileIndex = fileIndex;
+        }
+
         @Override
         public void onUpdate(InternalDownloadFileStatus downloadFileStatus) {
-            fileBytesDownloadedMap.put(downloadFileStatus.downloadFileId(), downloadFileStatus.bytesDownloaded());
-            long currentBytesDownloaded = getBytesDownloadedFrom(fileBytesDownloadedMap);
+            long currentBytesDownloaded = batchBytesDownloaded.update(fileIndex, downloadFileStatus.bytesDownloaded());
             downloadBatchStatus.updateDownloaded(currentBytesDownloaded);
 
             if (currentBytesDownloaded > totalBatchSizeBytes) {
@@ -245,21 +252,9 @@ class DownloadBatch {
 
             fileCallbackThrottle.update(downloadBatchStatus);
         }
-    };
-
-    private static long getBytesDownloadedFrom(Map<DownloadFileId, Long> fileBytesDownloadedMap) {
-        long bytesDownloaded = 0;
-        for (Map.Entry<DownloadFileId, Long> entry : fileBytesDownloadedMap.entrySet()) {
-            bytesDownloaded += entry.getValue();
-        }
-        return bytesDownloaded;
     }
 
     private static boolean networkError(InternalDownloadBatchStatus downloadBatchStatus) {
-        if (downloadBatchStatus.status() == DELETING) {
-            Logger.v("abort networkError check because the batch " + downloadBatchStatus.getDownloadBatchId().rawId() + " is deleting");
-            return false;
-        }
         DownloadBatchStatus.Status status = downloadBatchStatus.status();
         if (status == WAITING_FOR_NETWORK) {
             return true;
@@ -270,13 +265,16 @@ class DownloadBatch {
         return false;
     }
 
+    boolean isWaitingForNetworkRecovery() {
+        return networkError(downloadBatchStatus);
+    }
+
     void pause() {
-        Logger.v("pause batch " + downloadBatchStatus.getDownloadBatchId().rawId() + ", " + STATUS + " " + downloadBatchStatus.status());
+        Logger.v(() -> "pause batch " + downloadBatchStatus.getDownloadBatchId().rawId() + ", " + STATUS + " " + downloadBatchStatus.status());
         DownloadBatchStatus.Status status = downloadBatchStatus.status();
-        if (status == PAUSED || status == DOWNLOADED) {
+        if (status == PAUSED || status == DOWNLOADED || !downloadBatchStatus.markAsPaused(downloadsBatchPersistence)) {
             return;
         }
-        downloadBatchStatus.markAsPaused(downloadsBatchPersistence);
         notifyCallback(callback, downloadBatchStatus);
 
         for (DownloadFile downloadFile : downloadFiles) {
@@ -297,10 +295,9 @@ class DownloadBatch {
 
     void resume() {
         DownloadBatchStatus.Status status = downloadBatchStatus.status();
-        if (status == QUEUED || status == DOWNLOADING || status == DOWNLOADED) {
+        if (status == QUEUED || status == DOWNLOADING || status == DOWNLOADED || !downloadBatchStatus.markAsQueued(downloadsBatchPersistence)) {
             return;
         }
-        downloadBatchStatus.markAsQueued(downloadsBatchPersistence);
         notifyCallback(callback, downloadBatchStatus);
         for (DownloadFile downloadFile : downloadFiles) {
             downloadFile.resume();
@@ -308,14 +305,14 @@ class DownloadBatch {
     }
 
     void delete() {
-        DownloadBatchStatus.Status status = downloadBatchStatus.status();
-        if (status == DELETING || status == DELETED) {
-            Logger.v("abort delete batch " + downloadBatchStatus.getDownloadBatchId().rawId() + " because the " + STATUS + " is " + status);
+        DownloadBatchStatus.Status status = downloadBatchStatus.markAsDeleting();
+        if (status == null) {
+            Logger.v(() -> "abort delete batch " + downloadBatchStatus.getDownloadBatchId().rawId()
+                             + " because the " + STATUS + " is " + downloadBatchStatus.status());
             return;
         }
 
-        downloadBatchStatus.markAsDeleting();
-        Logger.v("delete request for batch " + downloadBatchStatus.getDownloadBatchId().rawId()
+        Logger.v(() -> "delete request for batch " + downloadBatchStatus.getDownloadBatchId().rawId()
                          + ", " + STATUS + " " + downloadBatchStatus.status()
                          + ", should be deleting");
         notifyCallback(callback, downloadBatchStatus);
@@ -325,15 +322,16 @@ class DownloadBatch {
         }
 
         if (status == PAUSED || status == DOWNLOADED || status == WAITING_FOR_NETWORK || status == ERROR) {
-            Logger.v("delete async paused or downloaded batch " + downloadBatchStatus.getDownloadBatchId().rawId());
+            Logger.v(() -> "delete async paused or downloaded batch " + downloadBatchStatus.getDownloadBatchId().rawId());
             downloadsBatchPersistence.deleteAsync(downloadBatchStatus, downloadBatchId -> {
-                Logger.v("delete paused or downloaded mark as deleted: " + downloadBatchId.rawId());
-                downloadBatchStatus.markAsDeleted();
-                notifyCallback(callback, downloadBatchStatus);
+                if (downloadBatchStatus.markAsDeleted()) {
+                    Logger.v(() -> "delete paused or downloaded mark as deleted: " + downloadBatchId.rawId());
+                    notifyCallback(callback, downloadBatchStatus);
+                }
             });
         }
 
-        Logger.v("delete request for batch end " + downloadBatchStatus.getDownloadBatchId().rawId()
+        Logger.v(() -> "delete request for batch end " + downloadBatchStatus.getDownloadBatchId().rawId()
                          + ", " + STATUS + ": " + downloadBatchStatus.status()
                          + ", should be deleting");
     }
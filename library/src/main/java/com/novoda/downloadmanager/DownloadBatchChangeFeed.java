@@ -0,0 +1,153 @@
+package com.novoda.downloadmanager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import static com.novoda.downloadmanager.DownloadBatchStatus.Status.DELETED;
+
+/**
+ * Numbers every recorded {@link DownloadBatchStatus} change with a monotonic version and keeps only the
+ * latest change of each batch, so the changes since a version cost time proportional to the number of
+ * batches that changed rather than the number of batches held.
+ *
+ * The latest changes are linked in version order. Recording a batch already in the feed moves its change
+ * to the newest end, so steady progress reports allocate nothing.
+ *
+ * Deleted batches stay in the feed so that clients can drop them, up to a limit. Once the oldest deletion
+ * is evicted, clients asking from an earlier version receive a full snapshot instead.
+ */
+final class DownloadBatchChangeFeed {
+
+    static final int DEFAULT_MAX_RETAINED_DELETIONS = 128;
+
+    private final int maxRetainedDeletions;
+    private final Map<DownloadBatchId, Change> latestChanges = new HashMap<>();
+    private final Queue<RetainedDeletion> retainedDeletions = new ArrayDeque<>();
+    private final Object lock = new Object();
+
+    private Change oldestChange;
+    private Change newestChange;
+    private long latestVersion;
+    private long oldestCompleteVersion;
+
+    DownloadBatchChangeFeed(int maxRetainedDeletions) {
+        this.maxRetainedDeletions = maxRetainedDeletions;
+    }
+
+    void record(DownloadBatchStatus downloadBatchStatus) {
+        DownloadBatchId downloadBatchId = downloadBatchStatus.getDownloadBatchId();
+        synchronized (lock) {
+            long version = ++latestVersion;
+            Change change = latestChanges.get(downloadBatchId);
+            if (change == null) {
+                change = new Change();
+                latestChanges.put(downloadBatchId, change);
+            } else {
+                unlink(change);
+            }
+            change.version = version;
+            change.downloadBatchStatus = downloadBatchStatus;
+            linkAsNewest(change);
+
+            if (downloadBatchStatus.status() == DELETED) {
+                retainedDeletions.add(new RetainedDeletion(downloadBatchId, version));
+                evictDeletionsOverLimit();
+            }
+        }
+    }
+
+    DownloadBatchStatusChanges changesSince(long version) {
+        synchronized (lock) {
+            if (version < oldestCompleteVersion) {
+                return new LiteDownloadBatchStatusChanges(latestVersion, liveStatuses(), true);
+            }
+
+            if (newestChange == null || newestChange.version <= version) {
+                return new LiteDownloadBatchStatusChanges(latestVersion, Collections.emptyList(), false);
+            }
+
+            List<DownloadBatchStatus> statuses = new ArrayList<>();
+            for (Change change = newestChange; change != null && change.version > version; change = change.older) {
+                statuses.add(change.downloadBatchStatus);
+            }
+            Collections.reverse(statuses);
+            return new LiteDownloadBatchStatusChanges(latestVersion, statuses, false);
+        }
+    }
+
+    private List<DownloadBatchStatus> liveStatuses() {
+        List<DownloadBatchStatus> statuses = new ArrayList<>(latestChanges.size());
+        for (Change change = oldestChange; change != null; change = change.newer) {
+            if (change.downloadBatchStatus.status() != DELETED) {
+                statuses.add(change.downloadBatchStatus);
+            }
+        }
+        return statuses;
+    }
+
+    /**
+     * A deletion only counts while it is still the latest change of its batch, a batch downloaded again
+     * under the same id replaces it.
+     */
+    private void evictDeletionsOverLimit() {
+        while (retainedDeletions.size() > maxRetainedDeletions) {
+            RetainedDeletion evictedDeletion = retainedDeletions.remove();
+            Change latestChangeOfBatch = latestChanges.get(evictedDeletion.downloadBatchId);
+            if (latestChangeOfBatch != null && latestChangeOfBatch.version == evictedDeletion.version) {
+                latestChanges.remove(evictedDeletion.downloadBatchId);
+                unlink(latestChangeOfBatch);
+            }
+            oldestCompleteVersion = Math.max(oldestCompleteVersion, evictedDeletion.version);
+        }
+    }
+
+    private void linkAsNewest(Change change) {
+        change.older = newestChange;
+        change.newer = null;
+        if (newestChange == null) {
+            oldestChange = change;
+        } else {
+            newestChange.newer = change;
+        }
+        newestChange = change;
+    }
+
+    private void unlink(Change change) {
+        if (change.older == null) {
+            oldestChange = change.newer;
+        } else {
+            change.older.newer = change.newer;
+        }
+        if (change.newer == null) {
+            newestChange = change.older;
+        } else {
+            change.newer.older = change.older;
+        }
+        change.older = null;
+        change.newer = null;
+    }
+
+    private static final class Change {
+
+        private long version;
+        private DownloadBatchStatus downloadBatchStatus;
+        private Change older;
+        private Change newer;
+    }
+
+    private static final class RetainedDeletion {
+
+        private final DownloadBatchId downloadBatchId;
+        private final long version;
+
+        RetainedDeletion(DownloadBatchId downloadBatchId, long version) {
+            this.downloadBatchId = downloadBatchId;
+            this.version = version;
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.novoda.downloadmanager;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 final class DownloadBatchFactory {
@@ -47,7 +46,8 @@ final class DownloadBatchFactory {
                     filePath
             );
 
-            FileDownloader fileDownloader = fileOperations.fileDownloaderCreator().create();
+            FileDownloadEvents events = new FileDownloadEvents(fileOperations.eventListener(), downloadBatchId, downloadFileId);
+            FileDownloader fileDownloader = fileOperations.fileDownloaderCreator().create(fileOperations.metrics(), events);
             FileSizeRequester fileSizeRequester = fileOperations.fileSizeRequester();
 
             DownloadFile downloadFile = new DownloadFile(
@@ -60,7 +60,9 @@ final class DownloadBatchFactory {
                     fileDownloader,
                     fileSizeRequester,
                     filePersistence,
-                    downloadsFilePersistence
+                    downloadsFilePersistence,
+                    fileOperations.metrics(),
+                    events
             );
             downloadFiles.add(downloadFile);
         }
@@ -80,7 +82,7 @@ final class DownloadBatchFactory {
         return new DownloadBatch(
                 liteDownloadBatchStatus,
                 downloadFiles,
-                new HashMap<>(),
+                new BatchBytesDownloaded(downloadFiles.size()),
                 downloadsBatchPersistence,
                 fileCallbackThrottle,
                 connectionChecker
@@ -0,0 +1,204 @@
+package com.novoda.downloadmanager;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the running {@link DownloadBatch}es, safe to use from the manager executor,
+ * the persistence callbacks and the status callbacks at the same time.
+ *
+ * Besides lookup by id, batches are indexed by status and storage root so that queries such as
+ * "all waiting for network" only visit matching batches. The status index is refreshed through
+ * {@link #reindex(DownloadBatchId)} whenever a batch reports a new status, always from the live status of the
+ * registered batch, and candidates are checked against their live status when queried so a late update never
+ * leaks a stale match. Batches without a storage root are indexed under an empty root, which no storage path has.
+ *
+ * Registrations and reported statuses are also numbered in a {@link DownloadBatchChangeFeed}, so that clients
+ * can ask for the batches that changed since the last version they saw.
+ */
+final class DownloadBatchRegistry {
+
+    private static final String NO_STORAGE_ROOT = "";
+
+    private final Map<DownloadBatchId, DownloadBatch> batches = new ConcurrentHashMap<>();
+    private final Map<DownloadBatchId, InternalDownloadBatchStatus> liveStatuses = new ConcurrentHashMap<>();
+    private final Map<DownloadBatchId, DownloadBatchStatus.Status> indexedStatuses = new ConcurrentHashMap<>();
+    private final Map<DownloadBatchStatus.Status, Set<DownloadBatchId>> idsByStatus = new EnumMap<>(DownloadBatchStatus.Status.class);
+    private final Map<String, Set<DownloadBatchId>> idsByStorageRoot = new ConcurrentHashMap<>();
+    private final Object indexLock = new Object();
+    private final DownloadBatchChangeFeed changeFeed;
+
+    DownloadBatchRegistry() {
+        this(new DownloadBatchChangeFeed(DownloadBatchChangeFeed.DEFAULT_MAX_RETAINED_DELETIONS));
+    }
+
+    DownloadBatchRegistry(DownloadBatchChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+        for (DownloadBatchStatus.Status status : DownloadBatchStatus.Status.values()) {
+            idsByStatus.put(status, newConcurrentSet());
+        }
+    }
+
+    DownloadBatch get(DownloadBatchId downloadBatchId) {
+        return batches.get(downloadBatchId);
+    }
+
+    boolean contains(DownloadBatchId downloadBatchId) {
+        return batches.containsKey(downloadBatchId);
+    }
+
+    int size() {
+        return batches.size();
+    }
+
+    void put(DownloadBatchId downloadBatchId, DownloadBatch downloadBatch) {
+        InternalDownloadBatchStatus status = downloadBatch.status();
+        synchronized (indexLock) {
+            DownloadBatch previousBatch = batches.put(downloadBatchId, downloadBatch);
+            if (previousBatch != null) {
+                removeFromIndexes(downloadBatchId, previousBatch);
+            }
+            liveStatuses.put(downloadBatchId, status);
+            idsIn(status.storageRoot()).add(downloadBatchId);
+            indexStatus(downloadBatchId, status.status());
+            changeFeed.record(status);
+        }
+    }
+
+    void putIfAbsent(DownloadBatchId downloadBatchId, DownloadBatch downloadBatch) {
+        synchronized (indexLock) {
+            if (!batches.containsKey(downloadBatchId)) {
+                put(downloadBatchId, downloadBatch);
+            }
+        }
+    }
+
+    void remove(DownloadBatchId downloadBatchId) {
+        synchronized (indexLock) {
+            DownloadBatch removedBatch = batches.remove(downloadBatchId);
+            if (removedBatch != null) {
+                removeFromIndexes(downloadBatchId, removedBatch);
+            }
+        }
+    }
+
+    /**
+     * Moves the batch to the index of its live status, read under the index lock so that reports handled out of
+     * order cannot index an older status over a newer one. Batches that are no longer registered are ignored.
+     */
+    void reindex(DownloadBatchId downloadBatchId) {
+        InternalDownloadBatchStatus liveStatus = liveStatuses.get(downloadBatchId);
+        if (liveStatus == null || indexedStatuses.get(downloadBatchId) == liveStatus.status()) {
+            return;
+        }
+
+        synchronized (indexLock) {
+            InternalDownloadBatchStatus registeredStatus = liveStatuses.get(downloadBatchId);
+            if (registeredStatus != null) {
+                indexStatus(downloadBatchId, registeredStatus.status());
+            }
+        }
+    }
+
+    /**
+     * Adds the status to the change feed. Statuses reported after the batch was removed are ignored,
+     * apart from its deletion.
+     */
+    void recordChange(DownloadBatchStatus downloadBatchStatus) {
+        if (downloadBatchStatus.status() == DownloadBatchStatus.Status.DELETED || contains(downloadBatchStatus.getDownloadBatchId())) {
+            changeFeed.record(downloadBatchStatus);
+        }
+    }
+
+    DownloadBatchStatusChanges changesSince(long version) {
+        return changeFeed.changesSince(version);
+    }
+
+    void reindex(DownloadBatch downloadBatch) {
+        reindex(downloadBatch.getId());
+    }
+
+    /**
+     * @return a point-in-time copy of every registered batch, unaffected by later registrations or removals.
+     */
+    List<DownloadBatch> all() {
+        return new ArrayList<>(batches.values());
+    }
+
+    List<DownloadBatch> withStatus(DownloadBatchStatus.Status status) {
+        List<DownloadBatch> matchingBatches = new ArrayList<>();
+        for (DownloadBatchId downloadBatchId : idsByStatus.get(status)) {
+            DownloadBatch downloadBatch = batches.get(downloadBatchId);
+            if (downloadBatch != null && downloadBatch.status().status() == status) {
+                matchingBatches.add(downloadBatch);
+            }
+        }
+        return matchingBatches;
+    }
+
+    List<DownloadBatch> inStorageRoot(@Nullable String storageRoot) {
+        Set<DownloadBatchId> ids = idsByStorageRoot.get(keyOf(storageRoot));
+        if (ids == null) {
+            return Collections.emptyList();
+        }
+
+        List<DownloadBatch> matchingBatches = new ArrayList<>(ids.size());
+        for (DownloadBatchId downloadBatchId : ids) {
+            DownloadBatch downloadBatch = batches.get(downloadBatchId);
+            if (downloadBatch != null) {
+                matchingBatches.add(downloadBatch);
+            }
+        }
+        return matchingBatches;
+    }
+
+    private void indexStatus(DownloadBatchId downloadBatchId, DownloadBatchStatus.Status status) {
+        DownloadBatchStatus.Status previousStatus = indexedStatuses.put(downloadBatchId, status);
+        if (previousStatus != null && previousStatus != status) {
+            idsByStatus.get(previousStatus).remove(downloadBatchId);
+        }
+        idsByStatus.get(status).add(downloadBatchId);
+    }
+
+    private void removeFromIndexes(DownloadBatchId downloadBatchId, DownloadBatch downloadBatch) {
+        liveStatuses.remove(downloadBatchId);
+        DownloadBatchStatus.Status indexedStatus = indexedStatuses.remove(downloadBatchId);
+        if (indexedStatus != null) {
+            idsByStatus.get(indexedStatus).remove(downloadBatchId);
+        }
+
+        String storageRoot = keyOf(downloadBatch.status().storageRoot());
+        Set<DownloadBatchId> ids = idsByStorageRoot.get(storageRoot);
+        if (ids != null) {
+            ids.remove(downloadBatchId);
+            if (ids.isEmpty()) {
+                idsByStorageRoot.remove(storageRoot);
+            }
+        }
+    }
+
+    private Set<DownloadBatchId> idsIn(@Nullable String storageRoot) {
+        String key = keyOf(storageRoot);
+        Set<DownloadBatchId> ids = idsByStorageRoot.get(key);
+        if (ids == null) {
+            ids = newConcurrentSet();
+            idsByStorageRoot.put(key, ids);
+        }
+        return ids;
+    }
+
+    private static String keyOf(@Nullable String storageRoot) {
+        return storageRoot == null ? NO_STORAGE_ROOT : storageRoot;
+    }
+
+    private static Set<DownloadBatchId> newConcurrentSet() {
+        return Collections.newSetFromMap(new ConcurrentHashMap<>());
+    }
+}
@@ -0,0 +1,27 @@
+package com.novoda.downloadmanager;
+
+import java.util.List;
+
+/**
+ * Returned by {@link DownloadManager#getChangesSince(long)}, the {@link DownloadBatchStatus}es that changed
+ * after a given version, along with the version to ask from next time.
+ */
+public interface DownloadBatchStatusChanges {
+
+    /**
+     * @return the version of the latest change included, to be passed to the next {@link DownloadManager#getChangesSince(long)}.
+     */
+    long version();
+
+    /**
+     * @return the current {@link DownloadBatchStatus} of each batch that changed, in the order of their latest change.
+     * Deleted batches are included with a {@link DownloadBatchStatus.Status#DELETED} status.
+     */
+    List<DownloadBatchStatus> statuses();
+
+    /**
+     * @return true when the requested version is too old to compute the changes from, in which case
+     * {@link #statuses()} holds every batch that is not deleted and replaces any previously held state.
+     */
+    boolean isFullSnapshot();
+}
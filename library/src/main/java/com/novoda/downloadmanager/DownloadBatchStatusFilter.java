@@ -1,30 +1,89 @@
 package com.novoda.downloadmanager;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Drops a status that carries nothing new compared to the previous one that passed for the same batch.
+ * Each batch keeps its own fingerprint of primitives (status, percentage, total size, notification seen
+ * and error type), so interleaved updates of concurrent batches are compared against their own history
+ * and filtering a progress update does not allocate. Once the deleted status has passed, the fingerprint is swapped
+ * for a shared tombstone so that any later status for that batch is dropped, until the batch id is added again.
+ */
 class DownloadBatchStatusFilter {
 
-    private InternalDownloadBatchStatus currentStatus;
+    private static final int NO_ERROR = -1;
+    private static final Fingerprint TOMBSTONE = new Fingerprint();
+
+    private final Map<DownloadBatchId, Fingerprint> fingerprints = new ConcurrentHashMap<>();
 
     boolean shouldFilterOut(DownloadBatchStatus currentDownloadBatchStatus) {
         if (!(currentDownloadBatchStatus instanceof InternalDownloadBatchStatus)) {
-            Logger.w(currentDownloadBatchStatus.getClass() + " is not an instance of " + InternalDownloadBatchStatus.class);
+            Logger.w(() -> currentDownloadBatchStatus.getClass() + " is not an instance of " + InternalDownloadBatchStatus.class);
             return true;
         }
 
-        InternalDownloadBatchStatus copiedStatus = ((InternalDownloadBatchStatus) currentDownloadBatchStatus).copy();
-        if (copiedStatus.equals(currentStatus)) {
-            Logger.v("Failed filter. "
-                             + "ID: " + currentDownloadBatchStatus.getDownloadBatchId().rawId()
-                             + " Status: " + currentDownloadBatchStatus.status().toRawValue()
-            );
+        DownloadBatchId downloadBatchId = currentDownloadBatchStatus.getDownloadBatchId();
+        Fingerprint fingerprint = fingerprintOf(downloadBatchId);
+        if (fingerprint == TOMBSTONE || !fingerprint.updateIfChanged(currentDownloadBatchStatus)) {
             return true;
         }
 
-        Logger.v(
-                "Passes filter. "
-                        + "ID: " + currentDownloadBatchStatus.getDownloadBatchId().rawId()
-                        + " Status: " + currentDownloadBatchStatus.status().toRawValue()
-        );
-        currentStatus = copiedStatus;
+        if (currentDownloadBatchStatus.status() == DownloadBatchStatus.Status.DELETED) {
+            fingerprints.put(downloadBatchId, TOMBSTONE);
+        }
         return false;
     }
+
+    void onBatchAdded(DownloadBatchId downloadBatchId) {
+        fingerprints.remove(downloadBatchId, TOMBSTONE);
+    }
+
+    private Fingerprint fingerprintOf(DownloadBatchId downloadBatchId) {
+        Fingerprint fingerprint = fingerprints.get(downloadBatchId);
+        if (fingerprint == null) {
+            Fingerprint newFingerprint = new Fingerprint();
+            fingerprint = fingerprints.putIfAbsent(downloadBatchId, newFingerprint);
+            if (fingerprint == null) {
+                fingerprint = newFingerprint;
+            }
+        }
+        return fingerprint;
+    }
+
+    private static class Fingerprint {
+
+        private boolean initialised;
+        private DownloadBatchStatus.Status status;
+        private int percentageDownloaded;
+        private long bytesTotalSize;
+        private boolean notificationSeen;
+        private int errorType = NO_ERROR;
+        private String errorMessage;
+
+        synchronized boolean updateIfChanged(DownloadBatchStatus downloadBatchStatus) {
+            DownloadError downloadError = downloadBatchStatus.downloadError();
+            int currentErrorType = downloadError == null ? NO_ERROR : downloadError.type().ordinal();
+            String currentErrorMessage = downloadError == null ? null : downloadError.message();
+
+            if (initialised
+                    && downloadBatchStatus.status() == status
+                    && downloadBatchStatus.percentageDownloaded() == percentageDownloaded
+                    && downloadBatchStatus.bytesTotalSize() == bytesTotalSize
+                    && downloadBatchStatus.notificationSeen() == notificationSeen
+                    && currentErrorType == errorType
+                    && (currentErrorMessage == null ? errorMessage == null : currentErrorMessage.equals(errorMessage))) {
+                return false;
+            }
+
+            initialised = true;
+            status = downloadBatchStatus.status();
+            percentageDownloaded = downloadBatchStatus.percentageDownloaded();
+            bytesTotalSize = downloadBatchStatus.bytesTotalSize();
+            notificationSeen = downloadBatchStatus.notificationSeen();
+            errorType = currentErrorType;
+            errorMessage = currentErrorMessage;
+            return true;
+        }
+    }
 }
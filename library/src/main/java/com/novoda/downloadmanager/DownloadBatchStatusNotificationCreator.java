@@ -4,6 +4,9 @@ import android.app.Notification;
 import android.content.Context;
 import android.support.v4.app.NotificationCompat;
 
+import java.util.HashMap;
+import java.util.Map;
+
 class DownloadBatchStatusNotificationCreator implements NotificationCreator<DownloadBatchStatus> {
 
     private final Context applicationContext;
@@ -23,9 +26,7 @@ class DownloadBatchStatusNotificationCreator implements NotificationCreator<Down
         this.notificationChannelProvider = notificationChannelProvider;
     }
 
-    private int previousNotificationId;
-    private DownloadBatchStatus.Status previousStatus;
-    private NotificationCompat.Builder builder;
+    private final Map<Integer, BatchNotificationBuilder> builders = new HashMap<>();
 
     @Override
     public NotificationInformation createNotification(final DownloadBatchStatus downloadBatchStatus) {
@@ -39,18 +40,18 @@ class DownloadBatchStatusNotificationCreator implements NotificationCreator<Down
             public Notification getNotification() {
                 int notificationId = getId();
                 DownloadBatchStatus.Status status = downloadBatchStatus.status();
-
-                if (builder == null || hasChanged(previousNotificationId, status)) {
-                    builder = new NotificationCompat.Builder(applicationContext, notificationChannelProvider.channelId());
-                    previousNotificationId = notificationId;
-                    previousStatus = status;
+                if (isLastOfBatch(status)) {
+                    builders.remove(notificationId);
+                    return notificationCustomizer.customNotificationFrom(newBuilder(), downloadBatchStatus);
                 }
 
-                return notificationCustomizer.customNotificationFrom(builder, downloadBatchStatus);
-            }
+                BatchNotificationBuilder batchNotificationBuilder = builders.get(notificationId);
+                if (batchNotificationBuilder == null || batchNotificationBuilder.status != status) {
+                    batchNotificationBuilder = new BatchNotificationBuilder(newBuilder(), status);
+                    builders.put(notificationId, batchNotificationBuilder);
+                }
 
-            private boolean hasChanged(int notificationId, DownloadBatchStatus.Status status) {
-                return previousNotificationId != notificationId || !previousStatus.equals(status);
+                return notificationCustomizer.customNotificationFrom(batchNotificationBuilder.builder, downloadBatchStatus);
             }
 
             @Override
@@ -59,4 +60,32 @@ class DownloadBatchStatusNotificationCreator implements NotificationCreator<Down
             }
         };
     }
+
+    /**
+     * No progress follows these statuses, so the batch's builder is released rather than kept until deletion.
+     */
+    private static boolean isLastOfBatch(DownloadBatchStatus.Status status) {
+        return status == DownloadBatchStatus.Status.DOWNLOADED
+                || status == DownloadBatchStatus.Status.ERROR
+                || status == DownloadBatchStatus.Status.DELETED;
+    }
+
+    private NotificationCompat.Builder newBuilder() {
+        return new NotificationCompat.Builder(applicationContext, notificationChannelProvider.channelId());
+    }
+
+    /**
+     * Each batch keeps its builder while its status stays the same, so progress updates only change
+     * what the customizer sets instead of starting from an empty builder.
+     */
+    private static final class BatchNotificationBuilder {
+
+        private final NotificationCompat.Builder builder;
+        private final DownloadBatchStatus.Status status;
+
+        BatchNotificationBuilder(NotificationCompat.Builder builder, DownloadBatchStatus.Status status) {
+            this.builder = builder;
+            this.status = status;
+        }
+    }
 }
@@ -10,20 +10,23 @@ class DownloadBatchStatusNotificationDispatcher {
     private static final boolean NOTIFICATION_SEEN = true;
 
     private final DownloadsNotificationSeenPersistence notificationSeenPersistence;
-    private final ServiceNotificationDispatcher<DownloadBatchStatus> notificationDispatcher;
+    private final NotificationDispatcher<DownloadBatchStatus> notificationDispatcher;
     private final Set<String> downloadBatchIdNotificationSeen;
+    private final Optional<NotificationUpdateLimiter> notificationUpdateLimiter;
 
     DownloadBatchStatusNotificationDispatcher(DownloadsNotificationSeenPersistence notificationSeenPersistence,
-                                              ServiceNotificationDispatcher<DownloadBatchStatus> notificationDispatcher,
-                                              Set<String> downloadBatchIdNotificationSeen) {
+                                              NotificationDispatcher<DownloadBatchStatus> notificationDispatcher,
+                                              Set<String> downloadBatchIdNotificationSeen,
+                                              Optional<NotificationUpdateLimiter> notificationUpdateLimiter) {
         this.notificationSeenPersistence = notificationSeenPersistence;
         this.notificationDispatcher = notificationDispatcher;
         this.downloadBatchIdNotificationSeen = downloadBatchIdNotificationSeen;
+        this.notificationUpdateLimiter = notificationUpdateLimiter;
     }
 
     void updateNotification(DownloadBatchStatus downloadBatchStatus) {
         if (downloadBatchStatus.notificationSeen()) {
-            Logger.v("DownloadBatchStatus:", downloadBatchStatus.getDownloadBatchId(), "notification has already been seen.");
+            Logger.v(() -> "DownloadBatchStatus: " + downloadBatchStatus.getDownloadBatchId() + " notification has already been seen.");
             return;
         }
 
@@ -35,12 +38,16 @@ class DownloadBatchStatusNotificationDispatcher {
 
         if (notificationIsNotMarkedAsSeenYet(downloadBatchStatus, rawDownloadBatchId)) {
             downloadBatchIdNotificationSeen.add(rawDownloadBatchId);
-            Logger.v("start updateNotificationSeenAsync " + rawDownloadBatchId
+            Logger.v(() -> "start updateNotificationSeenAsync " + rawDownloadBatchId
                     + ", seen: " + NOTIFICATION_SEEN
                     + ", status: " + downloadBatchStatus.status());
             notificationSeenPersistence.updateNotificationSeenAsync(downloadBatchStatus, NOTIFICATION_SEEN);
         }
 
+        if (notificationUpdateLimiter.isPresent() && !notificationUpdateLimiter.get().shouldRender(downloadBatchStatus)) {
+            return;
+        }
+
         notificationDispatcher.updateNotification(downloadBatchStatus);
     }
 
@@ -0,0 +1,18 @@
+package com.novoda.downloadmanager;
+
+/**
+ * Given to {@link DownloadManager#subscribe(DownloadBatchStatusSubscriber, java.util.concurrent.Executor)},
+ * to receive {@link DownloadBatchStatus} changes at the pace requested through its {@link DownloadBatchStatusSubscription}.
+ */
+public interface DownloadBatchStatusSubscriber {
+
+    /**
+     * Called once, before any status is delivered. Nothing is delivered until
+     * {@link DownloadBatchStatusSubscription#request(long)} is called.
+     *
+     * @param subscription to request statuses from or cancel.
+     */
+    void onSubscribe(DownloadBatchStatusSubscription subscription);
+
+    void onNext(DownloadBatchStatus downloadBatchStatus);
+}
@@ -0,0 +1,22 @@
+package com.novoda.downloadmanager;
+
+/**
+ * Links a {@link DownloadBatchStatusSubscriber} to the download-manager.
+ *
+ * While no statuses are requested, changes are conflated: only the latest {@link DownloadBatchStatus}
+ * of each batch is kept, so a slow subscriber never builds up a backlog.
+ */
+public interface DownloadBatchStatusSubscription {
+
+    /**
+     * Allows up to {@code count} more statuses to be delivered, on top of any outstanding demand.
+     *
+     * @param count of statuses, must be positive. {@link Long#MAX_VALUE} removes the limit.
+     */
+    void request(long count);
+
+    /**
+     * Stops delivering statuses. Statuses already being delivered may still arrive.
+     */
+    void cancel();
+}
@@ -0,0 +1,27 @@
+package com.novoda.downloadmanager;
+
+/**
+ * The combined progress of every active batch, the payload of the summary notification enabled through
+ * {@link DownloadManagerBuilder#withSummaryNotification(NotificationCustomizer)}.
+ *
+ * A batch is active while it is {@link DownloadBatchStatus.Status#QUEUED}, {@link DownloadBatchStatus.Status#DOWNLOADING}
+ * or {@link DownloadBatchStatus.Status#WAITING_FOR_NETWORK}.
+ */
+public interface DownloadBatchesSummary {
+
+    /**
+     * @return the number of active batches, zero once the last of them has stopped.
+     */
+    int activeBatchCount();
+
+    long bytesDownloaded();
+
+    long bytesTotalSize();
+
+    int percentageDownloaded();
+
+    /**
+     * @return the bytes downloaded across all batches per second, measured since the previous summary.
+     */
+    long bytesPerSecond();
+}
@@ -0,0 +1,52 @@
+package com.novoda.downloadmanager;
+
+import android.app.Notification;
+import android.content.Context;
+import android.support.v4.app.NotificationCompat;
+
+class DownloadBatchesSummaryNotificationCreator implements NotificationCreator<DownloadBatchesSummary> {
+
+    private static final int SUMMARY_NOTIFICATION_ID = "download-manager-summary".hashCode();
+
+    private final Context applicationContext;
+    private final NotificationCustomizer<DownloadBatchesSummary> notificationCustomizer;
+    private NotificationChannelProvider notificationChannelProvider;
+    private NotificationCompat.Builder builder;
+
+    DownloadBatchesSummaryNotificationCreator(Context context,
+                                              NotificationCustomizer<DownloadBatchesSummary> customizer,
+                                              NotificationChannelProvider notificationChannelProvider) {
+        this.applicationContext = context.getApplicationContext();
+        this.notificationCustomizer = customizer;
+        this.notificationChannelProvider = notificationChannelProvider;
+    }
+
+    @Override
+    public void setNotificationChannelProvider(NotificationChannelProvider notificationChannelProvider) {
+        this.notificationChannelProvider = notificationChannelProvider;
+        builder = null;
+    }
+
+    @Override
+    public NotificationInformation createNotification(final DownloadBatchesSummary downloadBatchesSummary) {
+        return new NotificationInformation() {
+            @Override
+            public int getId() {
+                return SUMMARY_NOTIFICATION_ID;
+            }
+
+            @Override
+            public Notification getNotification() {
+                if (builder == null) {
+                    builder = new NotificationCompat.Builder(applicationContext, notificationChannelProvider.channelId());
+                }
+                return notificationCustomizer.customNotificationFrom(builder, downloadBatchesSummary);
+            }
+
+            @Override
+            public NotificationCustomizer.NotificationDisplayState notificationDisplayState() {
+                return notificationCustomizer.notificationDisplayState(downloadBatchesSummary);
+            }
+        };
+    }
+}
@@ -0,0 +1,78 @@
+package com.novoda.downloadmanager;
+
+/**
+ * Receives the lifecycle events of every download, registered through
+ * {@link DownloadManagerBuilder#withDownloadEventListener(DownloadEventListener)}.
+ * Useful for tracing or dashboards, override only the events of interest.
+ *
+ * Events are delivered synchronously from the thread doing the work, so implementations must be fast and must not block.
+ * Timestamps come from {@link System#nanoTime()}, they are only meaningful relative to each other.
+ *
+ * Connection and header events are only reported by the default network {@link FileDownloader}.
+ */
+@SuppressWarnings("PMD.AbstractClassWithoutAbstractMethod")
+public abstract class DownloadEventListener {
+
+    /**
+     * Ignores every event. While it is registered the events are not even timestamped.
+     */
+    public static final DownloadEventListener NONE = new DownloadEventListener() {
+    };
+
+    /**
+     * The batch was handed to the download service and waits for its turn.
+     */
+    public void batchQueued(DownloadBatchId downloadBatchId, long timestampInNanos) {
+        // no-op
+    }
+
+    public void sizeProbeStart(DownloadBatchId downloadBatchId, DownloadFileId downloadFileId, long timestampInNanos) {
+        // no-op
+    }
+
+    /**
+     * @param totalSizeInBytes the size reported by the server, zero when it could not be determined.
+     */
+    public void sizeProbeEnd(DownloadBatchId downloadBatchId, DownloadFileId downloadFileId, long totalSizeInBytes, long timestampInNanos) {
+        // no-op
+    }
+
+    /**
+     * The connection to the server was established, reported again for every retry.
+     * Not reported when the connection could not be established.
+     */
+    public void connectionAcquired(DownloadBatchId downloadBatchId, DownloadFileId downloadFileId, long timestampInNanos) {
+        // no-op
+    }
+
+    public void headersReceived(DownloadBatchId downloadBatchId, DownloadFileId downloadFileId, int responseCode, long timestampInNanos) {
+        // no-op
+    }
+
+    /**
+     * The first bytes of this download were received, reported once each time the file starts or resumes downloading.
+     */
+    public void firstByte(DownloadBatchId downloadBatchId, DownloadFileId downloadFileId, long timestampInNanos) {
+        // no-op
+    }
+
+    public void chunkWritten(DownloadBatchId downloadBatchId, DownloadFileId downloadFileId, int byteCount, long timestampInNanos) {
+        // no-op
+    }
+
+    public void paused(DownloadBatchId downloadBatchId, DownloadFileId downloadFileId, long timestampInNanos) {
+        // no-op
+    }
+
+    public void resumed(DownloadBatchId downloadBatchId, DownloadFileId downloadFileId, long timestampInNanos) {
+        // no-op
+    }
+
+    public void completed(DownloadBatchId downloadBatchId, DownloadFileId downloadFileId, long timestampInNanos) {
+        // no-op
+    }
+
+    public void failed(DownloadBatchId downloadBatchId, DownloadFileId downloadFileId, DownloadError downloadError, long timestampInNanos) {
+        // no-op
+    }
+}
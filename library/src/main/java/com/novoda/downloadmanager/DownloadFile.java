@@ -2,6 +2,8 @@ package com.novoda.downloadmanager;
 
 import android.support.annotation.WorkerThread;
 
+import java.net.URI;
+
 // This model knows how to interact with low level components.
 @SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.StdCyclomaticComplexity", "PMD.ModifiedCyclomaticComplexity"})
 class DownloadFile {
@@ -15,6 +17,9 @@ class DownloadFile {
     private final FilePersistence filePersistence;
     private final DownloadsFilePersistence downloadsFilePersistence;
     private final FilePath filePath;
+    private final DownloadMetricsRegistry metrics;
+    private final FileDownloadEvents events;
+    private final Optional<String> host;
 
     private InternalFileSize fileSize;
 
@@ -29,7 +34,9 @@ class DownloadFile {
                  FileDownloader fileDownloader,
                  FileSizeRequester fileSizeRequester,
                  FilePersistence filePersistence,
-                 DownloadsFilePersistence downloadsFilePersistence) {
+                 DownloadsFilePersistence downloadsFilePersistence,
+                 DownloadMetricsRegistry metrics,
+                 FileDownloadEvents events) {
         this.downloadBatchId = downloadBatchId;
         this.downloadFileId = downloadFileId;
         this.url = url;
@@ -40,6 +47,17 @@ class DownloadFile {
         this.filePersistence = filePersistence;
         this.fileSize = fileSize;
         this.downloadsFilePersistence = downloadsFilePersistence;
+        this.metrics = metrics;
+        this.events = events;
+        this.host = hostOf(url);
+    }
+
+    private static Optional<String> hostOf(String url) {
+        try {
+            return Optional.fromNullable(URI.create(url).getHost());
+        } catch (IllegalArgumentException e) {
+            return Optional.absent();
+        }
     }
 
     // This ia complex because we have to constantly check states and perform updates.
@@ -63,7 +81,7 @@ class DownloadFile {
             return;
         }
 
-        Logger.v("persist file " + downloadFileId.rawId() + ", with status: " + downloadFileStatus.status());
+        Logger.v(() -> "persist file " + downloadFileId.rawId() + ", with status: " + downloadFileStatus.status());
         if (!persist()) {
             Logger.e("persisting file " + downloadFileId.rawId() + " with status " + downloadFileStatus.status() + " failed");
             return;
@@ -71,6 +89,7 @@ class DownloadFile {
 
         if (fileSize.currentSize() == fileSize.totalSize()) {
             downloadFileStatus.update(fileSize, filePath);
+            events.completed();
             callback.onUpdate(downloadFileStatus);
             return;
         }
@@ -82,11 +101,26 @@ class DownloadFile {
             return;
         }
 
+        long downloadStartedAtInNanos = System.nanoTime();
         fileDownloader.startDownloading(url, fileSize, new FileDownloader.Callback() {
+
+            private boolean firstBytesRead;
+
             @Override
             public void onBytesRead(byte[] buffer, int bytesRead) {
+                long writeStartedAtInNanos = System.nanoTime();
+                if (!firstBytesRead) {
+                    firstBytesRead = true;
+                    metrics.recordTimeToFirstByte(writeStartedAtInNanos - downloadStartedAtInNanos);
+                    events.firstByte();
+                }
+                metrics.recordBytesRead(downloadBatchId, downloadFileId, host, bytesRead);
+
                 boolean success = filePersistence.write(buffer, 0, bytesRead);
-                if (!success) {
+                metrics.recordFileWrite(System.nanoTime() - writeStartedAtInNanos);
+                if (success) {
+                    events.chunkWritten(bytesRead);
+                } else {
                     DownloadError downloadError = DownloadErrorFactory.createCannotWriteToFileError(downloadFileStatus);
                     updateAndFeedbackWithStatus(downloadError, callback);
                 }
@@ -107,6 +141,9 @@ class DownloadFile {
             @Override
             public void onDownloadFinished() {
                 filePersistence.close();
+                if (downloadFileStatus.status() == DownloadFileStatus.Status.DOWNLOADED) {
+                    events.completed();
+                }
                 if (downloadFileStatus.isMarkedAsDeleted()) {
                     filePersistence.delete(filePath);
                 }
@@ -135,7 +172,7 @@ class DownloadFile {
         InternalFileSize updatedFileSize = fileSize.copy();
 
         if (fileSize.isTotalSizeUnknown()) {
-            FileSize requestFileSize = fileSizeRequester.requestFileSize(url);
+            FileSize requestFileSize = requestFileSize();
             if (requestFileSize.isTotalSizeKnown()) {
                 updatedFileSize.setTotalSize(requestFileSize.totalSize());
             }
@@ -144,18 +181,30 @@ class DownloadFile {
         return updatedFileSize;
     }
 
+    private FileSize requestFileSize() {
+        events.sizeProbeStart();
+        long requestStartedAtInNanos = System.nanoTime();
+        FileSize requestFileSize = fileSizeRequester.requestFileSize(url);
+        metrics.recordSizeProbe(System.nanoTime() - requestStartedAtInNanos);
+        events.sizeProbeEnd(requestFileSize.totalSize());
+        return requestFileSize;
+    }
+
     private void updateAndFeedbackWithStatus(DownloadError downloadError, Callback callback) {
         downloadFileStatus.markAsError(downloadError);
+        events.failed(downloadError);
         callback.onUpdate(downloadFileStatus);
     }
 
     void pause() {
         downloadFileStatus.markAsPaused();
+        events.paused();
         fileDownloader.stopDownloading();
     }
 
     void resume() {
         downloadFileStatus.markAsQueued();
+        events.resumed();
     }
 
     void waitForNetwork() {
@@ -166,11 +215,11 @@ class DownloadFile {
     void delete() {
         if (downloadFileStatus.isMarkedAsDownloading()) {
             downloadFileStatus.markAsDeleted();
-            Logger.v("mark file as deleted for batchId: " + downloadBatchId.rawId());
+            Logger.v(() -> "mark file as deleted for batchId: " + downloadBatchId.rawId());
             fileDownloader.stopDownloading();
         } else {
             downloadFileStatus.markAsDeleted();
-            Logger.v("mark file as deleted for batchId: " + downloadBatchId.rawId());
+            Logger.v(() -> "mark file as deleted for batchId: " + downloadBatchId.rawId());
             filePersistence.delete(filePath);
         }
     }
@@ -178,7 +227,7 @@ class DownloadFile {
     @WorkerThread
     long getTotalSize() {
         if (fileSize.isTotalSizeUnknown()) {
-            FileSize requestFileSize = fileSizeRequester.requestFileSize(url);
+            FileSize requestFileSize = requestFileSize();
             fileSize.setTotalSize(requestFileSize.totalSize());
             if (fileStatus().status() == DownloadFileStatus.Status.DELETED) {
                 Logger.e("file getTotalSize return zero because is deleted, " + downloadFileId.rawId()
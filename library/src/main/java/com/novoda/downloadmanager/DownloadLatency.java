@@ -0,0 +1,15 @@
+package com.novoda.downloadmanager;
+
+/**
+ * The durations recorded for one kind of operation, see {@link DownloadMetrics}.
+ */
+public interface DownloadLatency {
+
+    long count();
+
+    long lastInMicros();
+
+    long averageInMicros();
+
+    long maxInMicros();
+}
@@ -4,6 +4,7 @@ import android.support.annotation.Nullable;
 import android.support.annotation.WorkerThread;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
 public interface DownloadManager {
 
@@ -43,9 +44,49 @@ public interface DownloadManager {
      */
     void addDownloadBatchCallback(DownloadBatchStatusCallback downloadBatchCallback);
 
+    /**
+     * Adds a {@link DownloadBatchStatusCallback} to be notified on {@link DownloadBatchStatus} changes
+     * on the given {@link Executor} instead of the callback handler.
+     * Updates are delivered one at a time, and those arriving while the callback is busy are merged
+     * so that only the latest {@link DownloadBatchStatus} of each batch is delivered.
+     *
+     * @param downloadBatchCallback to add to the internal list of callbacks.
+     * @param callbackExecutor      to deliver the {@link DownloadBatchStatus} changes on.
+     */
+    void addDownloadBatchCallback(DownloadBatchStatusCallback downloadBatchCallback, Executor callbackExecutor);
+
+    /**
+     * Subscribes to the {@link DownloadBatchStatus} changes of every batch, delivered on the given {@link Executor}
+     * as they are requested through the {@link DownloadBatchStatusSubscription}.
+     *
+     * @param subscriber         to deliver the {@link DownloadBatchStatus} changes to.
+     * @param subscriberExecutor to deliver the {@link DownloadBatchStatus} changes on.
+     */
+    void subscribe(DownloadBatchStatusSubscriber subscriber, Executor subscriberExecutor);
+
+    /**
+     * Subscribes to the {@link DownloadBatchStatus} changes of the batch with the associated {@link DownloadBatchId}.
+     *
+     * @param downloadBatchId    of the batch to follow.
+     * @param subscriber         to deliver the {@link DownloadBatchStatus} changes to.
+     * @param subscriberExecutor to deliver the {@link DownloadBatchStatus} changes on.
+     */
+    void subscribe(DownloadBatchId downloadBatchId, DownloadBatchStatusSubscriber subscriber, Executor subscriberExecutor);
+
+    /**
+     * Subscribes to the {@link DownloadBatchStatus} changes of batches moving into or updating within the given status.
+     * A batch that leaves the status before its change is delivered is dropped from the pending changes.
+     *
+     * @param status             of the batches to follow.
+     * @param subscriber         to deliver the {@link DownloadBatchStatus} changes to.
+     * @param subscriberExecutor to deliver the {@link DownloadBatchStatus} changes on.
+     */
+    void subscribe(DownloadBatchStatus.Status status, DownloadBatchStatusSubscriber subscriber, Executor subscriberExecutor);
+
     /**
      * Removes a {@link DownloadBatchStatusCallback} from the internal list of callbacks,
      * removing notifications on {@link DownloadBatchStatus} changes.
+     * Callbacks added with an {@link Executor} may still receive updates that were already handed to it.
      *
      * @param downloadBatchCallback to remove from the internal list of callbacks.
      */
@@ -62,6 +103,7 @@ public interface DownloadManager {
     /**
      * Retrieves a list of {@link DownloadBatchStatus} synchronously. Clients should
      * specify their own Threading mechanism.
+     * Does not wait for the download service, stored batches are read from persistence until they are loaded.
      * This is a long-running blocking operation, clients should call this using their own Threading mechanism.
      *
      * @return a list of {@link DownloadBatchStatus}.
@@ -76,6 +118,16 @@ public interface DownloadManager {
      */
     void getAllDownloadBatchStatuses(AllBatchStatusesCallback callback);
 
+    /**
+     * Retrieves the {@link DownloadBatchStatus} of every batch that changed after the given version, without
+     * waiting for the download service. Pass 0 to receive every batch known so far, then pass the returned
+     * {@link DownloadBatchStatusChanges#version()} on the next call to receive only what changed in between.
+     *
+     * @param version of the last {@link DownloadBatchStatusChanges} received, or 0.
+     * @return {@link DownloadBatchStatusChanges} since the given version.
+     */
+    DownloadBatchStatusChanges getChangesSince(long version);
+
     /**
      * Retrieves {@link DownloadFileStatus} with the associated {@link DownloadBatchId} and {@link DownloadFileId}.
      * Will return null if a {@link DownloadFileStatus} is not found with the matching {@link DownloadBatchId} and {@link DownloadFileId}.
@@ -118,4 +170,26 @@ public interface DownloadManager {
      */
     @WorkerThread
     boolean addCompletedBatch(CompletedDownloadBatch completedDownloadBatch);
+
+    /**
+     * Retrieves the current {@link DownloadMetrics}: throughput, latencies, retries and executor queue depths.
+     * Cheap enough to be polled, it does not wait for the download service.
+     *
+     * @return a snapshot of the {@link DownloadMetrics}.
+     */
+    DownloadMetrics getMetrics();
+
+    /**
+     * Receives {@link DownloadMetrics} about once a second on the main thread while downloads are running.
+     *
+     * @param listener to receive the {@link DownloadMetrics}.
+     */
+    void addMetricsListener(DownloadMetricsListener listener);
+
+    /**
+     * Stops the given {@link DownloadMetricsListener} from receiving further {@link DownloadMetrics}.
+     *
+     * @param listener to remove.
+     */
+    void removeMetricsListener(DownloadMetricsListener listener);
 }
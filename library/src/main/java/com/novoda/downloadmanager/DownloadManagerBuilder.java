@@ -16,15 +16,18 @@ import android.support.annotation.RequiresApi;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.NotificationManagerCompat;
 
+import com.novoda.merlin.Merlin;
 import com.novoda.merlin.MerlinsBeard;
 
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import static com.novoda.downloadmanager.DownloadBatchStatus.Status.DELETED;
@@ -38,7 +41,7 @@ public final class DownloadManagerBuilder {
 
     private static final Object SERVICE_LOCK = new Object();
     private static final Object CALLBACK_LOCK = new Object();
-    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+    private static final ThreadPoolExecutor EXECUTOR = newSingleThreadExecutor();
 
     private final Context applicationContext;
     private final Handler callbackHandler;
@@ -59,6 +62,10 @@ public final class DownloadManagerBuilder {
     private TimeUnit timeUnit;
     private long frequency;
     private Optional<LogHandle> logHandle;
+    private LogLevel logLevel = LogLevel.VERBOSE;
+    private boolean logCallerLocation;
+    private Optional<NotificationCustomizer<DownloadBatchesSummary>> summaryNotificationCustomizer = Optional.absent();
+    private DownloadEventListener downloadEventListener = DownloadEventListener.NONE;
 
     public static DownloadManagerBuilder newInstance(Context context, Handler callbackHandler, @DrawableRes final int notificationIcon) {
         Context applicationContext = context.getApplicationContext();
@@ -183,6 +190,18 @@ public final class DownloadManagerBuilder {
         return this;
     }
 
+    /**
+     * Replaces the notification of each batch with a single notification summarising all active batches,
+     * updated at most once per second. Per batch notifications, including completions and errors, are no longer shown.
+     *
+     * @param summaryNotificationCustomizer creates the summary notification, it should hide it once
+     *                                      {@link DownloadBatchesSummary#activeBatchCount()} drops to zero.
+     */
+    public DownloadManagerBuilder withSummaryNotification(NotificationCustomizer<DownloadBatchesSummary> summaryNotificationCustomizer) {
+        this.summaryNotificationCustomizer = Optional.fromNullable(summaryNotificationCustomizer);
+        return this;
+    }
+
     public DownloadManagerBuilder withAllowedConnectionType(ConnectionType connectionTypeAllowed) {
         this.connectionTypeAllowed = connectionTypeAllowed;
         return this;
@@ -216,9 +235,36 @@ public final class DownloadManagerBuilder {
         return this;
     }
 
+    /**
+     * Messages below the given level are dropped before they are built. Defaults to {@link LogLevel#VERBOSE}.
+     */
+    public DownloadManagerBuilder withLogLevel(LogLevel logLevel) {
+        this.logLevel = logLevel;
+        return this;
+    }
+
+    /**
+     * Prefixes every message with the source file, line and method it was logged from.
+     * This walks the stack on every logged message, so it is best kept to debug builds.
+     */
+    public DownloadManagerBuilder withLogCallerLocation() {
+        this.logCallerLocation = true;
+        return this;
+    }
+
+    /**
+     * Reports every phase of each download to the given listener, from the thread doing the work.
+     */
+    public DownloadManagerBuilder withDownloadEventListener(DownloadEventListener downloadEventListener) {
+        this.downloadEventListener = downloadEventListener;
+        return this;
+    }
+
     // It creates the whole LiteDownloadManager, it is a long process!
     @SuppressWarnings("PMD.ExcessiveMethodLength")
     public DownloadManager build() {
+        Logger.setMinimumLevel(logLevel);
+        Logger.captureCallerLocation(logCallerLocation);
         if (logHandle.isPresent()) {
             Logger.attach(logHandle.get());
         }
@@ -251,8 +297,20 @@ public final class DownloadManagerBuilder {
         applicationContext.bindService(intent, serviceConnection, Service.BIND_AUTO_CREATE);
 
         filePersistenceCreator.withStorageRequirementRules(storageRequirementRules);
-        FileOperations fileOperations = new FileOperations(filePersistenceCreator, fileSizeRequester, fileDownloaderCreator);
+        DownloadMetricsRegistry metrics = new DownloadMetricsRegistry(
+                SchedulerFactory.createFixedRateScheduler(DownloadMetricsRegistry.SAMPLE_INTERVAL_IN_MILLIS),
+                Clock.ELAPSED_REALTIME,
+                callbackHandler::post
+        );
+        FileOperations fileOperations = new FileOperations(
+                filePersistenceCreator,
+                fileSizeRequester,
+                fileDownloaderCreator,
+                metrics,
+                downloadEventListener
+        );
         Set<DownloadBatchStatusCallback> callbacks = new CopyOnWriteArraySet<>();
+        Map<DownloadBatchStatusCallback, ExecutorStatusDelivery> executorCallbacks = new ConcurrentHashMap<>();
 
         CallbackThrottleCreator callbackThrottleCreator = getCallbackThrottleCreator(
                 callbackThrottleCreatorType,
@@ -264,31 +322,34 @@ public final class DownloadManagerBuilder {
         DownloadsFilePersistence downloadsFilePersistence = new DownloadsFilePersistence(downloadsPersistence);
         MerlinsBeard merlinsBeard = MerlinsBeard.from(applicationContext);
         ConnectionChecker connectionChecker = new ConnectionChecker(merlinsBeard, connectionTypeAllowed);
-        Executor executor = Executors.newSingleThreadExecutor();
+        Merlin merlin = new Merlin.Builder().withDisconnectableCallbacks().build(applicationContext);
+        merlin.registerDisconnectable(connectionChecker);
+        merlin.bind();
+        ThreadPoolExecutor persistenceReadExecutor = newSingleThreadExecutor();
+        ThreadPoolExecutor persistenceWriteExecutor = newSingleThreadExecutor();
         DownloadsBatchPersistence downloadsBatchPersistence = new DownloadsBatchPersistence(
-                executor,
+                persistenceReadExecutor,
+                persistenceWriteExecutor,
                 downloadsFilePersistence,
                 downloadsPersistence,
                 callbackThrottleCreator,
-                connectionChecker
+                connectionChecker,
+                metrics
         );
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             notificationChannelProvider.registerNotificationChannel(applicationContext);
         }
 
-        NotificationManagerCompat notificationManager = NotificationManagerCompat.from(applicationContext);
-        ServiceNotificationDispatcher<DownloadBatchStatus> notificationDispatcher = new ServiceNotificationDispatcher<>(
-                SERVICE_LOCK,
-                notificationCreator,
-                notificationManager
-        );
-        DownloadBatchStatusNotificationDispatcher batchStatusNotificationDispatcher = new DownloadBatchStatusNotificationDispatcher(
+        ThreadPoolExecutor notificationExecutor = newSingleThreadExecutor();
+        metrics.trackExecutorQueue("downloads", EXECUTOR.getQueue());
+        metrics.trackExecutorQueue("persistence-read", persistenceReadExecutor.getQueue());
+        metrics.trackExecutorQueue("persistence-write", persistenceWriteExecutor.getQueue());
+        metrics.trackExecutorQueue("notifications", notificationExecutor.getQueue());
+        DownloadBatchStatusNotificationDispatcher batchStatusNotificationDispatcher = createBatchStatusNotificationDispatcher(
                 downloadsBatchPersistence,
-                notificationDispatcher,
-                new HashSet<>()
+                notificationExecutor
         );
-
         DownloadBatchStatusFilter downloadBatchStatusFilter = new DownloadBatchStatusFilter();
 
         LiteDownloadManagerDownloader downloader = new LiteDownloadManagerDownloader(
@@ -300,8 +361,10 @@ public final class DownloadManagerBuilder {
                 downloadsBatchPersistence,
                 downloadsFilePersistence,
                 batchStatusNotificationDispatcher,
+                notificationExecutor,
                 connectionChecker,
                 callbacks,
+                executorCallbacks,
                 callbackThrottleCreator,
                 downloadBatchStatusFilter
         );
@@ -309,10 +372,10 @@ public final class DownloadManagerBuilder {
         liteDownloadManager = new LiteDownloadManager(
                 SERVICE_LOCK,
                 CALLBACK_LOCK,
-                EXECUTOR,
                 callbackHandler,
-                new HashMap<>(),
+                new DownloadBatchRegistry(),
                 callbacks,
+                executorCallbacks,
                 fileOperations,
                 downloadsBatchPersistence,
                 downloader,
@@ -322,6 +385,56 @@ public final class DownloadManagerBuilder {
         return liteDownloadManager;
     }
 
+    private DownloadBatchStatusNotificationDispatcher createBatchStatusNotificationDispatcher(DownloadsBatchPersistence downloadsBatchPersistence,
+                                                                                            Executor notificationExecutor) {
+        NotificationManagerCompat notificationManager = NotificationManagerCompat.from(applicationContext);
+        if (summaryNotificationCustomizer.isPresent()) {
+            DownloadBatchesSummaryNotificationCreator summaryNotificationCreator = new DownloadBatchesSummaryNotificationCreator(
+                    applicationContext,
+                    summaryNotificationCustomizer.get(),
+                    notificationChannelProvider
+            );
+            SummaryNotificationDispatcher summaryNotificationDispatcher = new SummaryNotificationDispatcher(
+                    new ServiceNotificationDispatcher<>(SERVICE_LOCK, summaryNotificationCreator, notificationManager),
+                    notificationExecutor,
+                    SchedulerFactory.createFixedRateScheduler(SummaryNotificationDispatcher.DEFAULT_SUMMARY_INTERVAL_IN_MILLIS),
+                    Clock.ELAPSED_REALTIME
+            );
+            return new DownloadBatchStatusNotificationDispatcher(
+                    downloadsBatchPersistence,
+                    summaryNotificationDispatcher,
+                    new HashSet<>(),
+                    Optional.absent()
+            );
+        } else {
+            ServiceNotificationDispatcher<DownloadBatchStatus> notificationDispatcher = new ServiceNotificationDispatcher<>(
+                    SERVICE_LOCK,
+                    notificationCreator,
+                    notificationManager
+            );
+            NotificationUpdateLimiter notificationUpdateLimiter = new NotificationUpdateLimiter(
+                    Clock.ELAPSED_REALTIME,
+                    NotificationUpdateLimiter.DEFAULT_MIN_PROGRESS_INTERVAL_IN_MILLIS,
+                    SchedulerFactory.createFixedRateScheduler(NotificationUpdateLimiter.DEFAULT_MIN_PROGRESS_INTERVAL_IN_MILLIS),
+                    notificationExecutor,
+                    notificationDispatcher::updateNotification
+            );
+            return new DownloadBatchStatusNotificationDispatcher(
+                    downloadsBatchPersistence,
+                    notificationDispatcher,
+                    new HashSet<>(),
+                    Optional.of(notificationUpdateLimiter)
+            );
+        }
+    }
+
+    /**
+     * Same as {@link Executors#newSingleThreadExecutor()}, but exposing its queue so that its depth can be reported.
+     */
+    private static ThreadPoolExecutor newSingleThreadExecutor() {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+    }
+
     private CallbackThrottleCreator getCallbackThrottleCreator(CallbackThrottleCreator.Type callbackThrottleType,
                                                                TimeUnit timeUnit,
                                                                long frequency,
@@ -0,0 +1,58 @@
+package com.novoda.downloadmanager;
+
+import java.util.Map;
+
+/**
+ * A point-in-time view of what the download engine is doing, returned by {@link DownloadManager#getMetrics()}
+ * and passed to each {@link DownloadMetricsListener}.
+ *
+ * Throughput is only kept while data is flowing, a file, batch or host is dropped once its average
+ * has decayed to nothing. Latencies and retries accumulate for the lifetime of the {@link DownloadManager}.
+ */
+public interface DownloadMetrics {
+
+    Map<DownloadFileId, DownloadThroughput> fileThroughput();
+
+    Map<DownloadBatchId, DownloadThroughput> batchThroughput();
+
+    /**
+     * @return the throughput keyed by the host name of the downloaded urls.
+     */
+    Map<String, DownloadThroughput> hostThroughput();
+
+    /**
+     * @return the time from starting to download a file until its first bytes are read, including any retries.
+     */
+    DownloadLatency timeToFirstByte();
+
+    /**
+     * @return the time taken to request the total size of a file.
+     */
+    DownloadLatency sizeProbeLatency();
+
+    /**
+     * @return the time from sending each download request until its response headers are received,
+     * which includes resolving the host and connecting whenever the request needs a new connection.
+     */
+    DownloadLatency responseHeadersLatency();
+
+    /**
+     * @return the time taken by each {@link FilePersistence#write(byte[], int, int)}.
+     */
+    DownloadLatency fileWriteLatency();
+
+    /**
+     * @return the time taken by each transaction on the {@link DownloadsPersistence}.
+     */
+    DownloadLatency persistenceTransactionTime();
+
+    /**
+     * @return the number of times a download request has been retried after a failure mid-stream.
+     */
+    long retries();
+
+    /**
+     * @return the number of tasks waiting to run, keyed by the name of each executor of the engine.
+     */
+    Map<String, Integer> executorQueueDepths();
+}
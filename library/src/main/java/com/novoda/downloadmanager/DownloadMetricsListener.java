@@ -0,0 +1,10 @@
+package com.novoda.downloadmanager;
+
+/**
+ * Registered through {@link DownloadManager#addMetricsListener(DownloadMetricsListener)} to receive
+ * {@link DownloadMetrics} about once a second while downloads are running.
+ */
+public interface DownloadMetricsListener {
+
+    void onMetricsUpdated(DownloadMetrics metrics);
+}
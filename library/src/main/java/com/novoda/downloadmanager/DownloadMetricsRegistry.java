@@ -0,0 +1,176 @@
+package com.novoda.downloadmanager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the {@link DownloadMetrics} of a {@link DownloadManager}. Recording is cheap enough to be done on
+ * every buffer read: a map lookup and an atomic add per meter, nothing is allocated once a meter exists.
+ *
+ * Rates are computed by a sampling tick once per {@link #SAMPLE_INTERVAL_IN_MILLIS}, which also notifies the
+ * {@link DownloadMetricsListener}s. The tick only runs while bytes are flowing and stops itself once every
+ * meter has gone idle, idle meters are dropped so finished files and batches do not accumulate.
+ */
+class DownloadMetricsRegistry {
+
+    static final long SAMPLE_INTERVAL_IN_MILLIS = 1000;
+
+    private final ConcurrentMap<DownloadFileId, ThroughputMeter> fileMeters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<DownloadBatchId, ThroughputMeter> batchMeters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ThroughputMeter> hostMeters = new ConcurrentHashMap<>();
+    private final LatencyRecorder timeToFirstByte = new LatencyRecorder();
+    private final LatencyRecorder sizeProbeLatency = new LatencyRecorder();
+    private final LatencyRecorder responseHeadersLatency = new LatencyRecorder();
+    private final LatencyRecorder fileWriteLatency = new LatencyRecorder();
+    private final LatencyRecorder persistenceTransactionTime = new LatencyRecorder();
+    private final AtomicLong retries = new AtomicLong();
+    private final Map<String, Collection<?>> executorQueues = new ConcurrentHashMap<>();
+    private final Set<DownloadMetricsListener> listeners = new CopyOnWriteArraySet<>();
+    private final AtomicBoolean sampling = new AtomicBoolean(false);
+    private final ActionScheduler.Action sampleTick = this::sample;
+
+    private final ActionScheduler scheduler;
+    private final Clock clock;
+    private final Executor listenerExecutor;
+
+    DownloadMetricsRegistry(ActionScheduler scheduler, Clock clock, Executor listenerExecutor) {
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.listenerExecutor = listenerExecutor;
+    }
+
+    void recordBytesRead(DownloadBatchId downloadBatchId, DownloadFileId downloadFileId, Optional<String> host, long bytes) {
+        mark(fileMeters, downloadFileId, bytes);
+        mark(batchMeters, downloadBatchId, bytes);
+        if (host.isPresent()) {
+            mark(hostMeters, host.get(), bytes);
+        }
+
+        if (!sampling.get() && sampling.compareAndSet(false, true)) {
+            scheduler.schedule(sampleTick);
+        }
+    }
+
+    private <K> void mark(ConcurrentMap<K, ThroughputMeter> meters, K key, long bytes) {
+        ThroughputMeter meter = meters.get(key);
+        while (meter == null || !meter.mark(bytes)) {
+            if (meter != null) {
+                // dropped as idle by the sampling tick after we looked it up
+                meters.remove(key, meter);
+            }
+            ThroughputMeter newMeter = new ThroughputMeter(clock.elapsedTimeInMillis());
+            ThroughputMeter existingMeter = meters.putIfAbsent(key, newMeter);
+            meter = existingMeter == null ? newMeter : existingMeter;
+        }
+    }
+
+    void recordTimeToFirstByte(long durationInNanos) {
+        timeToFirstByte.record(durationInNanos);
+    }
+
+    void recordSizeProbe(long durationInNanos) {
+        sizeProbeLatency.record(durationInNanos);
+    }
+
+    void recordResponseHeaders(long durationInNanos) {
+        responseHeadersLatency.record(durationInNanos);
+    }
+
+    void recordFileWrite(long durationInNanos) {
+        fileWriteLatency.record(durationInNanos);
+    }
+
+    void recordPersistenceTransaction(long durationInNanos) {
+        persistenceTransactionTime.record(durationInNanos);
+    }
+
+    void recordRetry() {
+        retries.incrementAndGet();
+    }
+
+    /**
+     * @param name  reported as the key of {@link DownloadMetrics#executorQueueDepths()}.
+     * @param queue the work queue of the executor, only its size is read.
+     */
+    void trackExecutorQueue(String name, Collection<?> queue) {
+        executorQueues.put(name, queue);
+    }
+
+    void addListener(DownloadMetricsListener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(DownloadMetricsListener listener) {
+        listeners.remove(listener);
+    }
+
+    DownloadMetrics snapshot() {
+        Map<String, Integer> executorQueueDepths = new HashMap<>(executorQueues.size());
+        for (Map.Entry<String, Collection<?>> executorQueue : executorQueues.entrySet()) {
+            executorQueueDepths.put(executorQueue.getKey(), executorQueue.getValue().size());
+        }
+
+        return new LiteDownloadMetrics(
+                snapshotOf(fileMeters),
+                snapshotOf(batchMeters),
+                snapshotOf(hostMeters),
+                timeToFirstByte.snapshot(),
+                sizeProbeLatency.snapshot(),
+                responseHeadersLatency.snapshot(),
+                fileWriteLatency.snapshot(),
+                persistenceTransactionTime.snapshot(),
+                retries.get(),
+                Collections.unmodifiableMap(executorQueueDepths)
+        );
+    }
+
+    private static <K> Map<K, DownloadThroughput> snapshotOf(Map<K, ThroughputMeter> meters) {
+        Map<K, DownloadThroughput> throughput = new HashMap<>(meters.size());
+        for (Map.Entry<K, ThroughputMeter> meter : meters.entrySet()) {
+            throughput.put(meter.getKey(), meter.getValue().snapshot());
+        }
+        return Collections.unmodifiableMap(throughput);
+    }
+
+    private void sample() {
+        long nowInMillis = clock.elapsedTimeInMillis();
+        boolean fileMetersActive = sample(fileMeters, nowInMillis);
+        boolean batchMetersActive = sample(batchMeters, nowInMillis);
+        boolean hostMetersActive = sample(hostMeters, nowInMillis);
+
+        if (!listeners.isEmpty()) {
+            DownloadMetrics metrics = snapshot();
+            for (DownloadMetricsListener listener : listeners) {
+                listenerExecutor.execute(() -> listener.onMetricsUpdated(metrics));
+            }
+        }
+
+        if (!fileMetersActive && !batchMetersActive && !hostMetersActive) {
+            scheduler.cancel(sampleTick);
+            sampling.set(false);
+            // bytes read while the tick was being cancelled would otherwise not be sampled until the next read
+            if (!fileMeters.isEmpty() && sampling.compareAndSet(false, true)) {
+                scheduler.schedule(sampleTick);
+            }
+        }
+    }
+
+    private static <K> boolean sample(ConcurrentMap<K, ThroughputMeter> meters, long nowInMillis) {
+        for (Map.Entry<K, ThroughputMeter> entry : meters.entrySet()) {
+            ThroughputMeter meter = entry.getValue();
+            if (!meter.sample(nowInMillis) && meter.detachIfIdle()) {
+                meters.remove(entry.getKey(), meter);
+            }
+        }
+        return !meters.isEmpty();
+    }
+}
@@ -0,0 +1,46 @@
+package com.novoda.downloadmanager;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded retries with jittered exponential backoff for transient failures while downloading a file.
+ * Each delay is picked at random between half and all of {@code baseDelay * 2^retry}, capped at the maximum delay.
+ */
+final class DownloadRetryPolicy {
+
+    private static final int DEFAULT_MAX_RETRIES = 4;
+    private static final long DEFAULT_BASE_DELAY_IN_MILLIS = TimeUnit.MILLISECONDS.toMillis(500);
+    private static final long DEFAULT_MAX_DELAY_IN_MILLIS = TimeUnit.SECONDS.toMillis(8);
+    private static final int MAX_SHIFT = 30;
+
+    private final int maxRetries;
+    private final long baseDelayInMillis;
+    private final long maxDelayInMillis;
+    private final Random random;
+
+    static DownloadRetryPolicy createDefault() {
+        return new DownloadRetryPolicy(DEFAULT_MAX_RETRIES, DEFAULT_BASE_DELAY_IN_MILLIS, DEFAULT_MAX_DELAY_IN_MILLIS, new Random());
+    }
+
+    static DownloadRetryPolicy createNoRetries() {
+        return new DownloadRetryPolicy(0, 0, 0, new Random());
+    }
+
+    DownloadRetryPolicy(int maxRetries, long baseDelayInMillis, long maxDelayInMillis, Random random) {
+        this.maxRetries = maxRetries;
+        this.baseDelayInMillis = baseDelayInMillis;
+        this.maxDelayInMillis = maxDelayInMillis;
+        this.random = random;
+    }
+
+    boolean canRetry(int retriesSoFar) {
+        return retriesSoFar < maxRetries;
+    }
+
+    long delayInMillisBeforeRetry(int retriesSoFar) {
+        long exponentialDelay = Math.min(maxDelayInMillis, baseDelayInMillis << Math.min(retriesSoFar, MAX_SHIFT));
+        long halfDelay = exponentialDelay / 2;
+        return halfDelay + (long) (random.nextDouble() * (exponentialDelay - halfDelay));
+    }
+}
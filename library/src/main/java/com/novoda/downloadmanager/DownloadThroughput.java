@@ -0,0 +1,22 @@
+package com.novoda.downloadmanager;
+
+/**
+ * The download rate of a file, batch or host, see {@link DownloadMetrics}.
+ */
+public interface DownloadThroughput {
+
+    /**
+     * @return the bytes downloaded since this throughput started being measured.
+     */
+    long bytesDownloaded();
+
+    /**
+     * @return the rate over the last sampling interval of about a second.
+     */
+    long currentBytesPerSecond();
+
+    /**
+     * @return the exponentially weighted moving average of the rate, smoothing out bursts over about ten seconds.
+     */
+    long averageBytesPerSecond();
+}
@@ -0,0 +1,70 @@
+package com.novoda.downloadmanager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable pairing of a persisted batch and its persisted files, keyed by raw file id.
+ * Mutations return a new entry so that readers never observe a half-applied change.
+ */
+final class DownloadsBatchEntry {
+
+    private final DownloadsBatchPersisted batch;
+    private final Map<String, DownloadsFilePersisted> files;
+
+    static DownloadsBatchEntry from(DownloadsBatchPersisted batch) {
+        return new DownloadsBatchEntry(batch, Collections.emptyMap());
+    }
+
+    private DownloadsBatchEntry(DownloadsBatchPersisted batch, Map<String, DownloadsFilePersisted> files) {
+        this.batch = batch;
+        this.files = files;
+    }
+
+    DownloadsBatchPersisted batch() {
+        return batch;
+    }
+
+    List<DownloadsFilePersisted> files() {
+        return new ArrayList<>(files.values());
+    }
+
+    int fileCount() {
+        return files.size();
+    }
+
+    DownloadsBatchEntry withBatch(DownloadsBatchPersisted batch) {
+        return new DownloadsBatchEntry(batch, files);
+    }
+
+    DownloadsBatchEntry withFile(DownloadsFilePersisted file) {
+        Map<String, DownloadsFilePersisted> updatedFiles = new LinkedHashMap<>(files);
+        updatedFiles.put(file.downloadFileId().rawId(), file);
+        return new DownloadsBatchEntry(batch, Collections.unmodifiableMap(updatedFiles));
+    }
+
+    DownloadsBatchEntry withStatus(DownloadBatchStatus.Status status) {
+        return withBatch(new LiteDownloadsBatchPersisted(
+                batch.downloadBatchTitle(),
+                batch.downloadBatchId(),
+                status,
+                batch.downloadedDateTimeInMillis(),
+                batch.notificationSeen(),
+                batch.storageRoot()
+        ));
+    }
+
+    DownloadsBatchEntry withNotificationSeen(boolean notificationSeen) {
+        return withBatch(new LiteDownloadsBatchPersisted(
+                batch.downloadBatchTitle(),
+                batch.downloadBatchId(),
+                batch.downloadBatchStatus(),
+                batch.downloadedDateTimeInMillis(),
+                notificationSeen,
+                batch.storageRoot()
+        ));
+    }
+}
@@ -0,0 +1,57 @@
+package com.novoda.downloadmanager;
+
+import java.util.Map;
+
+/**
+ * Applies decoded records onto a map of {@link DownloadsBatchEntry} keyed by raw batch id,
+ * ignoring records that refer to batches which no longer exist.
+ */
+final class DownloadsBatchEntryReplay implements DownloadsRecordCodec.RecordVisitor {
+
+    private final Map<String, DownloadsBatchEntry> entries;
+
+    DownloadsBatchEntryReplay(Map<String, DownloadsBatchEntry> entries) {
+        this.entries = entries;
+    }
+
+    @Override
+    public void onBatch(DownloadsBatchPersisted batchPersisted) {
+        String rawBatchId = batchPersisted.downloadBatchId().rawId();
+        DownloadsBatchEntry existingEntry = entries.get(rawBatchId);
+        if (existingEntry == null) {
+            entries.put(rawBatchId, DownloadsBatchEntry.from(batchPersisted));
+        } else {
+            entries.put(rawBatchId, existingEntry.withBatch(batchPersisted));
+        }
+    }
+
+    @Override
+    public void onFile(DownloadsFilePersisted filePersisted) {
+        String rawBatchId = filePersisted.downloadBatchId().rawId();
+        DownloadsBatchEntry existingEntry = entries.get(rawBatchId);
+        if (existingEntry != null) {
+            entries.put(rawBatchId, existingEntry.withFile(filePersisted));
+        }
+    }
+
+    @Override
+    public void onStatus(String rawBatchId, DownloadBatchStatus.Status status) {
+        DownloadsBatchEntry existingEntry = entries.get(rawBatchId);
+        if (existingEntry != null) {
+            entries.put(rawBatchId, existingEntry.withStatus(status));
+        }
+    }
+
+    @Override
+    public void onNotificationSeen(String rawBatchId, boolean notificationSeen) {
+        DownloadsBatchEntry existingEntry = entries.get(rawBatchId);
+        if (existingEntry != null) {
+            entries.put(rawBatchId, existingEntry.withNotificationSeen(notificationSeen));
+        }
+    }
+
+    @Override
+    public void onDelete(String rawBatchId) {
+        entries.remove(rawBatchId);
+    }
+}
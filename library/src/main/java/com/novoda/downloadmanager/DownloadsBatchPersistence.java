@@ -5,31 +5,40 @@ import android.support.annotation.WorkerThread;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 
+/**
+ * Writes run in order on the write executor. Loads run on the read executor, but only once the writes queued
+ * before them have run, so a load never brings back a batch whose deletion was already requested.
+ */
 class DownloadsBatchPersistence implements DownloadsBatchStatusPersistence, DownloadsNotificationSeenPersistence {
 
     private static final Optional<DownloadError> NO_DOWNLOAD_ERROR = Optional.absent();
 
-    private final Executor executor;
+    private final Executor readExecutor;
+    private final Executor writeExecutor;
     private final DownloadsFilePersistence downloadsFilePersistence;
     private final DownloadsPersistence downloadsPersistence;
     private final CallbackThrottleCreator callbackThrottleCreator;
     private final ConnectionChecker connectionChecker;
+    private final DownloadMetricsRegistry metrics;
 
-    DownloadsBatchPersistence(Executor executor,
+    DownloadsBatchPersistence(Executor readExecutor,
+                              Executor writeExecutor,
                               DownloadsFilePersistence downloadsFilePersistence,
                               DownloadsPersistence downloadsPersistence,
                               CallbackThrottleCreator callbackThrottleCreator,
-                              ConnectionChecker connectionChecker) {
-        this.executor = executor;
+                              ConnectionChecker connectionChecker,
+                              DownloadMetricsRegistry metrics) {
+        this.readExecutor = readExecutor;
+        this.writeExecutor = writeExecutor;
         this.downloadsFilePersistence = downloadsFilePersistence;
         this.downloadsPersistence = downloadsPersistence;
         this.callbackThrottleCreator = callbackThrottleCreator;
         this.connectionChecker = connectionChecker;
+        this.metrics = metrics;
     }
 
     void persistAsync(DownloadBatchTitle downloadBatchTitle,
@@ -39,7 +48,7 @@ class DownloadsBatchPersistence implements DownloadsBatchStatusPersistence, Down
                       long downloadedDateTimeInMillis,
                       boolean notificationSeen,
                       String storageRoot) {
-        executor.execute(() -> {
+        writeExecutor.execute(() -> {
             persist(downloadBatchTitle, downloadBatchId, status, downloadFiles, downloadedDateTimeInMillis, notificationSeen, storageRoot);
         });
     }
@@ -53,6 +62,7 @@ class DownloadsBatchPersistence implements DownloadsBatchStatusPersistence, Down
                  boolean notificationSeen,
                  String storageRoot) {
         List<DownloadFile> downloadFilesToPersist = new ArrayList<>(downloadFiles);
+        long transactionStartedAtInNanos = System.nanoTime();
         downloadsPersistence.startTransaction();
 
         try {
@@ -71,25 +81,47 @@ class DownloadsBatchPersistence implements DownloadsBatchStatusPersistence, Down
             downloadsPersistence.transactionSuccess();
         } finally {
             downloadsPersistence.endTransaction();
+            metrics.recordPersistenceTransaction(System.nanoTime() - transactionStartedAtInNanos);
         }
     }
 
     void loadAsync(FileOperations fileOperations, LoadBatchesCallback callback) {
-        executor.execute(() -> {
-            List<DownloadsBatchPersisted> batchPersistedList = downloadsPersistence.loadBatches();
-
-            List<DownloadBatch> downloadBatches = new ArrayList<>(batchPersistedList.size());
-            for (DownloadsBatchPersisted batchPersisted : batchPersistedList) {
-                try {
-                    DownloadBatch downloadBatch = getDownloadBatch(fileOperations, batchPersisted);
-                    downloadBatches.add(downloadBatch);
-                } catch (SQLiteConstraintException e) {
-                    Logger.e("exception loading async batch " + batchPersisted.downloadBatchId().rawId());
-                }
-            }
+        writeExecutor.execute(() -> readExecutor.execute(() -> callback.onLoaded(load(fileOperations))));
+    }
 
-            callback.onLoaded(downloadBatches);
-        });
+    /**
+     * Blocks until the writes queued so far have run, must not be called from the write executor.
+     */
+    @WorkerThread
+    List<DownloadBatch> loadSync(FileOperations fileOperations) {
+        awaitQueuedWrites();
+        return load(fileOperations);
+    }
+
+    private void awaitQueuedWrites() {
+        CountDownLatch queuedWritesDone = new CountDownLatch(1);
+        writeExecutor.execute(queuedWritesDone::countDown);
+        try {
+            queuedWritesDone.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Logger.e(e, "Interrupted waiting for queued writes, loading without them.");
+        }
+    }
+
+    private List<DownloadBatch> load(FileOperations fileOperations) {
+        List<DownloadsBatchPersisted> batchPersistedList = downloadsPersistence.loadBatches();
+
+        List<DownloadBatch> downloadBatches = new ArrayList<>(batchPersistedList.size());
+        for (DownloadsBatchPersisted batchPersisted : batchPersistedList) {
+            try {
+                DownloadBatch downloadBatch = getDownloadBatch(fileOperations, batchPersisted);
+                downloadBatches.add(downloadBatch);
+            } catch (SQLiteConstraintException e) {
+                Logger.e("exception loading batch " + batchPersisted.downloadBatchId().rawId());
+            }
+        }
+        return downloadBatches;
     }
 
     private DownloadBatch getDownloadBatch(FileOperations fileOperations, DownloadsBatchPersisted batchPersisted) {
@@ -109,12 +141,13 @@ class DownloadsBatchPersistence implements DownloadsBatchStatusPersistence, Down
 
         downloadFiles = Collections.unmodifiableList(downloadFiles);
 
-        Map<DownloadFileId, Long> downloadedFileSizeMap = new HashMap<>(downloadFiles.size());
+        BatchBytesDownloaded batchBytesDownloaded = new BatchBytesDownloaded(downloadFiles.size());
 
         long currentBytesDownloaded = 0;
         long totalBatchSizeBytes = 0;
-        for (DownloadFile downloadFile : downloadFiles) {
-            downloadedFileSizeMap.put(downloadFile.id(), downloadFile.getCurrentDownloadedBytes());
+        for (int fileIndex = 0; fileIndex < downloadFiles.size(); fileIndex++) {
+            DownloadFile downloadFile = downloadFiles.get(fileIndex);
+            batchBytesDownloaded.update(fileIndex, downloadFile.getCurrentDownloadedBytes());
             currentBytesDownloaded += downloadFile.getCurrentDownloadedBytes();
             long totalFileSize = downloadFile.getTotalSize();
             if (totalFileSize == 0) {
@@ -143,7 +176,7 @@ class DownloadsBatchPersistence implements DownloadsBatchStatusPersistence, Down
         return new DownloadBatch(
                 liteDownloadBatchStatus,
                 downloadFiles,
-                downloadedFileSizeMap,
+                batchBytesDownloaded,
                 DownloadsBatchPersistence.this,
                 fileCallbackThrottle,
                 connectionChecker
@@ -151,7 +184,7 @@ class DownloadsBatchPersistence implements DownloadsBatchStatusPersistence, Down
     }
 
     void deleteAsync(DownloadBatchStatus downloadBatchStatus, DeleteCallback deleteCallback) {
-        executor.execute(() -> {
+        writeExecutor.execute(() -> {
             if (deleteSync(downloadBatchStatus)) {
                 deleteCallback.onDeleted(downloadBatchStatus.getDownloadBatchId());
             } else {
@@ -165,6 +198,7 @@ class DownloadsBatchPersistence implements DownloadsBatchStatusPersistence, Down
     @WorkerThread
     boolean deleteSync(DownloadBatchStatus downloadBatchStatus) {
         DownloadBatchId downloadBatchId = downloadBatchStatus.getDownloadBatchId();
+        long transactionStartedAtInNanos = System.nanoTime();
         downloadsPersistence.startTransaction();
         try {
             if (downloadsPersistence.delete(downloadBatchId)) {
@@ -175,12 +209,14 @@ class DownloadsBatchPersistence implements DownloadsBatchStatusPersistence, Down
             }
         } finally {
             downloadsPersistence.endTransaction();
+            metrics.recordPersistenceTransaction(System.nanoTime() - transactionStartedAtInNanos);
         }
     }
 
     @Override
     public void updateStatusAsync(DownloadBatchId downloadBatchId, DownloadBatchStatus.Status status) {
-        executor.execute(() -> {
+        writeExecutor.execute(() -> {
+            long transactionStartedAtInNanos = System.nanoTime();
             downloadsPersistence.startTransaction();
             try {
                 if (downloadsPersistence.update(downloadBatchId, status)) {
@@ -190,13 +226,15 @@ class DownloadsBatchPersistence implements DownloadsBatchStatusPersistence, Down
                 }
             } finally {
                 downloadsPersistence.endTransaction();
+                metrics.recordPersistenceTransaction(System.nanoTime() - transactionStartedAtInNanos);
             }
         });
     }
 
     @Override
     public void updateNotificationSeenAsync(DownloadBatchStatus downloadBatchStatus, boolean notificationSeen) {
-        executor.execute(() -> {
+        writeExecutor.execute(() -> {
+            long transactionStartedAtInNanos = System.nanoTime();
             downloadsPersistence.startTransaction();
             try {
                 if (downloadsPersistence.update(downloadBatchStatus.getDownloadBatchId(), notificationSeen)) {
@@ -207,6 +245,7 @@ class DownloadsBatchPersistence implements DownloadsBatchStatusPersistence, Down
                 }
             } finally {
                 downloadsPersistence.endTransaction();
+                metrics.recordPersistenceTransaction(System.nanoTime() - transactionStartedAtInNanos);
             }
         });
     }
@@ -214,6 +253,7 @@ class DownloadsBatchPersistence implements DownloadsBatchStatusPersistence, Down
     @WorkerThread
     @Override
     public boolean persistCompletedBatch(CompletedDownloadBatch completedDownloadBatch) {
+        long transactionStartedAtInNanos = System.nanoTime();
         downloadsPersistence.startTransaction();
 
         try {
@@ -225,6 +265,7 @@ class DownloadsBatchPersistence implements DownloadsBatchStatusPersistence, Down
             return false;
         } finally {
             downloadsPersistence.endTransaction();
+            metrics.recordPersistenceTransaction(System.nanoTime() - transactionStartedAtInNanos);
         }
     }
 
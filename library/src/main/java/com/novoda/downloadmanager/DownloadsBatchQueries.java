@@ -0,0 +1,54 @@
+package com.novoda.downloadmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch lookups shared by the persistences that keep their state in memory, mirroring the indexed Room queries.
+ */
+final class DownloadsBatchQueries {
+
+    interface Condition {
+
+        boolean matches(DownloadsBatchPersisted batchPersisted);
+    }
+
+    private DownloadsBatchQueries() {
+        // Uses static factory methods.
+    }
+
+    static Condition withStatus(DownloadBatchStatus.Status status) {
+        return batchPersisted -> batchPersisted.downloadBatchStatus() == status;
+    }
+
+    static Condition withStatusDownloadedBefore(DownloadBatchStatus.Status status, long downloadedBeforeDateTimeInMillis) {
+        return batchPersisted -> batchPersisted.downloadBatchStatus() == status
+                && batchPersisted.downloadedDateTimeInMillis() < downloadedBeforeDateTimeInMillis;
+    }
+
+    static Condition inStorageRoot(StorageRoot storageRoot) {
+        String storageRootPath = storageRoot.path();
+        return batchPersisted -> storageRootPath.equals(batchPersisted.storageRoot());
+    }
+
+    static List<DownloadsBatchPersisted> filter(Iterable<DownloadsBatchEntry> entries, Condition condition) {
+        List<DownloadsBatchPersisted> batches = new ArrayList<>();
+        for (DownloadsBatchEntry entry : entries) {
+            DownloadsBatchPersisted batchPersisted = entry.batch();
+            if (condition.matches(batchPersisted)) {
+                batches.add(batchPersisted);
+            }
+        }
+        return batches;
+    }
+
+    static List<DownloadsBatchPersisted> filterBatches(List<DownloadsBatchPersisted> batches, Condition condition) {
+        List<DownloadsBatchPersisted> matchingBatches = new ArrayList<>();
+        for (DownloadsBatchPersisted batchPersisted : batches) {
+            if (condition.matches(batchPersisted)) {
+                matchingBatches.add(batchPersisted);
+            }
+        }
+        return matchingBatches;
+    }
+}
@@ -74,7 +74,8 @@ class DownloadsFilePersistence {
 
             FileSizeRequester fileSizeRequester = fileOperations.fileSizeRequester();
             FileDownloaderCreator fileDownloaderCreator = fileOperations.fileDownloaderCreator();
-            FileDownloader fileDownloader = fileDownloaderCreator.create();
+            FileDownloadEvents events = new FileDownloadEvents(fileOperations.eventListener(), batchId, downloadFileId);
+            FileDownloader fileDownloader = fileDownloaderCreator.create(fileOperations.metrics(), events);
 
             DownloadFile downloadFile = new DownloadFile(
                     batchId,
@@ -86,7 +87,9 @@ class DownloadsFilePersistence {
                     fileDownloader,
                     fileSizeRequester,
                     filePersistence,
-                    downloadsFilePersistence
+                    downloadsFilePersistence,
+                    fileOperations.metrics(),
+                    events
             );
 
             downloadFiles.add(downloadFile);
@@ -5,6 +5,11 @@ import java.util.List;
 /**
  * For defining the persistence layer that the download-manager will use to
  * persist and retrieve {@link DownloadsBatchPersisted} and {@link DownloadsFilePersisted}.
+ *
+ * Calls come from several threads at once, so implementations must be thread safe.
+ * Asynchronous writes are made in order on a single thread, each within its own transaction.
+ * Loads run on another thread, only once the asynchronous writes requested before them have ended,
+ * and may overlap later transactions, so a load must not observe a transaction that has not ended.
  */
 public interface DownloadsPersistence {
 
@@ -18,6 +23,28 @@ public interface DownloadsPersistence {
 
     List<DownloadsBatchPersisted> loadBatches();
 
+    /**
+     * Defaults to filtering {@link #loadBatches()}, override to query an index instead.
+     */
+    default List<DownloadsBatchPersisted> loadBatches(DownloadBatchStatus.Status status) {
+        return DownloadsBatchQueries.filterBatches(loadBatches(), DownloadsBatchQueries.withStatus(status));
+    }
+
+    /**
+     * Defaults to filtering {@link #loadBatches()}, override to query an index instead.
+     */
+    default List<DownloadsBatchPersisted> loadBatches(DownloadBatchStatus.Status status, long downloadedBeforeDateTimeInMillis) {
+        DownloadsBatchQueries.Condition condition = DownloadsBatchQueries.withStatusDownloadedBefore(status, downloadedBeforeDateTimeInMillis);
+        return DownloadsBatchQueries.filterBatches(loadBatches(), condition);
+    }
+
+    /**
+     * Defaults to filtering {@link #loadBatches()}, override to query an index instead.
+     */
+    default List<DownloadsBatchPersisted> loadBatches(StorageRoot storageRoot) {
+        return DownloadsBatchQueries.filterBatches(loadBatches(), DownloadsBatchQueries.inStorageRoot(storageRoot));
+    }
+
     void persistFile(DownloadsFilePersisted filePersisted);
 
     List<DownloadsFilePersisted> loadAllFiles();
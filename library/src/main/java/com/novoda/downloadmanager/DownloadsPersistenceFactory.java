@@ -0,0 +1,81 @@
+package com.novoda.downloadmanager;
+
+import android.content.Context;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Alternative {@link DownloadsPersistence} implementations that can be supplied through
+ * {@link DownloadManagerBuilder#withDownloadsPersistenceCustom(DownloadsPersistence)}.
+ */
+public final class DownloadsPersistenceFactory {
+
+    private static final String JOURNAL_DIRECTORY_NAME = "download-manager-journal";
+    private static final int DEFAULT_JOURNAL_COMPACTION_THRESHOLD = 2000;
+    private static final String SNAPSHOT_THREAD_NAME = "download-manager-snapshot";
+
+    private DownloadsPersistenceFactory() {
+        // Uses static factory methods.
+    }
+
+    /**
+     * Creates a persistence that appends mutations to a journal in the application files directory
+     * rather than updating database rows. Suited to write-heavy workloads with many status updates.
+     *
+     * @param context used to resolve the application files directory.
+     * @return a journal backed {@link DownloadsPersistence}.
+     */
+    public static DownloadsPersistence createJournalBased(Context context) {
+        return createJournalBased(new File(context.getFilesDir(), JOURNAL_DIRECTORY_NAME));
+    }
+
+    /**
+     * Creates a persistence that appends mutations to a journal stored in the given directory.
+     *
+     * @param directory to hold the journal and its compacted snapshot, created if it does not exist.
+     * @return a journal backed {@link DownloadsPersistence}.
+     */
+    public static DownloadsPersistence createJournalBased(File directory) {
+        return new JournalDownloadsPersistence(directory, DEFAULT_JOURNAL_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Creates a persistence that only keeps batches and files in memory, nothing survives the process.
+     * Transactions are staged per thread and applied on success, a batch at a time.
+     *
+     * @return an in-memory {@link DownloadsPersistence}.
+     */
+    public static DownloadsPersistence createInMemory() {
+        return new InMemoryDownloadsPersistence(Optional.absent(), Optional.absent(), Runnable::run);
+    }
+
+    /**
+     * Creates a persistence that keeps batches and files in memory, restoring them from the given
+     * snapshot on first use and writing a new snapshot in the background whenever they have changed.
+     * Snapshots are written on a dedicated daemon thread, the interval only decides when one is queued.
+     * Transactions are staged per thread and applied on success, a batch at a time.
+     *
+     * @param snapshotFile     to restore from and write to, its parent directory is created if it does not exist.
+     * @param snapshotInterval how long to wait between snapshots.
+     * @param timeUnit         of the snapshot interval.
+     * @return an in-memory {@link DownloadsPersistence} backed by periodic snapshots.
+     */
+    public static DownloadsPersistence createInMemory(File snapshotFile, long snapshotInterval, TimeUnit timeUnit) {
+        return new InMemoryDownloadsPersistence(
+                Optional.of(snapshotFile),
+                Optional.of(SchedulerFactory.createFixedRateScheduler(timeUnit.toMillis(snapshotInterval))),
+                newSnapshotExecutor()
+        );
+    }
+
+    private static Executor newSnapshotExecutor() {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, SNAPSHOT_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
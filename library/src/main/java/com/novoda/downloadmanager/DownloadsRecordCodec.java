@@ -0,0 +1,154 @@
+package com.novoda.downloadmanager;
+
+import android.support.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Compact binary encoding of the mutations applied to a {@link DownloadsPersistence}.
+ * Every record is idempotent so that replaying it more than once leaves the same state behind.
+ */
+final class DownloadsRecordCodec {
+
+    private static final byte TYPE_BATCH = 1;
+    private static final byte TYPE_FILE = 2;
+    private static final byte TYPE_STATUS = 3;
+    private static final byte TYPE_NOTIFICATION_SEEN = 4;
+    private static final byte TYPE_DELETE = 5;
+
+    private static final int INITIAL_RECORD_SIZE = 128;
+
+    interface RecordVisitor {
+
+        void onBatch(DownloadsBatchPersisted batchPersisted);
+
+        void onFile(DownloadsFilePersisted filePersisted);
+
+        void onStatus(String rawBatchId, DownloadBatchStatus.Status status);
+
+        void onNotificationSeen(String rawBatchId, boolean notificationSeen);
+
+        void onDelete(String rawBatchId);
+    }
+
+    private DownloadsRecordCodec() {
+        // Uses static factory methods.
+    }
+
+    static byte[] encodeBatch(DownloadsBatchPersisted batchPersisted) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_RECORD_SIZE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TYPE_BATCH);
+        out.writeUTF(batchPersisted.downloadBatchId().rawId());
+        out.writeUTF(batchPersisted.downloadBatchTitle().asString());
+        out.writeUTF(batchPersisted.downloadBatchStatus().toRawValue());
+        out.writeLong(batchPersisted.downloadedDateTimeInMillis());
+        out.writeBoolean(batchPersisted.notificationSeen());
+        writeNullableUtf(out, batchPersisted.storageRoot());
+        return bytes.toByteArray();
+    }
+
+    static byte[] encodeFile(DownloadsFilePersisted filePersisted) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_RECORD_SIZE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TYPE_FILE);
+        out.writeUTF(filePersisted.downloadBatchId().rawId());
+        out.writeUTF(filePersisted.downloadFileId().rawId());
+        writeNullableUtf(out, filePersisted.filePath().path());
+        out.writeLong(filePersisted.totalFileSize());
+        writeNullableUtf(out, filePersisted.url());
+        return bytes.toByteArray();
+    }
+
+    static byte[] encodeStatus(DownloadBatchId downloadBatchId, DownloadBatchStatus.Status status) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_RECORD_SIZE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TYPE_STATUS);
+        out.writeUTF(downloadBatchId.rawId());
+        out.writeUTF(status.toRawValue());
+        return bytes.toByteArray();
+    }
+
+    static byte[] encodeNotificationSeen(DownloadBatchId downloadBatchId, boolean notificationSeen) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_RECORD_SIZE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TYPE_NOTIFICATION_SEEN);
+        out.writeUTF(downloadBatchId.rawId());
+        out.writeBoolean(notificationSeen);
+        return bytes.toByteArray();
+    }
+
+    static byte[] encodeDelete(DownloadBatchId downloadBatchId) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_RECORD_SIZE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TYPE_DELETE);
+        out.writeUTF(downloadBatchId.rawId());
+        return bytes.toByteArray();
+    }
+
+    static void decode(byte[] record, RecordVisitor visitor) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_BATCH:
+                visitor.onBatch(decodeBatch(in));
+                break;
+            case TYPE_FILE:
+                visitor.onFile(decodeFile(in));
+                break;
+            case TYPE_STATUS:
+                visitor.onStatus(in.readUTF(), DownloadBatchStatus.Status.from(in.readUTF()));
+                break;
+            case TYPE_NOTIFICATION_SEEN:
+                visitor.onNotificationSeen(in.readUTF(), in.readBoolean());
+                break;
+            case TYPE_DELETE:
+                visitor.onDelete(in.readUTF());
+                break;
+            default:
+                throw new IOException("Unknown record type: " + type);
+        }
+    }
+
+    private static DownloadsBatchPersisted decodeBatch(DataInputStream in) throws IOException {
+        DownloadBatchId downloadBatchId = DownloadBatchIdCreator.createSanitizedFrom(in.readUTF());
+        DownloadBatchTitle downloadBatchTitle = DownloadBatchTitleCreator.createFrom(in.readUTF());
+        DownloadBatchStatus.Status status = DownloadBatchStatus.Status.from(in.readUTF());
+        long downloadedDateTimeInMillis = in.readLong();
+        boolean notificationSeen = in.readBoolean();
+        String storageRoot = readNullableUtf(in);
+        return new LiteDownloadsBatchPersisted(
+                downloadBatchTitle,
+                downloadBatchId,
+                status,
+                downloadedDateTimeInMillis,
+                notificationSeen,
+                storageRoot
+        );
+    }
+
+    private static DownloadsFilePersisted decodeFile(DataInputStream in) throws IOException {
+        DownloadBatchId downloadBatchId = DownloadBatchIdCreator.createSanitizedFrom(in.readUTF());
+        DownloadFileId downloadFileId = DownloadFileIdCreator.createFrom(in.readUTF());
+        FilePath filePath = new LiteFilePath(readNullableUtf(in));
+        long totalFileSize = in.readLong();
+        String url = readNullableUtf(in);
+        return new LiteDownloadsFilePersisted(downloadBatchId, downloadFileId, filePath, totalFileSize, url);
+    }
+
+    private static void writeNullableUtf(DataOutputStream out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    private static String readNullableUtf(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
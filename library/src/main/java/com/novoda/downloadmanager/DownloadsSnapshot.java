@@ -0,0 +1,44 @@
+package com.novoda.downloadmanager;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes and reads a full, CRC-framed image of every batch and file.
+ * Writes go to a temporary file that atomically replaces the previous snapshot once synced.
+ */
+final class DownloadsSnapshot {
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int WRITE_BUFFER_BYTES = 16 * 1024;
+
+    private DownloadsSnapshot() {
+        // Uses static factory methods.
+    }
+
+    static void write(File snapshotFile, Iterable<DownloadsBatchEntry> entries) throws IOException {
+        File temporaryFile = new File(snapshotFile.getPath() + TEMPORARY_SUFFIX);
+        try (FileOutputStream fileStream = new FileOutputStream(temporaryFile)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileStream, WRITE_BUFFER_BYTES));
+            for (DownloadsBatchEntry entry : entries) {
+                CrcFramedRecords.write(out, DownloadsRecordCodec.encodeBatch(entry.batch()));
+                for (DownloadsFilePersisted filePersisted : entry.files()) {
+                    CrcFramedRecords.write(out, DownloadsRecordCodec.encodeFile(filePersisted));
+                }
+            }
+            out.flush();
+            fileStream.getFD().sync();
+        }
+
+        if (!temporaryFile.renameTo(snapshotFile)) {
+            throw new IOException("Unable to replace snapshot " + snapshotFile.getAbsolutePath());
+        }
+    }
+
+    static void read(File snapshotFile, DownloadsRecordCodec.RecordVisitor visitor) throws IOException {
+        CrcFramedRecords.read(snapshotFile, record -> DownloadsRecordCodec.decode(record, visitor));
+    }
+}
@@ -0,0 +1,77 @@
+package com.novoda.downloadmanager;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Delivers batch statuses to a {@link DownloadBatchStatusCallback} on its own {@link Executor}.
+ *
+ * Deliveries are serial even on a thread pool, and statuses that arrive while the callback is still busy
+ * are merged so that only the latest status of each batch is delivered. A slow callback therefore only
+ * delays itself, never the other callbacks or the downloads reporting to it.
+ */
+final class ExecutorStatusDelivery implements Runnable {
+
+    private final Executor executor;
+    private final DownloadBatchStatusCallback delivery;
+    private final Object lock = new Object();
+    private final PendingStatuses pendingStatuses = new PendingStatuses();
+
+    private boolean running;
+
+    ExecutorStatusDelivery(Executor executor, DownloadBatchStatusCallback delivery) {
+        this.executor = executor;
+        this.delivery = delivery;
+    }
+
+    void submit(DownloadBatchStatus downloadBatchStatus) {
+        synchronized (lock) {
+            pendingStatuses.put(downloadBatchStatus);
+            if (running) {
+                return;
+            }
+            running = true;
+        }
+        execute();
+    }
+
+    @Override
+    public void run() {
+        synchronized (lock) {
+            pendingStatuses.moveToDraining();
+        }
+
+        try {
+            pendingStatuses.deliverDraining(delivery);
+        } finally {
+            rescheduleIfPending();
+        }
+    }
+
+    /**
+     * Only one run is in flight at a time, statuses submitted during a run are picked up by the next one.
+     */
+    private void rescheduleIfPending() {
+        synchronized (lock) {
+            if (pendingStatuses.isEmpty()) {
+                running = false;
+                return;
+            }
+        }
+        execute();
+    }
+
+    /**
+     * A rejected run leaves its statuses pending, they are delivered along with the next submitted status.
+     */
+    private void execute() {
+        try {
+            executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            synchronized (lock) {
+                running = false;
+            }
+            Logger.e(e, "Executor rejected the status delivery");
+        }
+    }
+}
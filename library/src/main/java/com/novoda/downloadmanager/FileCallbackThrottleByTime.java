@@ -1,11 +1,13 @@
 package com.novoda.downloadmanager;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 class FileCallbackThrottleByTime implements FileCallbackThrottle {
 
     private final ActionScheduler actionScheduler;
+    private final AtomicReference<DownloadBatchStatus> pendingStatus = new AtomicReference<>();
 
-    private DownloadBatchStatus downloadBatchStatus;
-    private DownloadBatchStatusCallback callback;
+    private volatile DownloadBatchStatusCallback callback;
 
     FileCallbackThrottleByTime(ActionScheduler actionScheduler) {
         this.actionScheduler = actionScheduler;
@@ -22,7 +24,7 @@ class FileCallbackThrottleByTime implements FileCallbackThrottle {
             return;
         }
 
-        this.downloadBatchStatus = downloadBatchStatus;
+        pendingStatus.set(downloadBatchStatus);
 
         if (!actionScheduler.isScheduled(action)) {
             actionScheduler.schedule(action);
@@ -32,16 +34,26 @@ class FileCallbackThrottleByTime implements FileCallbackThrottle {
     private final ActionScheduler.Action action = new ActionScheduler.Action() {
         @Override
         public void perform() {
-            callback.onUpdate(downloadBatchStatus);
+            emitPendingStatus();
         }
     };
 
     @Override
     public void stopUpdates() {
+        actionScheduler.cancelAll();
+
         if (callback != null) {
-            callback.onUpdate(downloadBatchStatus);
+            emitPendingStatus();
         }
+    }
 
-        actionScheduler.cancelAll();
+    /**
+     * Ticks where nothing changed since the previous emission are skipped.
+     */
+    private void emitPendingStatus() {
+        DownloadBatchStatus downloadBatchStatus = pendingStatus.getAndSet(null);
+        if (downloadBatchStatus != null) {
+            callback.onUpdate(downloadBatchStatus);
+        }
     }
 }
@@ -0,0 +1,82 @@
+package com.novoda.downloadmanager;
+
+/**
+ * Reports the {@link DownloadEventListener} events of one file, so that the components
+ * taking part in its download do not need to know its ids.
+ *
+ * When no listener is registered every event returns straight away, without reading the clock or allocating.
+ */
+class FileDownloadEvents {
+
+    private final DownloadEventListener listener;
+    private final DownloadBatchId downloadBatchId;
+    private final DownloadFileId downloadFileId;
+    private final boolean enabled;
+
+    FileDownloadEvents(DownloadEventListener listener, DownloadBatchId downloadBatchId, DownloadFileId downloadFileId) {
+        this.listener = listener;
+        this.downloadBatchId = downloadBatchId;
+        this.downloadFileId = downloadFileId;
+        this.enabled = listener != DownloadEventListener.NONE;
+    }
+
+    void sizeProbeStart() {
+        if (enabled) {
+            listener.sizeProbeStart(downloadBatchId, downloadFileId, System.nanoTime());
+        }
+    }
+
+    void sizeProbeEnd(long totalSizeInBytes) {
+        if (enabled) {
+            listener.sizeProbeEnd(downloadBatchId, downloadFileId, totalSizeInBytes, System.nanoTime());
+        }
+    }
+
+    void connectionAcquired() {
+        if (enabled) {
+            listener.connectionAcquired(downloadBatchId, downloadFileId, System.nanoTime());
+        }
+    }
+
+    void headersReceived(int responseCode) {
+        if (enabled) {
+            listener.headersReceived(downloadBatchId, downloadFileId, responseCode, System.nanoTime());
+        }
+    }
+
+    void firstByte() {
+        if (enabled) {
+            listener.firstByte(downloadBatchId, downloadFileId, System.nanoTime());
+        }
+    }
+
+    void chunkWritten(int byteCount) {
+        if (enabled) {
+            listener.chunkWritten(downloadBatchId, downloadFileId, byteCount, System.nanoTime());
+        }
+    }
+
+    void paused() {
+        if (enabled) {
+            listener.paused(downloadBatchId, downloadFileId, System.nanoTime());
+        }
+    }
+
+    void resumed() {
+        if (enabled) {
+            listener.resumed(downloadBatchId, downloadFileId, System.nanoTime());
+        }
+    }
+
+    void completed() {
+        if (enabled) {
+            listener.completed(downloadBatchId, downloadFileId, System.nanoTime());
+        }
+    }
+
+    void failed(DownloadError downloadError) {
+        if (enabled) {
+            listener.failed(downloadBatchId, downloadFileId, downloadError, System.nanoTime());
+        }
+    }
+}
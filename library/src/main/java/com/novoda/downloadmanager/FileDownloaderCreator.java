@@ -26,14 +26,14 @@ class FileDownloaderCreator {
         this.customClass = customClass;
     }
 
-    FileDownloader create() {
+    FileDownloader create(DownloadMetricsRegistry metrics, FileDownloadEvents events) {
         FileDownloader fileDownloader;
 
         switch (type) {
             case NETWORK:
                 HttpClient httpClient = HttpClientFactory.getInstance();
                 NetworkRequestCreator requestCreator = new NetworkRequestCreator();
-                fileDownloader = new NetworkFileDownloader(httpClient, requestCreator);
+                fileDownloader = new NetworkFileDownloader(httpClient, requestCreator, metrics, events);
                 break;
             case CUSTOM:
                 fileDownloader = createCustomFileDownloader();
@@ -5,11 +5,19 @@ class FileOperations {
     private final FilePersistenceCreator filePersistenceCreator;
     private final FileSizeRequester fileSizeRequester;
     private final FileDownloaderCreator fileDownloaderCreator;
+    private final DownloadMetricsRegistry metrics;
+    private final DownloadEventListener eventListener;
 
-    FileOperations(FilePersistenceCreator filePersistenceCreator, FileSizeRequester fileSizeRequester, FileDownloaderCreator fileDownloaderCreator) {
+    FileOperations(FilePersistenceCreator filePersistenceCreator,
+                   FileSizeRequester fileSizeRequester,
+                   FileDownloaderCreator fileDownloaderCreator,
+                   DownloadMetricsRegistry metrics,
+                   DownloadEventListener eventListener) {
         this.filePersistenceCreator = filePersistenceCreator;
         this.fileSizeRequester = fileSizeRequester;
         this.fileDownloaderCreator = fileDownloaderCreator;
+        this.metrics = metrics;
+        this.eventListener = eventListener;
     }
 
     FilePersistenceCreator filePersistenceCreator() {
@@ -23,4 +31,12 @@ class FileOperations {
     FileDownloaderCreator fileDownloaderCreator() {
         return fileDownloaderCreator;
     }
+
+    DownloadMetricsRegistry metrics() {
+        return metrics;
+    }
+
+    DownloadEventListener eventListener() {
+        return eventListener;
+    }
 }
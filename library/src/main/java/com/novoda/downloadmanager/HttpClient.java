@@ -20,5 +20,10 @@ interface HttpClient {
         void closeByteStream() throws IOException;
 
         long bodyContentLength();
+
+        /**
+         * Aborts the underlying call, unblocking any thread waiting on its byte stream.
+         */
+        void cancel();
     }
 }
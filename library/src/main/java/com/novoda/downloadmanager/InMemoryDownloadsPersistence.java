@@ -0,0 +1,320 @@
+package com.novoda.downloadmanager;
+
+import android.database.sqlite.SQLiteConstraintException;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link DownloadsPersistence} that keeps every batch and its files in a concurrent map.
+ * Each mutation atomically swaps an immutable {@link DownloadsBatchEntry}, so reads never lock and
+ * are proportional to the size of their result.
+ *
+ * Mutations made inside a transaction are staged per thread and only applied once the outermost
+ * transaction ends successfully, a failed transaction leaves nothing behind. Reads always see the
+ * committed state. A commit is applied batch by batch, so a concurrent reader may see one batch of a
+ * transaction spanning several batches before the others.
+ *
+ * When a snapshot file is given, the state is restored from it on first use and written back
+ * asynchronously at a fixed interval, only when something changed since the previous snapshot.
+ * The scheduler only triggers a snapshot, writing it is handed to the snapshot executor so a slow
+ * disk never holds up the scheduler thread. At most one snapshot is queued at a time.
+ */
+final class InMemoryDownloadsPersistence implements DownloadsPersistence {
+
+    private final ConcurrentMap<String, DownloadsBatchEntry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean changedSinceSnapshot = new AtomicBoolean(false);
+    private final AtomicBoolean snapshotQueued = new AtomicBoolean(false);
+    private final ThreadLocal<Transaction> transactions = new ThreadLocal<>();
+    private final Optional<File> snapshotFile;
+    private final Optional<ActionScheduler> snapshotScheduler;
+    private final Executor snapshotExecutor;
+    private final Object loadLock = new Object();
+    private final Runnable writeSnapshot = () -> {
+        snapshotQueued.set(false);
+        snapshotIfChanged();
+    };
+
+    private volatile boolean loaded;
+
+    InMemoryDownloadsPersistence(Optional<File> snapshotFile, Optional<ActionScheduler> snapshotScheduler, Executor snapshotExecutor) {
+        this.snapshotFile = snapshotFile;
+        this.snapshotScheduler = snapshotScheduler;
+        this.snapshotExecutor = snapshotExecutor;
+    }
+
+    @Override
+    public void startTransaction() {
+        ensureLoaded();
+        Transaction transaction = transactions.get();
+        if (transaction == null) {
+            transaction = new Transaction();
+            transactions.set(transaction);
+        }
+        transaction.depth++;
+        transaction.markedSuccessful = false;
+    }
+
+    @Override
+    public void endTransaction() {
+        Transaction transaction = transactions.get();
+        if (transaction == null) {
+            throw new IllegalStateException("Cannot end a transaction that has not been started.");
+        }
+
+        if (!transaction.markedSuccessful) {
+            transaction.failed = true;
+        }
+        transaction.markedSuccessful = false;
+        transaction.depth--;
+
+        if (transaction.depth == 0) {
+            transactions.remove();
+            if (!transaction.failed) {
+                for (StagedUpdate stagedUpdate : transaction.stagedUpdates) {
+                    applyNow(stagedUpdate.rawBatchId, stagedUpdate.update);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void transactionSuccess() {
+        Transaction transaction = transactions.get();
+        if (transaction == null) {
+            throw new IllegalStateException("Cannot mark a transaction successful that has not been started.");
+        }
+        transaction.markedSuccessful = true;
+    }
+
+    @Override
+    public void persistBatch(DownloadsBatchPersisted batchPersisted) {
+        ensureLoaded();
+        apply(batchPersisted.downloadBatchId().rawId(), entry -> entry == null
+                ? DownloadsBatchEntry.from(batchPersisted)
+                : entry.withBatch(batchPersisted));
+    }
+
+    @Override
+    public List<DownloadsBatchPersisted> loadBatches() {
+        ensureLoaded();
+        List<DownloadsBatchPersisted> batches = new ArrayList<>(entries.size());
+        for (DownloadsBatchEntry entry : entries.values()) {
+            batches.add(entry.batch());
+        }
+        return batches;
+    }
+
+    @Override
+    public List<DownloadsBatchPersisted> loadBatches(DownloadBatchStatus.Status status) {
+        ensureLoaded();
+        return DownloadsBatchQueries.filter(entries.values(), DownloadsBatchQueries.withStatus(status));
+    }
+
+    @Override
+    public List<DownloadsBatchPersisted> loadBatches(DownloadBatchStatus.Status status, long downloadedBeforeDateTimeInMillis) {
+        ensureLoaded();
+        DownloadsBatchQueries.Condition condition = DownloadsBatchQueries.withStatusDownloadedBefore(status, downloadedBeforeDateTimeInMillis);
+        return DownloadsBatchQueries.filter(entries.values(), condition);
+    }
+
+    @Override
+    public List<DownloadsBatchPersisted> loadBatches(StorageRoot storageRoot) {
+        ensureLoaded();
+        return DownloadsBatchQueries.filter(entries.values(), DownloadsBatchQueries.inStorageRoot(storageRoot));
+    }
+
+    @Override
+    public void persistFile(DownloadsFilePersisted filePersisted) {
+        ensureLoaded();
+        String rawBatchId = filePersisted.downloadBatchId().rawId();
+        if (!apply(rawBatchId, entry -> entry == null ? null : entry.withFile(filePersisted))) {
+            throw new SQLiteConstraintException("No batch " + rawBatchId + " for file " + filePersisted.downloadFileId().rawId());
+        }
+    }
+
+    @Override
+    public List<DownloadsFilePersisted> loadAllFiles() {
+        ensureLoaded();
+        List<DownloadsFilePersisted> files = new ArrayList<>();
+        for (DownloadsBatchEntry entry : entries.values()) {
+            files.addAll(entry.files());
+        }
+        return files;
+    }
+
+    @Override
+    public List<DownloadsFilePersisted> loadFiles(DownloadBatchId batchId) {
+        ensureLoaded();
+        DownloadsBatchEntry entry = entries.get(batchId.rawId());
+        return entry == null ? Collections.emptyList() : entry.files();
+    }
+
+    @Override
+    public boolean delete(DownloadBatchId downloadBatchId) {
+        ensureLoaded();
+        return apply(downloadBatchId.rawId(), entry -> null);
+    }
+
+    @Override
+    public boolean update(DownloadBatchId downloadBatchId, DownloadBatchStatus.Status status) {
+        ensureLoaded();
+        return apply(downloadBatchId.rawId(), entry -> entry == null ? null : entry.withStatus(status));
+    }
+
+    @Override
+    public boolean update(DownloadBatchId downloadBatchId, boolean notificationSeen) {
+        ensureLoaded();
+        return apply(downloadBatchId.rawId(), entry -> entry == null ? null : entry.withNotificationSeen(notificationSeen));
+    }
+
+    @Override
+    public void persistCompletedBatch(CompletedDownloadBatch completedDownloadBatch) {
+        CompletedDownloadBatchWriter.writeTo(this, completedDownloadBatch);
+    }
+
+    /**
+     * Stages the update when a transaction is open on this thread, checked against the entry
+     * as the transaction left it, otherwise applies it straight away.
+     *
+     * @return whether the update changed anything.
+     */
+    private boolean apply(String rawBatchId, EntryUpdate update) {
+        Transaction transaction = transactions.get();
+        if (transaction == null) {
+            return applyNow(rawBatchId, update);
+        }
+
+        DownloadsBatchEntry existingEntry = transaction.stagedEntries.containsKey(rawBatchId)
+                ? transaction.stagedEntries.get(rawBatchId)
+                : entries.get(rawBatchId);
+        DownloadsBatchEntry updatedEntry = update.apply(existingEntry);
+        if (updatedEntry == existingEntry) {
+            return false;
+        }
+        transaction.stagedEntries.put(rawBatchId, updatedEntry);
+        transaction.stagedUpdates.add(new StagedUpdate(rawBatchId, update));
+        return true;
+    }
+
+    /**
+     * Retries the update until it is applied to the entry it was computed from, without locking.
+     * Avoids {@code ConcurrentMap#computeIfPresent}, which is not available before API 24.
+     */
+    private boolean applyNow(String rawBatchId, EntryUpdate update) {
+        while (true) {
+            DownloadsBatchEntry existingEntry = entries.get(rawBatchId);
+            DownloadsBatchEntry updatedEntry = update.apply(existingEntry);
+            if (updatedEntry == existingEntry) {
+                return false;
+            }
+
+            boolean applied;
+            if (existingEntry == null) {
+                applied = entries.putIfAbsent(rawBatchId, updatedEntry) == null;
+            } else if (updatedEntry == null) {
+                applied = entries.remove(rawBatchId, existingEntry);
+            } else {
+                applied = entries.replace(rawBatchId, existingEntry, updatedEntry);
+            }
+
+            if (applied) {
+                changedSinceSnapshot.set(true);
+                return true;
+            }
+        }
+    }
+
+    private void queueSnapshotIfChanged() {
+        if (changedSinceSnapshot.get() && snapshotQueued.compareAndSet(false, true)) {
+            snapshotExecutor.execute(writeSnapshot);
+        }
+    }
+
+    void snapshotIfChanged() {
+        if (!snapshotFile.isPresent() || !changedSinceSnapshot.getAndSet(false)) {
+            return;
+        }
+
+        try {
+            DownloadsSnapshot.write(snapshotFile.get(), entries.values());
+        } catch (IOException e) {
+            changedSinceSnapshot.set(true);
+            Logger.e(e, "Failed to write snapshot " + snapshotFile.get().getAbsolutePath());
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+
+        synchronized (loadLock) {
+            if (loaded) {
+                return;
+            }
+
+            if (snapshotFile.isPresent()) {
+                restoreFrom(snapshotFile.get());
+            }
+
+            if (snapshotScheduler.isPresent()) {
+                snapshotScheduler.get().schedule(this::queueSnapshotIfChanged);
+            }
+            loaded = true;
+        }
+    }
+
+    private void restoreFrom(File snapshot) {
+        File directory = snapshot.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            Logger.e("Unable to create snapshot directory " + directory.getAbsolutePath());
+        }
+
+        try {
+            DownloadsSnapshot.read(snapshot, new DownloadsBatchEntryReplay(entries));
+        } catch (IOException e) {
+            Logger.e(e, "Failed to restore snapshot " + snapshot.getAbsolutePath());
+        }
+    }
+
+    private interface EntryUpdate {
+
+        /**
+         * @param entry the current entry, null when the batch is not persisted.
+         * @return the entry to store, null to remove the batch, or the given entry to leave it untouched.
+         */
+        @Nullable
+        DownloadsBatchEntry apply(@Nullable DownloadsBatchEntry entry);
+    }
+
+    private static final class StagedUpdate {
+
+        private final String rawBatchId;
+        private final EntryUpdate update;
+
+        StagedUpdate(String rawBatchId, EntryUpdate update) {
+            this.rawBatchId = rawBatchId;
+            this.update = update;
+        }
+    }
+
+    private static final class Transaction {
+
+        private final Map<String, DownloadsBatchEntry> stagedEntries = new HashMap<>();
+        private final List<StagedUpdate> stagedUpdates = new ArrayList<>();
+        private int depth;
+        private boolean markedSuccessful;
+        private boolean failed;
+    }
+}
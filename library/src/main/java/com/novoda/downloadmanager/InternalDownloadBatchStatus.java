@@ -1,26 +1,35 @@
 package com.novoda.downloadmanager;
 
+import android.support.annotation.Nullable;
+
 interface InternalDownloadBatchStatus extends DownloadBatchStatus {
 
+    // The markAs methods return whether the transition was allowed and applied.
+
     void updateTotalSize(long totalBatchSizeBytes);
 
     void updateDownloaded(long currentBytesDownloaded);
 
-    void markAsDownloading(DownloadsBatchStatusPersistence persistence);
+    boolean markAsDownloading(DownloadsBatchStatusPersistence persistence);
 
-    void markAsPaused(DownloadsBatchStatusPersistence persistence);
+    boolean markAsPaused(DownloadsBatchStatusPersistence persistence);
 
-    void markAsQueued(DownloadsBatchStatusPersistence persistence);
+    boolean markAsQueued(DownloadsBatchStatusPersistence persistence);
 
-    void markAsDeleting();
+    /**
+     * @return the status the batch moved from, so that the caller can act on it without racing the worker,
+     * or null when the batch cannot be deleted.
+     */
+    @Nullable
+    Status markAsDeleting();
 
-    void markAsDeleted();
+    boolean markAsDeleted();
 
-    void markAsError(Optional<DownloadError> downloadError, DownloadsBatchStatusPersistence persistence);
+    boolean markAsError(Optional<DownloadError> downloadError, DownloadsBatchStatusPersistence persistence);
 
-    void markAsDownloaded(DownloadsBatchStatusPersistence persistence);
+    boolean markAsDownloaded(DownloadsBatchStatusPersistence persistence);
 
-    void markAsWaitingForNetwork(DownloadsBatchPersistence persistence);
+    boolean markAsWaitingForNetwork(DownloadsBatchPersistence persistence);
 
     InternalDownloadBatchStatus copy();
 }
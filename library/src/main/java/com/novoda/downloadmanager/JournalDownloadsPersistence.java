@@ -0,0 +1,408 @@
+package com.novoda.downloadmanager;
+
+import android.database.sqlite.SQLiteConstraintException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link DownloadsPersistence} that appends every committed mutation to a CRC-framed journal
+ * rather than rewriting rows. The full state is held in memory, rebuilt on first use by loading
+ * the latest snapshot and replaying the journal on top of it. Once the journal grows past the
+ * compaction threshold the in-memory state is written out as a new snapshot and the journal is reset.
+ *
+ * Transactions behave like their SQLite counterparts: they are exclusive, may be nested and
+ * are only written to the journal once the outermost transaction ends successfully. A commit is
+ * synced to the device before it returns. When an append fails part way, the journal is truncated
+ * back to its last committed record, so that later commits are not written after a torn record and
+ * discarded on the next load. If even that fails the journal stops accepting writes.
+ */
+final class JournalDownloadsPersistence implements DownloadsPersistence {
+
+    private static final String JOURNAL_FILE_NAME = "downloads.journal";
+    private static final String SNAPSHOT_FILE_NAME = "downloads.snapshot";
+    private static final long UNKNOWN_LENGTH = -1;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, DownloadsBatchEntry> entries = new LinkedHashMap<>();
+    private final Map<String, DownloadsBatchEntry> undoEntries = new HashMap<>();
+    private final ByteArrayOutputStream pendingBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pendingRecords = new DataOutputStream(pendingBytes);
+    private final File directory;
+    private final File journalFile;
+    private final File snapshotFile;
+    private final int compactionThreshold;
+
+    private FileOutputStream journalStream;
+    private boolean loaded;
+    private boolean writesRejected;
+    private int recordsSinceCompaction;
+    private int pendingRecordCount;
+    private int transactionDepth;
+    private boolean transactionMarkedSuccessful;
+    private boolean transactionFailed;
+
+    JournalDownloadsPersistence(File directory, int compactionThreshold) {
+        this.directory = directory;
+        this.journalFile = new File(directory, JOURNAL_FILE_NAME);
+        this.snapshotFile = new File(directory, SNAPSHOT_FILE_NAME);
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    @Override
+    public void startTransaction() {
+        lock.lock();
+        try {
+            ensureLoaded();
+        } catch (IllegalStateException e) {
+            lock.unlock();
+            throw e;
+        }
+        transactionDepth++;
+        transactionMarkedSuccessful = false;
+    }
+
+    @Override
+    public void endTransaction() {
+        if (transactionDepth == 0 || !lock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("Cannot end a transaction that has not been started.");
+        }
+
+        if (!transactionMarkedSuccessful) {
+            transactionFailed = true;
+        }
+        transactionMarkedSuccessful = false;
+        transactionDepth--;
+
+        try {
+            if (transactionDepth == 0) {
+                if (transactionFailed) {
+                    rollback();
+                } else {
+                    commit();
+                }
+                transactionFailed = false;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void transactionSuccess() {
+        if (transactionDepth == 0 || !lock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("Cannot mark a transaction successful that has not been started.");
+        }
+        transactionMarkedSuccessful = true;
+    }
+
+    @Override
+    public void persistBatch(DownloadsBatchPersisted batchPersisted) {
+        startTransaction();
+        try {
+            String rawBatchId = batchPersisted.downloadBatchId().rawId();
+            DownloadsBatchEntry existingEntry = entries.get(rawBatchId);
+            DownloadsBatchEntry entry = existingEntry == null
+                    ? DownloadsBatchEntry.from(batchPersisted)
+                    : existingEntry.withBatch(batchPersisted);
+            apply(rawBatchId, entry, DownloadsRecordCodec.encodeBatch(batchPersisted));
+            transactionSuccess();
+        } catch (IOException e) {
+            Logger.e(e, "Failed to encode batch " + batchPersisted.downloadBatchId().rawId());
+        } finally {
+            endTransaction();
+        }
+    }
+
+    @Override
+    public List<DownloadsBatchPersisted> loadBatches() {
+        lock.lock();
+        try {
+            ensureLoaded();
+            List<DownloadsBatchPersisted> batches = new ArrayList<>(entries.size());
+            for (DownloadsBatchEntry entry : entries.values()) {
+                batches.add(entry.batch());
+            }
+            return batches;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<DownloadsBatchPersisted> loadBatches(DownloadBatchStatus.Status status) {
+        return loadBatchesMatching(DownloadsBatchQueries.withStatus(status));
+    }
+
+    @Override
+    public List<DownloadsBatchPersisted> loadBatches(DownloadBatchStatus.Status status, long downloadedBeforeDateTimeInMillis) {
+        return loadBatchesMatching(DownloadsBatchQueries.withStatusDownloadedBefore(status, downloadedBeforeDateTimeInMillis));
+    }
+
+    @Override
+    public List<DownloadsBatchPersisted> loadBatches(StorageRoot storageRoot) {
+        return loadBatchesMatching(DownloadsBatchQueries.inStorageRoot(storageRoot));
+    }
+
+    private List<DownloadsBatchPersisted> loadBatchesMatching(DownloadsBatchQueries.Condition condition) {
+        lock.lock();
+        try {
+            ensureLoaded();
+            return DownloadsBatchQueries.filter(entries.values(), condition);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void persistFile(DownloadsFilePersisted filePersisted) {
+        startTransaction();
+        try {
+            String rawBatchId = filePersisted.downloadBatchId().rawId();
+            DownloadsBatchEntry existingEntry = entries.get(rawBatchId);
+            if (existingEntry == null) {
+                transactionSuccess();
+                throw new SQLiteConstraintException("No batch " + rawBatchId + " for file " + filePersisted.downloadFileId().rawId());
+            }
+            apply(rawBatchId, existingEntry.withFile(filePersisted), DownloadsRecordCodec.encodeFile(filePersisted));
+            transactionSuccess();
+        } catch (IOException e) {
+            Logger.e(e, "Failed to encode file " + filePersisted.downloadFileId().rawId());
+        } finally {
+            endTransaction();
+        }
+    }
+
+    @Override
+    public List<DownloadsFilePersisted> loadAllFiles() {
+        lock.lock();
+        try {
+            ensureLoaded();
+            List<DownloadsFilePersisted> files = new ArrayList<>();
+            for (DownloadsBatchEntry entry : entries.values()) {
+                files.addAll(entry.files());
+            }
+            return files;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<DownloadsFilePersisted> loadFiles(DownloadBatchId batchId) {
+        lock.lock();
+        try {
+            ensureLoaded();
+            DownloadsBatchEntry entry = entries.get(batchId.rawId());
+            return entry == null ? Collections.emptyList() : entry.files();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(DownloadBatchId downloadBatchId) {
+        startTransaction();
+        try {
+            String rawBatchId = downloadBatchId.rawId();
+            if (!entries.containsKey(rawBatchId)) {
+                transactionSuccess();
+                return false;
+            }
+            apply(rawBatchId, null, DownloadsRecordCodec.encodeDelete(downloadBatchId));
+            transactionSuccess();
+            return true;
+        } catch (IOException e) {
+            Logger.e(e, "Failed to encode deletion of batch " + downloadBatchId.rawId());
+            return false;
+        } finally {
+            endTransaction();
+        }
+    }
+
+    @Override
+    public boolean update(DownloadBatchId downloadBatchId, DownloadBatchStatus.Status status) {
+        startTransaction();
+        try {
+            String rawBatchId = downloadBatchId.rawId();
+            DownloadsBatchEntry existingEntry = entries.get(rawBatchId);
+            if (existingEntry == null) {
+                transactionSuccess();
+                return false;
+            }
+            apply(rawBatchId, existingEntry.withStatus(status), DownloadsRecordCodec.encodeStatus(downloadBatchId, status));
+            transactionSuccess();
+            return true;
+        } catch (IOException e) {
+            Logger.e(e, "Failed to encode status of batch " + downloadBatchId.rawId());
+            return false;
+        } finally {
+            endTransaction();
+        }
+    }
+
+    @Override
+    public boolean update(DownloadBatchId downloadBatchId, boolean notificationSeen) {
+        startTransaction();
+        try {
+            String rawBatchId = downloadBatchId.rawId();
+            DownloadsBatchEntry existingEntry = entries.get(rawBatchId);
+            if (existingEntry == null) {
+                transactionSuccess();
+                return false;
+            }
+            byte[] record = DownloadsRecordCodec.encodeNotificationSeen(downloadBatchId, notificationSeen);
+            apply(rawBatchId, existingEntry.withNotificationSeen(notificationSeen), record);
+            transactionSuccess();
+            return true;
+        } catch (IOException e) {
+            Logger.e(e, "Failed to encode notification seen of batch " + downloadBatchId.rawId());
+            return false;
+        } finally {
+            endTransaction();
+        }
+    }
+
+    @Override
+    public void persistCompletedBatch(CompletedDownloadBatch completedDownloadBatch) {
+        startTransaction();
+        try {
+            CompletedDownloadBatchWriter.writeTo(this, completedDownloadBatch);
+            transactionSuccess();
+        } finally {
+            endTransaction();
+        }
+    }
+
+    private void apply(String rawBatchId, DownloadsBatchEntry entry, byte[] record) throws IOException {
+        CrcFramedRecords.write(pendingRecords, record);
+        if (!undoEntries.containsKey(rawBatchId)) {
+            undoEntries.put(rawBatchId, entries.get(rawBatchId));
+        }
+
+        if (entry == null) {
+            entries.remove(rawBatchId);
+        } else {
+            entries.put(rawBatchId, entry);
+        }
+        pendingRecordCount++;
+    }
+
+    private void commit() {
+        if (pendingBytes.size() == 0) {
+            return;
+        }
+
+        if (writesRejected) {
+            Logger.e("Journal " + journalFile.getAbsolutePath() + " rejects writes after a failed append");
+            rollback();
+            return;
+        }
+
+        long committedLength = UNKNOWN_LENGTH;
+        try {
+            committedLength = journalStream.getChannel().size();
+            pendingBytes.writeTo(journalStream);
+            journalStream.getFD().sync();
+            recordsSinceCompaction += pendingRecordCount;
+            undoEntries.clear();
+        } catch (IOException e) {
+            Logger.e(e, "Failed to append to journal " + journalFile.getAbsolutePath());
+            discardTornAppend(committedLength);
+            rollback();
+            return;
+        } finally {
+            pendingBytes.reset();
+            pendingRecordCount = 0;
+        }
+
+        if (recordsSinceCompaction >= compactionThreshold) {
+            compact();
+        }
+    }
+
+    private void discardTornAppend(long committedLength) {
+        if (committedLength == UNKNOWN_LENGTH) {
+            // failed before anything was appended
+            return;
+        }
+
+        try {
+            journalStream.getChannel().truncate(committedLength);
+        } catch (IOException e) {
+            Logger.e(e, "Failed to discard torn append, journal " + journalFile.getAbsolutePath() + " now rejects writes");
+            writesRejected = true;
+        }
+    }
+
+    private void rollback() {
+        for (Map.Entry<String, DownloadsBatchEntry> undoEntry : undoEntries.entrySet()) {
+            if (undoEntry.getValue() == null) {
+                entries.remove(undoEntry.getKey());
+            } else {
+                entries.put(undoEntry.getKey(), undoEntry.getValue());
+            }
+        }
+        undoEntries.clear();
+        pendingBytes.reset();
+        pendingRecordCount = 0;
+    }
+
+    private void compact() {
+        try {
+            DownloadsSnapshot.write(snapshotFile, entries.values());
+            journalStream.close();
+            journalStream = new FileOutputStream(journalFile, false);
+            recordsSinceCompaction = 0;
+        } catch (IOException e) {
+            Logger.e(e, "Failed to compact journal " + journalFile.getAbsolutePath());
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            Logger.e("Unable to create journal directory " + directory.getAbsolutePath());
+        }
+
+        try {
+            DownloadsBatchEntryReplay replayVisitor = new DownloadsBatchEntryReplay(entries);
+            DownloadsSnapshot.read(snapshotFile, replayVisitor);
+            long validJournalLength = CrcFramedRecords.read(journalFile, record -> {
+                DownloadsRecordCodec.decode(record, replayVisitor);
+                recordsSinceCompaction++;
+            });
+            truncateTornTail(validJournalLength);
+            journalStream = new FileOutputStream(journalFile, true);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open journal " + journalFile.getAbsolutePath(), e);
+        }
+
+        loaded = true;
+    }
+
+    private void truncateTornTail(long validJournalLength) throws IOException {
+        if (journalFile.length() <= validJournalLength) {
+            return;
+        }
+
+        Logger.w("Discarding " + (journalFile.length() - validJournalLength) + " bytes of incomplete journal records");
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(journalFile, "rw")) {
+            randomAccessFile.setLength(validJournalLength);
+        }
+    }
+}
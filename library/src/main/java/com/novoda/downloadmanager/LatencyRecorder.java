@@ -0,0 +1,40 @@
+package com.novoda.downloadmanager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accumulates the durations of one kind of operation with a few atomic updates, without keeping the samples.
+ */
+class LatencyRecorder {
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalInNanos = new AtomicLong();
+    private final AtomicLong lastInNanos = new AtomicLong();
+    private final AtomicLong maxInNanos = new AtomicLong();
+
+    void record(long durationInNanos) {
+        count.incrementAndGet();
+        totalInNanos.addAndGet(durationInNanos);
+        lastInNanos.set(durationInNanos);
+
+        long max = maxInNanos.get();
+        while (durationInNanos > max && !maxInNanos.compareAndSet(max, durationInNanos)) {
+            max = maxInNanos.get();
+        }
+    }
+
+    /**
+     * The fields are read one by one, a snapshot taken during a record may mix the values before and after it.
+     */
+    DownloadLatency snapshot() {
+        long recordedCount = count.get();
+        long averageInNanos = recordedCount == 0 ? 0 : totalInNanos.get() / recordedCount;
+        return new LiteDownloadLatency(
+                recordedCount,
+                TimeUnit.NANOSECONDS.toMicros(lastInNanos.get()),
+                TimeUnit.NANOSECONDS.toMicros(averageInNanos),
+                TimeUnit.NANOSECONDS.toMicros(maxInNanos.get())
+        );
+    }
+}
@@ -2,6 +2,16 @@ package com.novoda.downloadmanager;
 
 import android.support.annotation.Nullable;
 
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The status of a batch is written by the download worker while the manager and the main thread read it,
+ * so it is held in an atomic reference and only moved with compare-and-set. Transitions that would undo a
+ * concurrent pause, delete or completion are rejected, see {@link #canMove(Status, Status)}.
+ *
+ * The status and its error are swapped together as one immutable {@link State}, so a reader never sees an
+ * error without its status, nor the error of a rejected transition.
+ */
 class LiteDownloadBatchStatus implements InternalDownloadBatchStatus {
 
     private static final long ZERO_BYTES = 0;
@@ -12,12 +22,12 @@ class LiteDownloadBatchStatus implements InternalDownloadBatchStatus {
     private final String storageRoot;
     private final long downloadedDateTimeInMillis;
 
-    private Status status;
-    private boolean notificationSeen;
-    private long bytesDownloaded;
-    private long totalBatchSizeBytes;
-    private int percentageDownloaded;
-    private Optional<DownloadError> downloadError;
+    private final AtomicReference<State> state;
+
+    private volatile boolean notificationSeen;
+    private volatile long bytesDownloaded;
+    private volatile long totalBatchSizeBytes;
+    private volatile int percentageDownloaded;
 
     @SuppressWarnings({"checkstyle:parameternumber", "PMD.ExcessiveParameterList"})
     LiteDownloadBatchStatus(DownloadBatchId downloadBatchId,
@@ -35,9 +45,8 @@ class LiteDownloadBatchStatus implements InternalDownloadBatchStatus {
         this.downloadedDateTimeInMillis = downloadedDateTimeInMillis;
         this.bytesDownloaded = bytesDownloaded;
         this.totalBatchSizeBytes = totalBatchSizeBytes;
-        this.downloadError = downloadError;
         this.percentageDownloaded = getPercentageFrom(bytesDownloaded, totalBatchSizeBytes);
-        this.status = status;
+        this.state = new AtomicReference<>(State.of(status, downloadError));
         this.notificationSeen = notificationSeen;
     }
 
@@ -92,7 +101,7 @@ class LiteDownloadBatchStatus implements InternalDownloadBatchStatus {
 
     @Override
     public Status status() {
-        return status;
+        return state.get().status;
     }
 
     @Override
@@ -101,56 +110,120 @@ class LiteDownloadBatchStatus implements InternalDownloadBatchStatus {
     }
 
     @Override
-    public void markAsDownloading(DownloadsBatchStatusPersistence persistence) {
-        status = Status.DOWNLOADING;
-        updateStatusAsync(status, persistence);
+    public boolean markAsDownloading(DownloadsBatchStatusPersistence persistence) {
+        return moveTo(Status.DOWNLOADING, persistence);
     }
 
     @Override
-    public void markAsPaused(DownloadsBatchStatusPersistence persistence) {
-        status = Status.PAUSED;
-        updateStatusAsync(status, persistence);
+    public boolean markAsPaused(DownloadsBatchStatusPersistence persistence) {
+        return moveTo(Status.PAUSED, persistence);
     }
 
     @Override
-    public void markAsQueued(DownloadsBatchStatusPersistence persistence) {
-        status = Status.QUEUED;
-        updateStatusAsync(status, persistence);
+    public boolean markAsQueued(DownloadsBatchStatusPersistence persistence) {
+        return moveTo(Status.QUEUED, persistence);
     }
 
     @Override
-    public void markAsDeleting() {
-        status = Status.DELETING;
-        notificationSeen = false;
+    @Nullable
+    public Status markAsDeleting() {
+        Status previousStatus = moveFrom(Status.DELETING);
+        if (previousStatus != null) {
+            notificationSeen = false;
+        }
+        return previousStatus;
     }
 
     @Override
-    public void markAsDeleted() {
-        status = Status.DELETED;
-        notificationSeen = false;
+    public boolean markAsDeleted() {
+        if (moveTo(Status.DELETED)) {
+            notificationSeen = false;
+            return true;
+        }
+        return false;
     }
 
     @Override
-    public void markAsError(Optional<DownloadError> downloadError, DownloadsBatchStatusPersistence persistence) {
-        this.status = Status.ERROR;
-        this.downloadError = downloadError;
-        updateStatusAsync(status, persistence);
+    public boolean markAsError(Optional<DownloadError> downloadError, DownloadsBatchStatusPersistence persistence) {
+        if (moveFrom(Status.ERROR, downloadError) != null) {
+            updateStatusAsync(Status.ERROR, persistence);
+            return true;
+        }
+        return false;
     }
 
     @Override
-    public void markAsDownloaded(DownloadsBatchStatusPersistence persistence) {
-        this.status = Status.DOWNLOADED;
-        updateStatusAsync(status, persistence);
+    public boolean markAsDownloaded(DownloadsBatchStatusPersistence persistence) {
+        return moveTo(Status.DOWNLOADED, persistence);
     }
 
     @Override
-    public void markAsWaitingForNetwork(DownloadsBatchPersistence persistence) {
-        this.status = Status.WAITING_FOR_NETWORK;
-        updateStatusAsync(status, persistence);
+    public boolean markAsWaitingForNetwork(DownloadsBatchPersistence persistence) {
+        return moveTo(Status.WAITING_FOR_NETWORK, persistence);
+    }
+
+    private boolean moveTo(Status newStatus, DownloadsBatchStatusPersistence persistence) {
+        if (moveTo(newStatus)) {
+            updateStatusAsync(newStatus, persistence);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean moveTo(Status newStatus) {
+        return moveFrom(newStatus) != null;
+    }
+
+    @Nullable
+    private Status moveFrom(Status newStatus) {
+        return moveFrom(newStatus, null);
+    }
+
+    /**
+     * @param downloadError replaces the current error along with the status, null keeps the current error.
+     * @return the status that was replaced, or null when the transition was rejected.
+     */
+    @Nullable
+    private Status moveFrom(Status newStatus, @Nullable Optional<DownloadError> downloadError) {
+        while (true) {
+            State currentState = state.get();
+            Status currentStatus = currentState.status;
+            if (!canMove(currentStatus, newStatus)) {
+                Logger.v(() -> "reject batch " + downloadBatchId.rawId() + " moving from " + currentStatus + " to " + newStatus);
+                return null;
+            }
+            State newState = State.of(newStatus, downloadError == null ? currentState.downloadError : downloadError);
+            if (state.compareAndSet(currentState, newState)) {
+                return currentStatus;
+            }
+        }
+    }
+
+    /**
+     * A deleted batch is final and can only be reached through deleting, which in turn only leads to deleted.
+     * A paused batch waits for the user to resume or delete it, and a downloaded batch can only be deleted.
+     */
+    private static boolean canMove(Status currentStatus, Status newStatus) {
+        switch (currentStatus) {
+            case DELETED:
+                return false;
+            case DELETING:
+                return newStatus == Status.DELETED;
+            case PAUSED:
+                return newStatus == Status.PAUSED
+                        || newStatus == Status.QUEUED
+                        || newStatus == Status.DELETING
+                        || newStatus == Status.DOWNLOADED;
+            case DOWNLOADED:
+                return newStatus == Status.DOWNLOADED || newStatus == Status.DELETING;
+            default:
+                return newStatus != Status.DELETED;
+        }
     }
 
     @Override
     public InternalDownloadBatchStatus copy() {
+        State currentState = state.get();
         return new LiteDownloadBatchStatus(
                 downloadBatchId,
                 downloadBatchTitle,
@@ -158,9 +231,9 @@ class LiteDownloadBatchStatus implements InternalDownloadBatchStatus {
                 downloadedDateTimeInMillis,
                 bytesDownloaded,
                 totalBatchSizeBytes,
-                status,
+                currentState.status,
                 notificationSeen,
-                downloadError
+                currentState.downloadError
         );
     }
 
@@ -171,6 +244,7 @@ class LiteDownloadBatchStatus implements InternalDownloadBatchStatus {
     @Nullable
     @Override
     public DownloadError downloadError() {
+        Optional<DownloadError> downloadError = state.get().downloadError;
         if (downloadError.isPresent()) {
             return downloadError.get();
         } else {
@@ -218,10 +292,7 @@ class LiteDownloadBatchStatus implements InternalDownloadBatchStatus {
         if (storageRoot != null ? !storageRoot.equals(that.storageRoot) : that.storageRoot != null) {
             return false;
         }
-        if (status != that.status) {
-            return false;
-        }
-        return downloadError != null ? downloadError.equals(that.downloadError) : that.downloadError == null;
+        return state.get().equals(that.state.get());
     }
 
     @Override
@@ -230,28 +301,78 @@ class LiteDownloadBatchStatus implements InternalDownloadBatchStatus {
         result = 31 * result + (downloadBatchId != null ? downloadBatchId.hashCode() : 0);
         result = 31 * result + (storageRoot != null ? storageRoot.hashCode() : 0);
         result = 31 * result + (int) (downloadedDateTimeInMillis ^ (downloadedDateTimeInMillis >>> 32));
-        result = 31 * result + (status != null ? status.hashCode() : 0);
+        result = 31 * result + state.get().hashCode();
         result = 31 * result + (notificationSeen ? 1 : 0);
         result = 31 * result + (int) (bytesDownloaded ^ (bytesDownloaded >>> 32));
         result = 31 * result + (int) (totalBatchSizeBytes ^ (totalBatchSizeBytes >>> 32));
         result = 31 * result + percentageDownloaded;
-        result = 31 * result + (downloadError != null ? downloadError.hashCode() : 0);
         return result;
     }
 
     @Override
     public String toString() {
+        State currentState = state.get();
         return "LiteDownloadBatchStatus{"
                 + "downloadBatchTitle=" + downloadBatchTitle
                 + ", downloadBatchId=" + downloadBatchId
                 + ", storageRoot='" + storageRoot + '\''
                 + ", downloadedDateTimeInMillis=" + downloadedDateTimeInMillis
-                + ", status=" + status
+                + ", status=" + currentState.status
                 + ", notificationSeen=" + notificationSeen
                 + ", bytesDownloaded=" + bytesDownloaded
                 + ", totalBatchSizeBytes=" + totalBatchSizeBytes
                 + ", percentageDownloaded=" + percentageDownloaded
-                + ", downloadError=" + downloadError
+                + ", downloadError=" + currentState.downloadError
                 + '}';
     }
+
+    /**
+     * States without an error are shared, so moving between them does not allocate.
+     */
+    private static final class State {
+
+        private static final State[] WITHOUT_ERROR = statesWithoutError();
+
+        private final Status status;
+        private final Optional<DownloadError> downloadError;
+
+        static State of(Status status, Optional<DownloadError> downloadError) {
+            if (downloadError.isPresent()) {
+                return new State(status, downloadError);
+            }
+            return WITHOUT_ERROR[status.ordinal()];
+        }
+
+        private static State[] statesWithoutError() {
+            Status[] statuses = Status.values();
+            State[] states = new State[statuses.length];
+            for (Status status : statuses) {
+                states[status.ordinal()] = new State(status, Optional.absent());
+            }
+            return states;
+        }
+
+        private State(Status status, Optional<DownloadError> downloadError) {
+            this.status = status;
+            this.downloadError = downloadError;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            State that = (State) o;
+            return status == that.status && downloadError.equals(that.downloadError);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * status.hashCode() + downloadError.hashCode();
+        }
+    }
 }
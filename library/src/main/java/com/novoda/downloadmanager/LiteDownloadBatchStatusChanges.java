@@ -0,0 +1,31 @@
+package com.novoda.downloadmanager;
+
+import java.util.List;
+
+class LiteDownloadBatchStatusChanges implements DownloadBatchStatusChanges {
+
+    private final long version;
+    private final List<DownloadBatchStatus> statuses;
+    private final boolean fullSnapshot;
+
+    LiteDownloadBatchStatusChanges(long version, List<DownloadBatchStatus> statuses, boolean fullSnapshot) {
+        this.version = version;
+        this.statuses = statuses;
+        this.fullSnapshot = fullSnapshot;
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public List<DownloadBatchStatus> statuses() {
+        return statuses;
+    }
+
+    @Override
+    public boolean isFullSnapshot() {
+        return fullSnapshot;
+    }
+}
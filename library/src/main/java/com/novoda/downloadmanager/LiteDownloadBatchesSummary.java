@@ -0,0 +1,89 @@
+package com.novoda.downloadmanager;
+
+class LiteDownloadBatchesSummary implements DownloadBatchesSummary {
+
+    private static final long ZERO_BYTES = 0;
+    private static final int TOTAL_PERCENTAGE = 100;
+
+    private final int activeBatchCount;
+    private final long bytesDownloaded;
+    private final long bytesTotalSize;
+    private final long bytesPerSecond;
+
+    LiteDownloadBatchesSummary(int activeBatchCount, long bytesDownloaded, long bytesTotalSize, long bytesPerSecond) {
+        this.activeBatchCount = activeBatchCount;
+        this.bytesDownloaded = bytesDownloaded;
+        this.bytesTotalSize = bytesTotalSize;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    @Override
+    public int activeBatchCount() {
+        return activeBatchCount;
+    }
+
+    @Override
+    public long bytesDownloaded() {
+        return bytesDownloaded;
+    }
+
+    @Override
+    public long bytesTotalSize() {
+        return bytesTotalSize;
+    }
+
+    @Override
+    public int percentageDownloaded() {
+        if (bytesTotalSize <= ZERO_BYTES) {
+            return 0;
+        }
+        return (int) ((((float) bytesDownloaded) / ((float) bytesTotalSize)) * TOTAL_PERCENTAGE);
+    }
+
+    @Override
+    public long bytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        LiteDownloadBatchesSummary that = (LiteDownloadBatchesSummary) o;
+
+        if (activeBatchCount != that.activeBatchCount) {
+            return false;
+        }
+        if (bytesDownloaded != that.bytesDownloaded) {
+            return false;
+        }
+        if (bytesTotalSize != that.bytesTotalSize) {
+            return false;
+        }
+        return bytesPerSecond == that.bytesPerSecond;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = activeBatchCount;
+        result = 31 * result + (int) (bytesDownloaded ^ (bytesDownloaded >>> 32));
+        result = 31 * result + (int) (bytesTotalSize ^ (bytesTotalSize >>> 32));
+        result = 31 * result + (int) (bytesPerSecond ^ (bytesPerSecond >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "LiteDownloadBatchesSummary{"
+                + "activeBatchCount=" + activeBatchCount
+                + ", bytesDownloaded=" + bytesDownloaded
+                + ", bytesTotalSize=" + bytesTotalSize
+                + ", bytesPerSecond=" + bytesPerSecond
+                + '}';
+    }
+}
@@ -1,19 +1,28 @@
 package com.novoda.downloadmanager;
 
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Like {@link LiteDownloadBatchStatus}, the status is moved with compare-and-set so that the download worker
+ * cannot override a concurrent pause or delete, see {@link #canMove(Status, Status)}. The status and its error
+ * are swapped together as one immutable {@link State}.
+ */
 class LiteDownloadFileStatus implements InternalDownloadFileStatus {
 
     private final DownloadBatchId downloadBatchId;
     private final DownloadFileId downloadFileId;
 
-    private FileSize fileSize;
-    private FilePath localFilePath;
-    private Status status;
-    private Optional<DownloadError> downloadError = Optional.absent();
+    private final AtomicReference<State> state;
+
+    private volatile FileSize fileSize;
+    private volatile FilePath localFilePath;
 
     LiteDownloadFileStatus(DownloadBatchId downloadBatchId, DownloadFileId downloadFileId, Status status, FileSize fileSize, FilePath localFilePath) {
         this.downloadBatchId = downloadBatchId;
         this.downloadFileId = downloadFileId;
-        this.status = status;
+        this.state = new AtomicReference<>(State.of(status, Optional.absent()));
         this.fileSize = fileSize;
         this.localFilePath = localFilePath;
     }
@@ -29,7 +38,7 @@ class LiteDownloadFileStatus implements InternalDownloadFileStatus {
     }
 
     private void markAsDownloaded() {
-        status = Status.DOWNLOADED;
+        moveTo(Status.DOWNLOADED);
     }
 
     @Override
@@ -59,68 +68,104 @@ class LiteDownloadFileStatus implements InternalDownloadFileStatus {
 
     @Override
     public boolean isMarkedAsDownloading() {
-        return status == Status.DOWNLOADING;
+        return state.get().status == Status.DOWNLOADING;
     }
 
     @Override
     public boolean isMarkedAsQueued() {
-        return status == Status.QUEUED;
+        return state.get().status == Status.QUEUED;
     }
 
     @Override
     public boolean isMarkedAsDeleted() {
-        return status == Status.DELETED;
+        return state.get().status == Status.DELETED;
     }
 
     @Override
     public void markAsDownloading() {
-        status = Status.DOWNLOADING;
+        moveTo(Status.DOWNLOADING);
     }
 
     @Override
     public void markAsPaused() {
-        status = Status.PAUSED;
+        moveTo(Status.PAUSED);
     }
 
     @Override
     public boolean isMarkedAsError() {
-        return status == Status.ERROR;
+        return state.get().status == Status.ERROR;
     }
 
     @Override
     public void markAsQueued() {
-        status = Status.QUEUED;
+        moveTo(Status.QUEUED);
     }
 
     @Override
     public void markAsDeleted() {
-        status = Status.DELETED;
+        moveTo(Status.DELETED);
     }
 
     @Override
     public void markAsError(DownloadError downloadError) {
-        status = Status.ERROR;
-        this.downloadError = Optional.of(downloadError);
+        moveTo(Status.ERROR, Optional.of(downloadError));
     }
 
     @Override
     public boolean isMarkedAsWaitingForNetwork() {
-        return status == Status.WAITING_FOR_NETWORK;
+        return state.get().status == Status.WAITING_FOR_NETWORK;
     }
 
     @Override
     public void waitForNetwork() {
-        status = Status.WAITING_FOR_NETWORK;
+        moveTo(Status.WAITING_FOR_NETWORK);
     }
 
     @Override
     public Optional<DownloadError> error() {
-        return downloadError;
+        return state.get().downloadError;
     }
 
     @Override
     public Status status() {
-        return status;
+        return state.get().status;
+    }
+
+    private void moveTo(Status newStatus) {
+        moveTo(newStatus, null);
+    }
+
+    /**
+     * @param downloadError replaces the current error along with the status, null keeps the current error.
+     */
+    private void moveTo(Status newStatus, @Nullable Optional<DownloadError> downloadError) {
+        while (true) {
+            State currentState = state.get();
+            Status currentStatus = currentState.status;
+            if (!canMove(currentStatus, newStatus)) {
+                Logger.v(() -> "reject file " + downloadFileId.rawId() + " moving from " + currentStatus + " to " + newStatus);
+                return;
+            }
+            State newState = State.of(newStatus, downloadError == null ? currentState.downloadError : downloadError);
+            if (state.compareAndSet(currentState, newState)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * A deleted file is final. A paused file waits to be queued again, so late errors or network losses
+     * reported by the stopped downloader are ignored.
+     */
+    private static boolean canMove(Status currentStatus, Status newStatus) {
+        switch (currentStatus) {
+            case DELETED:
+                return newStatus == Status.DELETED;
+            case PAUSED:
+                return newStatus != Status.DOWNLOADING && newStatus != Status.ERROR && newStatus != Status.WAITING_FOR_NETWORK;
+            default:
+                return true;
+        }
     }
 
     @Override
@@ -146,10 +191,7 @@ class LiteDownloadFileStatus implements InternalDownloadFileStatus {
         if (localFilePath != null ? !localFilePath.equals(that.localFilePath) : that.localFilePath != null) {
             return false;
         }
-        if (status != that.status) {
-            return false;
-        }
-        return downloadError != null ? downloadError.equals(that.downloadError) : that.downloadError == null;
+        return state.get().equals(that.state.get());
     }
 
     @Override
@@ -158,20 +200,70 @@ class LiteDownloadFileStatus implements InternalDownloadFileStatus {
         result = 31 * result + (downloadFileId != null ? downloadFileId.hashCode() : 0);
         result = 31 * result + (fileSize != null ? fileSize.hashCode() : 0);
         result = 31 * result + (localFilePath != null ? localFilePath.hashCode() : 0);
-        result = 31 * result + (status != null ? status.hashCode() : 0);
-        result = 31 * result + (downloadError != null ? downloadError.hashCode() : 0);
+        result = 31 * result + state.get().hashCode();
         return result;
     }
 
     @Override
     public String toString() {
+        State currentState = state.get();
         return "LiteDownloadFileStatus{"
                 + "downloadBatchId=" + downloadBatchId
                 + ", downloadFileId=" + downloadFileId
                 + ", fileSize=" + fileSize
                 + ", localFilePath=" + localFilePath
-                + ", status=" + status
-                + ", downloadError=" + downloadError
+                + ", status=" + currentState.status
+                + ", downloadError=" + currentState.downloadError
                 + '}';
     }
+
+    /**
+     * States without an error are shared, so moving between them does not allocate.
+     */
+    private static final class State {
+
+        private static final State[] WITHOUT_ERROR = statesWithoutError();
+
+        private final Status status;
+        private final Optional<DownloadError> downloadError;
+
+        static State of(Status status, Optional<DownloadError> downloadError) {
+            if (downloadError.isPresent()) {
+                return new State(status, downloadError);
+            }
+            return WITHOUT_ERROR[status.ordinal()];
+        }
+
+        private static State[] statesWithoutError() {
+            Status[] statuses = Status.values();
+            State[] states = new State[statuses.length];
+            for (Status status : statuses) {
+                states[status.ordinal()] = new State(status, Optional.absent());
+            }
+            return states;
+        }
+
+        private State(Status status, Optional<DownloadError> downloadError) {
+            this.status = status;
+            this.downloadError = downloadError;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            State that = (State) o;
+            return status == that.status && downloadError.equals(that.downloadError);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * status.hashCode() + downloadError.hashCode();
+        }
+    }
 }
@@ -0,0 +1,46 @@
+package com.novoda.downloadmanager;
+
+class LiteDownloadLatency implements DownloadLatency {
+
+    private final long count;
+    private final long lastInMicros;
+    private final long averageInMicros;
+    private final long maxInMicros;
+
+    LiteDownloadLatency(long count, long lastInMicros, long averageInMicros, long maxInMicros) {
+        this.count = count;
+        this.lastInMicros = lastInMicros;
+        this.averageInMicros = averageInMicros;
+        this.maxInMicros = maxInMicros;
+    }
+
+    @Override
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public long lastInMicros() {
+        return lastInMicros;
+    }
+
+    @Override
+    public long averageInMicros() {
+        return averageInMicros;
+    }
+
+    @Override
+    public long maxInMicros() {
+        return maxInMicros;
+    }
+
+    @Override
+    public String toString() {
+        return "LiteDownloadLatency{"
+                + "count=" + count
+                + ", lastInMicros=" + lastInMicros
+                + ", averageInMicros=" + averageInMicros
+                + ", maxInMicros=" + maxInMicros
+                + '}';
+    }
+}
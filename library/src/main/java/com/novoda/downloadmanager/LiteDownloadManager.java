@@ -5,44 +5,47 @@ import android.support.annotation.Nullable;
 import android.support.annotation.WorkerThread;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
 
 class LiteDownloadManager implements DownloadManager {
 
     private final Object waitForDownloadService;
     private final Object waitForDownloadBatchStatusCallback;
-    private final ExecutorService executor;
     private final Handler callbackHandler;
-    private final Map<DownloadBatchId, DownloadBatch> downloadBatchMap;
+    private final DownloadBatchRegistry downloadBatchRegistry;
     private final Set<DownloadBatchStatusCallback> callbacks;
+    private final Map<DownloadBatchStatusCallback, ExecutorStatusDelivery> executorCallbacks;
     private final FileOperations fileOperations;
     private final DownloadsBatchPersistence downloadsBatchPersistence;
     private final LiteDownloadManagerDownloader downloader;
     private final ConnectionChecker connectionChecker;
 
     private DownloadService downloadService;
+    private volatile boolean storedDownloadsLoaded;
 
     // LiteDownloadManager is a complex object.
     @SuppressWarnings({"checkstyle:parameternumber", "PMD.ExcessiveParameterList"})
     LiteDownloadManager(Object waitForDownloadService,
                         Object waitForDownloadBatchStatusCallback,
-                        ExecutorService executor,
                         Handler callbackHandler,
-                        Map<DownloadBatchId, DownloadBatch> downloadBatchMap,
+                        DownloadBatchRegistry downloadBatchRegistry,
                         Set<DownloadBatchStatusCallback> callbacks,
+                        Map<DownloadBatchStatusCallback, ExecutorStatusDelivery> executorCallbacks,
                         FileOperations fileOperations,
                         DownloadsBatchPersistence downloadsBatchPersistence,
                         LiteDownloadManagerDownloader downloader,
                         ConnectionChecker connectionChecker) {
         this.waitForDownloadService = waitForDownloadService;
         this.waitForDownloadBatchStatusCallback = waitForDownloadBatchStatusCallback;
-        this.executor = executor;
         this.callbackHandler = callbackHandler;
-        this.downloadBatchMap = downloadBatchMap;
+        this.downloadBatchRegistry = downloadBatchRegistry;
         this.callbacks = callbacks;
+        this.executorCallbacks = executorCallbacks;
         this.fileOperations = fileOperations;
         this.downloadsBatchPersistence = downloadsBatchPersistence;
         this.downloader = downloader;
@@ -65,20 +68,49 @@ class LiteDownloadManager implements DownloadManager {
     private DownloadsBatchPersistence.LoadBatchesCallback loadBatchesCallback(AllStoredDownloadsSubmittedCallback callback) {
         return downloadBatches -> {
             for (DownloadBatch downloadBatch : downloadBatches) {
-                downloadBatchMap.put(downloadBatch.getId(), downloadBatch);
-                downloader.download(downloadBatch, downloadBatchMap);
+                downloadBatchRegistry.put(downloadBatch.getId(), downloadBatch);
+                downloader.download(downloadBatch, downloadBatchRegistry);
             }
+            storedDownloadsLoaded = true;
 
             callbackHandler.post(callback::onAllDownloadsSubmitted);
         };
     }
 
+    /**
+     * Resumes only the batches in memory that stopped because of the network, falling back
+     * to {@link #submitAllStoredDownloads(AllStoredDownloadsSubmittedCallback)} when the stored
+     * batches have not been loaded into memory yet, e.g. when recovery starts a new process.
+     */
+    void submitNetworkRecoverableDownloads(AllStoredDownloadsSubmittedCallback callback) {
+        if (!storedDownloadsLoaded) {
+            submitAllStoredDownloads(callback);
+            return;
+        }
+
+        for (DownloadBatch downloadBatch : networkRecoveryCandidates()) {
+            if (downloadBatch.isWaitingForNetworkRecovery()) {
+                downloadBatch.resume();
+                downloadBatchRegistry.reindex(downloadBatch);
+                downloader.download(downloadBatch, downloadBatchRegistry);
+            }
+        }
+
+        callbackHandler.post(callback::onAllDownloadsSubmitted);
+    }
+
+    private List<DownloadBatch> networkRecoveryCandidates() {
+        List<DownloadBatch> candidates = downloadBatchRegistry.withStatus(DownloadBatchStatus.Status.WAITING_FOR_NETWORK);
+        candidates.addAll(downloadBatchRegistry.withStatus(DownloadBatchStatus.Status.ERROR));
+        return candidates;
+    }
+
     @Override
     public void download(Batch batch) {
         DownloadBatchId downloadBatchId = batch.downloadBatchId();
-        DownloadBatch downloadBatch = downloadBatchMap.get(downloadBatchId);
+        DownloadBatch downloadBatch = downloadBatchRegistry.get(downloadBatchId);
         if (downloadBatch == null) {
-            downloader.download(batch, downloadBatchMap);
+            downloader.download(batch, downloadBatchRegistry);
         } else {
             Logger.v("abort download batch " + downloadBatchId + " will not download as exists already in the running batches map");
         }
@@ -86,17 +118,18 @@ class LiteDownloadManager implements DownloadManager {
 
     @Override
     public void pause(DownloadBatchId downloadBatchId) {
-        DownloadBatch downloadBatch = downloadBatchMap.get(downloadBatchId);
+        DownloadBatch downloadBatch = downloadBatchRegistry.get(downloadBatchId);
         if (downloadBatch == null) {
             Logger.v("abort pause batch " + downloadBatchId + " will not be paused as it does not exists in the running batches map");
             return;
         }
         downloadBatch.pause();
+        downloadBatchRegistry.reindex(downloadBatch);
     }
 
     @Override
     public void resume(DownloadBatchId downloadBatchId) {
-        DownloadBatch downloadBatch = downloadBatchMap.get(downloadBatchId);
+        DownloadBatch downloadBatch = downloadBatchRegistry.get(downloadBatchId);
         if (downloadBatch == null) {
             Logger.v("abort resume batch " + downloadBatchId + " will not be resume as it does not exists in the running batches map");
             return;
@@ -108,18 +141,20 @@ class LiteDownloadManager implements DownloadManager {
         }
 
         downloadBatch.resume();
-        downloader.download(downloadBatch, downloadBatchMap);
+        downloadBatchRegistry.reindex(downloadBatch);
+        downloader.download(downloadBatch, downloadBatchRegistry);
     }
 
     @Override
     public void delete(DownloadBatchId downloadBatchId) {
-        DownloadBatch downloadBatch = downloadBatchMap.get(downloadBatchId);
+        DownloadBatch downloadBatch = downloadBatchRegistry.get(downloadBatchId);
         if (downloadBatch == null) {
             Logger.v("abort delete batch " + downloadBatchId + " will not be deleted as it does not exists in the running batches map");
             return;
         }
 
         downloadBatch.delete();
+        downloadBatchRegistry.reindex(downloadBatch);
     }
 
     @Override
@@ -129,74 +164,159 @@ class LiteDownloadManager implements DownloadManager {
         }
     }
 
+    @Override
+    public void addDownloadBatchCallback(DownloadBatchStatusCallback downloadBatchCallback, Executor callbackExecutor) {
+        synchronized (waitForDownloadBatchStatusCallback) {
+            executorCallbacks.put(downloadBatchCallback, new ExecutorStatusDelivery(callbackExecutor, downloadBatchCallback));
+        }
+    }
+
+    @Override
+    public void subscribe(DownloadBatchStatusSubscriber subscriber, Executor subscriberExecutor) {
+        subscribe(ConflatingStatusSubscription.Matcher.ALL_BATCHES, subscriber, subscriberExecutor);
+    }
+
+    @Override
+    public void subscribe(DownloadBatchId downloadBatchId, DownloadBatchStatusSubscriber subscriber, Executor subscriberExecutor) {
+        subscribe(ConflatingStatusSubscription.forBatch(downloadBatchId), subscriber, subscriberExecutor);
+    }
+
+    @Override
+    public void subscribe(DownloadBatchStatus.Status status, DownloadBatchStatusSubscriber subscriber, Executor subscriberExecutor) {
+        subscribe(ConflatingStatusSubscription.withStatus(status), subscriber, subscriberExecutor);
+    }
+
+    private void subscribe(ConflatingStatusSubscription.Matcher matcher, DownloadBatchStatusSubscriber subscriber, Executor subscriberExecutor) {
+        downloader.subscribe(ConflatingStatusSubscription.subscribe(subscriberExecutor, subscriber, matcher));
+    }
+
     @Override
     public void removeDownloadBatchCallback(DownloadBatchStatusCallback downloadBatchCallback) {
         synchronized (waitForDownloadBatchStatusCallback) {
             if (callbacks.contains(downloadBatchCallback)) {
                 callbacks.remove(downloadBatchCallback);
             }
+            executorCallbacks.remove(downloadBatchCallback);
         }
     }
 
+    /**
+     * Answers from memory once the stored batches are loaded. Until then the stored batches are read
+     * from persistence, overlaid with any batch already in memory, rather than waiting for the service.
+     */
     @WorkerThread
     @Override
     public List<DownloadBatchStatus> getAllDownloadBatchStatuses() {
-        return Wait.<List<DownloadBatchStatus>>waitFor(downloadService, waitForDownloadService)
-                .thenPerform(this::executeGetAllDownloadBatchStatuses);
+        if (storedDownloadsLoaded) {
+            return statusesOf(downloadBatchRegistry.all());
+        }
+        return statusesOf(withRegisteredBatches(downloadsBatchPersistence.loadSync(fileOperations)));
     }
 
-    private List<DownloadBatchStatus> executeGetAllDownloadBatchStatuses() {
-        List<DownloadBatchStatus> downloadBatchStatuses = new ArrayList<>(downloadBatchMap.size());
+    private static List<DownloadBatchStatus> statusesOf(Collection<DownloadBatch> downloadBatches) {
+        List<DownloadBatchStatus> downloadBatchStatuses = new ArrayList<>(downloadBatches.size());
 
-        for (DownloadBatch downloadBatch : downloadBatchMap.values()) {
+        for (DownloadBatch downloadBatch : downloadBatches) {
             downloadBatchStatuses.add(downloadBatch.status());
         }
         return downloadBatchStatuses;
     }
 
+    private Collection<DownloadBatch> withRegisteredBatches(List<DownloadBatch> storedDownloadBatches) {
+        Map<DownloadBatchId, DownloadBatch> downloadBatches = new LinkedHashMap<>();
+        for (DownloadBatch storedDownloadBatch : storedDownloadBatches) {
+            downloadBatches.put(storedDownloadBatch.getId(), storedDownloadBatch);
+        }
+        for (DownloadBatch registeredDownloadBatch : downloadBatchRegistry.all()) {
+            downloadBatches.put(registeredDownloadBatch.getId(), registeredDownloadBatch);
+        }
+        return downloadBatches.values();
+    }
+
+    @Override
+    public DownloadBatchStatusChanges getChangesSince(long version) {
+        return downloadBatchRegistry.changesSince(version);
+    }
+
+    @Override
+    public DownloadMetrics getMetrics() {
+        return fileOperations.metrics().snapshot();
+    }
+
+    @Override
+    public void addMetricsListener(DownloadMetricsListener listener) {
+        fileOperations.metrics().addListener(listener);
+    }
+
+    @Override
+    public void removeMetricsListener(DownloadMetricsListener listener) {
+        fileOperations.metrics().removeListener(listener);
+    }
+
     @Override
     public void getAllDownloadBatchStatuses(AllBatchStatusesCallback callback) {
-        executor.submit((Runnable) () -> Wait.<Void>waitFor(downloadService, waitForDownloadService)
-                .thenPerform(() -> {
-                    List<DownloadBatchStatus> downloadBatchStatuses = executeGetAllDownloadBatchStatuses();
-                    callbackHandler.post(() -> callback.onReceived(downloadBatchStatuses));
-                    return null;
-                }));
+        if (storedDownloadsLoaded) {
+            List<DownloadBatchStatus> downloadBatchStatuses = statusesOf(downloadBatchRegistry.all());
+            callbackHandler.post(() -> callback.onReceived(downloadBatchStatuses));
+            return;
+        }
+
+        downloadsBatchPersistence.loadAsync(fileOperations, storedDownloadBatches -> {
+            List<DownloadBatchStatus> downloadBatchStatuses = statusesOf(withRegisteredBatches(storedDownloadBatches));
+            callbackHandler.post(() -> callback.onReceived(downloadBatchStatuses));
+        });
     }
 
     @Nullable
     @WorkerThread
     @Override
     public DownloadFileStatus getDownloadFileStatusWithMatching(DownloadBatchId downloadBatchId, DownloadFileId downloadFileId) {
-        return Wait.<DownloadFileStatus>waitFor(downloadService, waitForDownloadService)
-                .thenPerform(() -> executeGetDownloadStatusWithMatching(downloadBatchId, downloadFileId));
+        DownloadBatch downloadBatch = downloadBatchRegistry.get(downloadBatchId);
+        if (downloadBatch == null && !storedDownloadsLoaded) {
+            downloadBatch = storedDownloadBatchWith(downloadBatchId, downloadsBatchPersistence.loadSync(fileOperations));
+        }
+        return downloadFileStatusWith(downloadBatch, downloadFileId);
     }
 
     @Nullable
-    private DownloadFileStatus executeGetDownloadStatusWithMatching(DownloadBatchId downloadBatchId, DownloadFileId downloadFileId) {
-        DownloadBatch downloadBatch = downloadBatchMap.get(downloadBatchId);
-        if (downloadBatch == null) {
-            return null;
+    private DownloadBatch storedDownloadBatchWith(DownloadBatchId downloadBatchId, List<DownloadBatch> storedDownloadBatches) {
+        DownloadBatch registeredDownloadBatch = downloadBatchRegistry.get(downloadBatchId);
+        if (registeredDownloadBatch != null) {
+            return registeredDownloadBatch;
         }
 
-        DownloadFileStatus downloadFileStatus = downloadBatch.downloadFileStatusWith(downloadFileId);
-        if (downloadFileStatus == null) {
-            return null;
+        for (DownloadBatch storedDownloadBatch : storedDownloadBatches) {
+            if (storedDownloadBatch.getId().equals(downloadBatchId)) {
+                return storedDownloadBatch;
+            }
         }
+        return null;
+    }
 
-        return downloadFileStatus;
+    @Nullable
+    private static DownloadFileStatus downloadFileStatusWith(@Nullable DownloadBatch downloadBatch, DownloadFileId downloadFileId) {
+        if (downloadBatch == null) {
+            return null;
+        }
+        return downloadBatch.downloadFileStatusWith(downloadFileId);
     }
 
     @Override
     public void getDownloadFileStatusWithMatching(DownloadBatchId downloadBatchId,
                                                   DownloadFileId downloadFileId,
                                                   DownloadFileStatusCallback callback) {
-        executor.submit((Runnable) () -> Wait.<Void>waitFor(downloadService, waitForDownloadService)
-                .thenPerform(() -> {
-                    DownloadFileStatus downloadFileStatus = executeGetDownloadStatusWithMatching(downloadBatchId, downloadFileId);
-                    callbackHandler.post(() -> callback.onReceived(downloadFileStatus));
-                    return null;
-                }));
+        DownloadBatch downloadBatch = downloadBatchRegistry.get(downloadBatchId);
+        if (downloadBatch != null || storedDownloadsLoaded) {
+            DownloadFileStatus downloadFileStatus = downloadFileStatusWith(downloadBatch, downloadFileId);
+            callbackHandler.post(() -> callback.onReceived(downloadFileStatus));
+            return;
+        }
+
+        downloadsBatchPersistence.loadAsync(fileOperations, storedDownloadBatches -> {
+            DownloadBatch storedDownloadBatch = storedDownloadBatchWith(downloadBatchId, storedDownloadBatches);
+            DownloadFileStatus downloadFileStatus = downloadFileStatusWith(storedDownloadBatch, downloadFileId);
+            callbackHandler.post(() -> callback.onReceived(downloadFileStatus));
+        });
     }
 
     @Override
@@ -208,10 +328,13 @@ class LiteDownloadManager implements DownloadManager {
         DownloadsNetworkRecoveryCreator.getInstance().updateAllowedConnectionType(allowedConnectionType);
 
         if (connectionChecker.isAllowedToDownload()) {
-            submitAllStoredDownloads(() -> Logger.v("Allowed connectionType updated to " + allowedConnectionType + ". All jobs submitted"));
+            submitNetworkRecoverableDownloads(
+                    () -> Logger.v("Allowed connectionType updated to " + allowedConnectionType + ". All jobs submitted")
+            );
         } else {
-            for (DownloadBatch downloadBatch : downloadBatchMap.values()) {
+            for (DownloadBatch downloadBatch : downloadBatchRegistry.all()) {
                 downloadBatch.waitForNetwork();
+                downloadBatchRegistry.reindex(downloadBatch);
             }
         }
     }
@@ -224,11 +347,11 @@ class LiteDownloadManager implements DownloadManager {
             return false;
         }
 
-        return downloader.addCompletedBatch(completedDownloadBatch, downloadBatchMap);
+        return downloader.addCompletedBatch(completedDownloadBatch, downloadBatchRegistry);
     }
 
     private boolean alreadyContainsBatch(CompletedDownloadBatch completedDownloadBatch) {
-        return downloadBatchMap.containsKey(completedDownloadBatch.downloadBatchId());
+        return downloadBatchRegistry.contains(completedDownloadBatch.downloadBatchId());
     }
 
 }
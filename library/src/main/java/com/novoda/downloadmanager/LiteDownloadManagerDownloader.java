@@ -4,27 +4,33 @@ import android.os.Handler;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 
 import static com.novoda.downloadmanager.DownloadBatchStatus.Status.DELETED;
 import static com.novoda.downloadmanager.DownloadBatchStatus.Status.DELETING;
 import static com.novoda.downloadmanager.DownloadBatchStatus.Status.DOWNLOADED;
 import static com.novoda.downloadmanager.DownloadBatchStatus.Status.PAUSED;
+import static com.novoda.downloadmanager.DownloadBatchStatus.Status.QUEUED;
 
 class LiteDownloadManagerDownloader {
 
     private final Object waitForDownloadService;
     private final Object waitForDownloadBatchStatusCallback;
     private final ExecutorService executor;
-    private final Handler callbackHandler;
     private final FileOperations fileOperations;
     private final DownloadsBatchPersistence downloadsBatchPersistence;
     private final DownloadsFilePersistence downloadsFilePersistence;
     private final DownloadBatchStatusNotificationDispatcher notificationDispatcher;
     private final Set<DownloadBatchStatusCallback> callbacks;
+    private final Map<DownloadBatchStatusCallback, ExecutorStatusDelivery> executorCallbacks;
     private final ConnectionChecker connectionChecker;
     private final CallbackThrottleCreator callbackThrottleCreator;
     private final DownloadBatchStatusFilter downloadBatchStatusFilter;
+    private final CoalescingStatusDelivery statusDelivery;
+    private final ExecutorStatusDelivery notificationDelivery;
+    private final Set<ConflatingStatusSubscription> subscriptions = new CopyOnWriteArraySet<>();
 
     private DownloadService downloadService;
 
@@ -38,25 +44,34 @@ class LiteDownloadManagerDownloader {
                                   DownloadsBatchPersistence downloadsBatchPersistence,
                                   DownloadsFilePersistence downloadsFilePersistence,
                                   DownloadBatchStatusNotificationDispatcher notificationDispatcher,
+                                  Executor notificationExecutor,
                                   ConnectionChecker connectionChecker,
                                   Set<DownloadBatchStatusCallback> callbacks,
+                                  Map<DownloadBatchStatusCallback, ExecutorStatusDelivery> executorCallbacks,
                                   CallbackThrottleCreator callbackThrottleCreator,
                                   DownloadBatchStatusFilter downloadBatchStatusFilter) {
         this.waitForDownloadService = waitForDownloadService;
         this.waitForDownloadBatchStatusCallback = waitForDownloadBatchStatusCallback;
         this.executor = executor;
-        this.callbackHandler = callbackHandler;
         this.fileOperations = fileOperations;
         this.downloadsBatchPersistence = downloadsBatchPersistence;
         this.downloadsFilePersistence = downloadsFilePersistence;
         this.notificationDispatcher = notificationDispatcher;
         this.connectionChecker = connectionChecker;
         this.callbacks = callbacks;
+        this.executorCallbacks = executorCallbacks;
         this.callbackThrottleCreator = callbackThrottleCreator;
         this.downloadBatchStatusFilter = downloadBatchStatusFilter;
+        this.statusDelivery = new CoalescingStatusDelivery(
+                callbackHandler,
+                Clock.ELAPSED_REALTIME,
+                CoalescingStatusDelivery.FRAME_INTERVAL_IN_MILLIS,
+                this::deliver
+        );
+        this.notificationDelivery = new ExecutorStatusDelivery(notificationExecutor, notificationDispatcher::updateNotification);
     }
 
-    void download(Batch batch, Map<DownloadBatchId, DownloadBatch> downloadBatchMap) {
+    void download(Batch batch, DownloadBatchRegistry downloadBatchRegistry) {
         DownloadBatch downloadBatch = DownloadBatchFactory.newInstance(
                 batch,
                 fileOperations,
@@ -66,32 +81,35 @@ class LiteDownloadManagerDownloader {
                 connectionChecker
         );
 
-        downloadBatchMap.put(downloadBatch.getId(), downloadBatch);
+        downloadBatchStatusFilter.onBatchAdded(downloadBatch.getId());
+        downloadBatchRegistry.put(downloadBatch.getId(), downloadBatch);
         executor.submit(downloadBatch::updateTotalSize);
-        download(downloadBatch, downloadBatchMap);
+        download(downloadBatch, downloadBatchRegistry);
     }
 
-    void download(DownloadBatch downloadBatch, Map<DownloadBatchId, DownloadBatch> downloadBatchMap) {
+    void download(DownloadBatch downloadBatch, DownloadBatchRegistry downloadBatchRegistry) {
         DownloadBatchId downloadBatchId = downloadBatch.getId();
-        if (!downloadBatchMap.containsKey(downloadBatchId)) {
-            downloadBatchMap.put(downloadBatchId, downloadBatch);
-        }
+        downloadBatchRegistry.putIfAbsent(downloadBatchId, downloadBatch);
 
         executor.submit(new Runnable() {
             @Override
             public void run() {
                 Wait.<Void>waitFor(downloadService, waitForDownloadService)
-                        .thenPerform(executeDownload(downloadBatch, downloadBatchMap));
+                        .thenPerform(executeDownload(downloadBatch, downloadBatchRegistry));
             }
         });
     }
 
-    private Wait.ThenPerform.Action<Void> executeDownload(DownloadBatch downloadBatch, Map<DownloadBatchId, DownloadBatch> downloadBatchMap) {
+    private Wait.ThenPerform.Action<Void> executeDownload(DownloadBatch downloadBatch, DownloadBatchRegistry downloadBatchRegistry) {
         return () -> {
             InternalDownloadBatchStatus downloadBatchStatus = downloadBatch.status();
             updateStatusToQueuedIfNeeded(downloadBatchStatus);
+            if (downloadBatchStatus.status() == QUEUED) {
+                notifyBatchQueued(downloadBatch.getId());
+            }
+            downloadBatchRegistry.reindex(downloadBatch);
             downloadBatch.persistAsync();
-            downloadService.download(downloadBatch, downloadBatchCallback(downloadBatchMap));
+            downloadService.download(downloadBatch, downloadBatchCallback(downloadBatchRegistry));
             return null;
         };
     }
@@ -103,35 +121,74 @@ class LiteDownloadManagerDownloader {
         }
     }
 
-    private DownloadBatchStatusCallback downloadBatchCallback(Map<DownloadBatchId, DownloadBatch> downloadBatchMap) {
+    private void notifyBatchQueued(DownloadBatchId downloadBatchId) {
+        DownloadEventListener eventListener = fileOperations.eventListener();
+        if (eventListener != DownloadEventListener.NONE) {
+            eventListener.batchQueued(downloadBatchId, System.nanoTime());
+        }
+    }
+
+    private DownloadBatchStatusCallback downloadBatchCallback(DownloadBatchRegistry downloadBatchRegistry) {
         return downloadBatchStatus -> {
             if (downloadBatchStatus == null || downloadBatchStatusFilter.shouldFilterOut(downloadBatchStatus)) {
                 return;
             }
 
             DownloadBatchId downloadBatchId = downloadBatchStatus.getDownloadBatchId();
+            downloadBatchRegistry.recordChange(downloadBatchStatus);
             if (downloadBatchStatus.status() == DELETED) {
-                Logger.v("batch " + downloadBatchId.rawId() + " is finally deleted, removing it from the map");
-                downloadBatchMap.remove(downloadBatchId);
+                Logger.v(() -> "batch " + downloadBatchId.rawId() + " is finally deleted, removing it from the registry");
+                downloadBatchRegistry.remove(downloadBatchId);
+            } else {
+                downloadBatchRegistry.reindex(downloadBatchId);
             }
 
-            callbackHandler.post(() -> {
-                synchronized (waitForDownloadBatchStatusCallback) {
-                    for (DownloadBatchStatusCallback callback : callbacks) {
-                        callback.onUpdate(downloadBatchStatus);
-                    }
-                    notificationDispatcher.updateNotification(downloadBatchStatus);
-                }
-            });
+            statusDelivery.submit(downloadBatchStatus);
+            if (!executorCallbacks.isEmpty()) {
+                submitToExecutorCallbacks(downloadBatchStatus);
+            }
+            notificationDelivery.submit(downloadBatchStatus);
+            if (!subscriptions.isEmpty()) {
+                offerToSubscriptions(downloadBatchStatus);
+            }
         };
     }
 
+    /**
+     * Iterating allocates, so the loop is kept out of the progress path when no executor callback is added.
+     */
+    private void submitToExecutorCallbacks(DownloadBatchStatus downloadBatchStatus) {
+        for (ExecutorStatusDelivery executorCallback : executorCallbacks.values()) {
+            executorCallback.submit(downloadBatchStatus);
+        }
+    }
+
+    private void offerToSubscriptions(DownloadBatchStatus downloadBatchStatus) {
+        for (ConflatingStatusSubscription subscription : subscriptions) {
+            if (!subscription.offer(downloadBatchStatus)) {
+                subscriptions.remove(subscription);
+            }
+        }
+    }
+
+    void subscribe(ConflatingStatusSubscription subscription) {
+        subscriptions.add(subscription);
+    }
+
+    private void deliver(DownloadBatchStatus downloadBatchStatus) {
+        synchronized (waitForDownloadBatchStatusCallback) {
+            for (DownloadBatchStatusCallback callback : callbacks) {
+                callback.onUpdate(downloadBatchStatus);
+            }
+        }
+    }
+
     void setDownloadService(DownloadService downloadService) {
         this.downloadService = downloadService;
         notificationDispatcher.setDownloadService(downloadService);
     }
 
-    public boolean addCompletedBatch(CompletedDownloadBatch completedDownloadBatch, Map<DownloadBatchId, DownloadBatch> downloadBatchMap) {
+    public boolean addCompletedBatch(CompletedDownloadBatch completedDownloadBatch, DownloadBatchRegistry downloadBatchRegistry) {
         DownloadBatch downloadBatch = DownloadBatchFactory.newInstance(
                 completedDownloadBatch.asBatch(),
                 fileOperations,
@@ -140,7 +197,8 @@ class LiteDownloadManagerDownloader {
                 callbackThrottleCreator.create(),
                 connectionChecker
         );
-        downloadBatchMap.put(downloadBatch.getId(), downloadBatch);
+        downloadBatchStatusFilter.onBatchAdded(downloadBatch.getId());
+        downloadBatchRegistry.put(downloadBatch.getId(), downloadBatch);
         return downloadsBatchPersistence.persistCompletedBatch(completedDownloadBatch);
     }
 }
@@ -0,0 +1,90 @@
+package com.novoda.downloadmanager;
+
+import java.util.Map;
+
+class LiteDownloadMetrics implements DownloadMetrics {
+
+    private final Map<DownloadFileId, DownloadThroughput> fileThroughput;
+    private final Map<DownloadBatchId, DownloadThroughput> batchThroughput;
+    private final Map<String, DownloadThroughput> hostThroughput;
+    private final DownloadLatency timeToFirstByte;
+    private final DownloadLatency sizeProbeLatency;
+    private final DownloadLatency responseHeadersLatency;
+    private final DownloadLatency fileWriteLatency;
+    private final DownloadLatency persistenceTransactionTime;
+    private final long retries;
+    private final Map<String, Integer> executorQueueDepths;
+
+    @SuppressWarnings({"checkstyle:parameternumber", "PMD.ExcessiveParameterList"})
+    LiteDownloadMetrics(Map<DownloadFileId, DownloadThroughput> fileThroughput,
+                        Map<DownloadBatchId, DownloadThroughput> batchThroughput,
+                        Map<String, DownloadThroughput> hostThroughput,
+                        DownloadLatency timeToFirstByte,
+                        DownloadLatency sizeProbeLatency,
+                        DownloadLatency responseHeadersLatency,
+                        DownloadLatency fileWriteLatency,
+                        DownloadLatency persistenceTransactionTime,
+                        long retries,
+                        Map<String, Integer> executorQueueDepths) {
+        this.fileThroughput = fileThroughput;
+        this.batchThroughput = batchThroughput;
+        this.hostThroughput = hostThroughput;
+        this.timeToFirstByte = timeToFirstByte;
+        this.sizeProbeLatency = sizeProbeLatency;
+        this.responseHeadersLatency = responseHeadersLatency;
+        this.fileWriteLatency = fileWriteLatency;
+        this.persistenceTransactionTime = persistenceTransactionTime;
+        this.retries = retries;
+        this.executorQueueDepths = executorQueueDepths;
+    }
+
+    @Override
+    public Map<DownloadFileId, DownloadThroughput> fileThroughput() {
+        return fileThroughput;
+    }
+
+    @Override
+    public Map<DownloadBatchId, DownloadThroughput> batchThroughput() {
+        return batchThroughput;
+    }
+
+    @Override
+    public Map<String, DownloadThroughput> hostThroughput() {
+        return hostThroughput;
+    }
+
+    @Override
+    public DownloadLatency timeToFirstByte() {
+        return timeToFirstByte;
+    }
+
+    @Override
+    public DownloadLatency sizeProbeLatency() {
+        return sizeProbeLatency;
+    }
+
+    @Override
+    public DownloadLatency responseHeadersLatency() {
+        return responseHeadersLatency;
+    }
+
+    @Override
+    public DownloadLatency fileWriteLatency() {
+        return fileWriteLatency;
+    }
+
+    @Override
+    public DownloadLatency persistenceTransactionTime() {
+        return persistenceTransactionTime;
+    }
+
+    @Override
+    public long retries() {
+        return retries;
+    }
+
+    @Override
+    public Map<String, Integer> executorQueueDepths() {
+        return executorQueueDepths;
+    }
+}
@@ -0,0 +1,38 @@
+package com.novoda.downloadmanager;
+
+class LiteDownloadThroughput implements DownloadThroughput {
+
+    private final long bytesDownloaded;
+    private final long currentBytesPerSecond;
+    private final long averageBytesPerSecond;
+
+    LiteDownloadThroughput(long bytesDownloaded, long currentBytesPerSecond, long averageBytesPerSecond) {
+        this.bytesDownloaded = bytesDownloaded;
+        this.currentBytesPerSecond = currentBytesPerSecond;
+        this.averageBytesPerSecond = averageBytesPerSecond;
+    }
+
+    @Override
+    public long bytesDownloaded() {
+        return bytesDownloaded;
+    }
+
+    @Override
+    public long currentBytesPerSecond() {
+        return currentBytesPerSecond;
+    }
+
+    @Override
+    public long averageBytesPerSecond() {
+        return averageBytesPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return "LiteDownloadThroughput{"
+                + "bytesDownloaded=" + bytesDownloaded
+                + ", currentBytesPerSecond=" + currentBytesPerSecond
+                + ", averageBytesPerSecond=" + averageBytesPerSecond
+                + '}';
+    }
+}
@@ -2,56 +2,49 @@ package com.novoda.downloadmanager;
 
 import android.content.Context;
 
-import com.evernote.android.job.JobManager;
-import com.evernote.android.job.JobRequest;
-
 import java.util.concurrent.TimeUnit;
 
 class LiteDownloadsNetworkRecoveryEnabled implements DownloadsNetworkRecovery {
 
-    private static final long ONE_SECOND_IN_MILLIS = TimeUnit.SECONDS.toMillis(1);
-    private static final long FIVE_MINUTES_IN_MILLIS = TimeUnit.MINUTES.toMillis(5);
-    private static final boolean ENFORCE_NETWORK_REQUIREMENTS = true;
+    private static final long RESCHEDULE_WINDOW_IN_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final long NEVER_SCHEDULED = -1;
+
+    private final RecoveryJobScheduler recoveryJobScheduler;
+    private final Clock clock;
 
     private ConnectionType connectionType;
+    private long lastScheduledTimeInMillis = NEVER_SCHEDULED;
 
     LiteDownloadsNetworkRecoveryEnabled(Context context, LiteDownloadManager liteDownloadManager, ConnectionType connectionType) {
+        this(JobManagerRecoveryJobScheduler.newInstance(context, liteDownloadManager), connectionType, Clock.ELAPSED_REALTIME);
+    }
+
+    LiteDownloadsNetworkRecoveryEnabled(RecoveryJobScheduler recoveryJobScheduler, ConnectionType connectionType, Clock clock) {
+        this.recoveryJobScheduler = recoveryJobScheduler;
         this.connectionType = connectionType;
-        JobManager jobManager = JobManager.create(context);
-        jobManager.addJobCreator(new LiteJobCreator(liteDownloadManager));
+        this.clock = clock;
     }
 
     @Override
-    public void scheduleRecovery() {
-        JobRequest.Builder builder = new JobRequest.Builder(LiteJobCreator.TAG)
-                .setExecutionWindow(ONE_SECOND_IN_MILLIS, FIVE_MINUTES_IN_MILLIS)
-                .setRequirementsEnforced(ENFORCE_NETWORK_REQUIREMENTS);
-
-        switch (connectionType) {
-            case ALL:
-                builder.setRequiredNetworkType(JobRequest.NetworkType.CONNECTED);
-                break;
-            case UNMETERED:
-                builder.setRequiredNetworkType(JobRequest.NetworkType.UNMETERED);
-                break;
-            case METERED:
-                builder.setRequiredNetworkType(JobRequest.NetworkType.METERED);
-                break;
-            default:
-                Logger.w("Unknown ConnectionType: " + connectionType);
-                break;
+    public synchronized void scheduleRecovery() {
+        long nowInMillis = clock.elapsedTimeInMillis();
+        if (recentlyScheduled(nowInMillis) && recoveryJobScheduler.hasScheduledJob()) {
+            Logger.v("Network Recovery already scheduled, skipping.");
+            return;
         }
 
-        JobRequest jobRequest = builder.build();
-        JobManager jobManager = JobManager.instance();
-
-        jobManager.cancelAllForTag(LiteJobCreator.TAG);
-        jobManager.schedule(jobRequest);
+        recoveryJobScheduler.schedule(connectionType);
+        lastScheduledTimeInMillis = nowInMillis;
         Logger.v("Scheduling Network Recovery.");
     }
 
+    private boolean recentlyScheduled(long nowInMillis) {
+        return lastScheduledTimeInMillis != NEVER_SCHEDULED && nowInMillis - lastScheduledTimeInMillis < RESCHEDULE_WINDOW_IN_MILLIS;
+    }
+
     @Override
-    public void updateAllowedConnectionType(ConnectionType allowedConnectionType) {
+    public synchronized void updateAllowedConnectionType(ConnectionType allowedConnectionType) {
         connectionType = allowedConnectionType;
+        lastScheduledTimeInMillis = NEVER_SCHEDULED;
     }
 }
@@ -15,7 +15,7 @@ class LiteJobDownload extends Job {
     @NonNull
     @Override
     protected Result onRunJob(Params params) {
-        liteDownloadManager.submitAllStoredDownloads(() -> Logger.v("LiteJobDownload all jobs submitted"));
+        liteDownloadManager.submitNetworkRecoverableDownloads(() -> Logger.v("LiteJobDownload all jobs submitted"));
         Logger.v("LiteJobDownload run network recovery job");
         return Result.SUCCESS;
     }
@@ -0,0 +1,13 @@
+package com.novoda.downloadmanager;
+
+/**
+ * The minimum level of the messages passed to the attached {@link LogHandle}s,
+ * see {@link DownloadManagerBuilder#withLogLevel(LogLevel)}.
+ */
+public enum LogLevel {
+    VERBOSE,
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR
+}
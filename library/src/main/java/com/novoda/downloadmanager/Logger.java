@@ -1,24 +1,39 @@
 package com.novoda.downloadmanager;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * This class provides a mechanism for adding a variety
  * of {@link LogHandle} that when logging will log to all handles.
+ *
+ * Every call first checks that a handle is attached and that its level is enabled, so a disabled call costs
+ * no more than that check. Messages that are expensive to build can be passed as a {@link Message},
+ * which is only built once the call is known to be logged. The caller location is only captured when enabled
+ * through {@link #captureCallerLocation(boolean)}, walking the stack of every logged call is costly.
  */
 @SuppressWarnings("PMD.ShortMethodName")
 final class Logger {
 
-    private static final int DOT_CLASS = 5;
-    private static final int STACK_DEPTH = 4;
-    private static final List<LogHandle> HANDLES = new ArrayList<>();
+    private static final int DOT_JAVA = 5;
+    private static final List<LogHandle> HANDLES = new CopyOnWriteArrayList<>();
+
+    private static volatile LogLevel minimumLevel = LogLevel.VERBOSE;
+    private static volatile boolean callerLocationCaptured;
 
     private Logger() {
         // Uses static methods.
     }
 
+    /**
+     * A log message that is only built when it is going to be logged.
+     */
+    interface Message {
+
+        String build();
+    }
+
     /**
      * Adds a given {@link LogHandle} to the internal list of LogHandles.
      *
@@ -44,15 +59,54 @@ final class Logger {
         HANDLES.clear();
     }
 
+    /**
+     * Messages below the given level are dropped before being built.
+     *
+     * @param level the lowest {@link LogLevel} passed to the handles.
+     */
+    static void setMinimumLevel(LogLevel level) {
+        minimumLevel = level;
+    }
+
+    /**
+     * @param captured whether messages are prefixed with the source file, line and method they were logged from.
+     */
+    static void captureCallerLocation(boolean captured) {
+        callerLocationCaptured = captured;
+    }
+
+    /**
+     * @param level of the message about to be logged.
+     * @return true when a message of the given level reaches at least one {@link LogHandle}.
+     */
+    static boolean isLoggable(LogLevel level) {
+        return level.compareTo(minimumLevel) >= 0 && !HANDLES.isEmpty();
+    }
+
     /**
      * Calls each internally stored {@link LogHandle#v(Object...)}
      *
      * @param message to pass to each {@link LogHandle}
      */
     public static void v(Object... message) {
-        for (int i = 0; i < HANDLES.size(); i++) {
-            LogHandle handle = HANDLES.get(i);
-            handle.v(getDetailedLog(message));
+        if (!isLoggable(LogLevel.VERBOSE)) {
+            return;
+        }
+
+        Object[] detailedLog = getDetailedLog(message);
+        for (LogHandle handle : HANDLES) {
+            handle.v(detailedLog);
+        }
+    }
+
+    /**
+     * Builds the message and calls each internally stored {@link LogHandle#v(Object...)}, only if verbose messages are logged.
+     *
+     * @param message to build and pass to each {@link LogHandle}
+     */
+    public static void v(Message message) {
+        if (isLoggable(LogLevel.VERBOSE)) {
+            v(message.build());
         }
     }
 
@@ -62,9 +116,13 @@ final class Logger {
      * @param message to pass to each {@link LogHandle}
      */
     public static void i(Object... message) {
-        for (int i = 0; i < HANDLES.size(); i++) {
-            LogHandle handle = HANDLES.get(i);
-            handle.i(getDetailedLog(message));
+        if (!isLoggable(LogLevel.INFO)) {
+            return;
+        }
+
+        Object[] detailedLog = getDetailedLog(message);
+        for (LogHandle handle : HANDLES) {
+            handle.i(detailedLog);
         }
     }
 
@@ -74,9 +132,24 @@ final class Logger {
      * @param message to pass to each {@link LogHandle}
      */
     public static void d(Object... message) {
-        for (int i = 0; i < HANDLES.size(); i++) {
-            LogHandle handle = HANDLES.get(i);
-            handle.d(getDetailedLog(message));
+        if (!isLoggable(LogLevel.DEBUG)) {
+            return;
+        }
+
+        Object[] detailedLog = getDetailedLog(message);
+        for (LogHandle handle : HANDLES) {
+            handle.d(detailedLog);
+        }
+    }
+
+    /**
+     * Builds the message and calls each internally stored {@link LogHandle#d(Object...)}, only if debug messages are logged.
+     *
+     * @param message to build and pass to each {@link LogHandle}
+     */
+    public static void d(Message message) {
+        if (isLoggable(LogLevel.DEBUG)) {
+            d(message.build());
         }
     }
 
@@ -87,9 +160,13 @@ final class Logger {
      * @param message   to pass to each {@link LogHandle}
      */
     public static void d(Throwable throwable, Object... message) {
-        for (int i = 0; i < HANDLES.size(); i++) {
-            LogHandle handle = HANDLES.get(i);
-            handle.d(throwable, getDetailedLog(message));
+        if (!isLoggable(LogLevel.DEBUG)) {
+            return;
+        }
+
+        Object[] detailedLog = getDetailedLog(message);
+        for (LogHandle handle : HANDLES) {
+            handle.d(throwable, detailedLog);
         }
     }
 
@@ -99,9 +176,24 @@ final class Logger {
      * @param message to pass to each {@link LogHandle}
      */
     public static void w(Object... message) {
-        for (int i = 0; i < HANDLES.size(); i++) {
-            LogHandle handle = HANDLES.get(i);
-            handle.w(getDetailedLog(message));
+        if (!isLoggable(LogLevel.WARN)) {
+            return;
+        }
+
+        Object[] detailedLog = getDetailedLog(message);
+        for (LogHandle handle : HANDLES) {
+            handle.w(detailedLog);
+        }
+    }
+
+    /**
+     * Builds the message and calls each internally stored {@link LogHandle#w(Object...)}, only if warnings are logged.
+     *
+     * @param message to build and pass to each {@link LogHandle}
+     */
+    public static void w(Message message) {
+        if (isLoggable(LogLevel.WARN)) {
+            w(message.build());
         }
     }
 
@@ -112,9 +204,13 @@ final class Logger {
      * @param message   to pass to each {@link LogHandle}
      */
     public static void w(Throwable throwable, Object... message) {
-        for (int i = 0; i < HANDLES.size(); i++) {
-            LogHandle handle = HANDLES.get(i);
-            handle.w(throwable, getDetailedLog(message));
+        if (!isLoggable(LogLevel.WARN)) {
+            return;
+        }
+
+        Object[] detailedLog = getDetailedLog(message);
+        for (LogHandle handle : HANDLES) {
+            handle.w(throwable, detailedLog);
         }
     }
 
@@ -124,9 +220,13 @@ final class Logger {
      * @param message to pass to each {@link LogHandle}
      */
     public static void e(Object... message) {
-        for (int i = 0; i < HANDLES.size(); i++) {
-            LogHandle handle = HANDLES.get(i);
-            handle.e(getDetailedLog(message));
+        if (!isLoggable(LogLevel.ERROR)) {
+            return;
+        }
+
+        Object[] detailedLog = getDetailedLog(message);
+        for (LogHandle handle : HANDLES) {
+            handle.e(detailedLog);
         }
     }
 
@@ -137,27 +237,49 @@ final class Logger {
      * @param message   to pass to each {@link LogHandle}
      */
     public static void e(Throwable throwable, Object... message) {
-        for (int i = 0; i < HANDLES.size(); i++) {
-            LogHandle handle = HANDLES.get(i);
-            handle.e(throwable, getDetailedLog(message));
+        if (!isLoggable(LogLevel.ERROR)) {
+            return;
+        }
+
+        Object[] detailedLog = getDetailedLog(message);
+        for (LogHandle handle : HANDLES) {
+            handle.e(throwable, detailedLog);
         }
     }
 
     private static Object[] getDetailedLog(Object... message) {
         Thread currentThread = Thread.currentThread();
-        final StackTraceElement trace = currentThread.getStackTrace()[STACK_DEPTH];
-        final String filename = trace.getFileName();
-        final String linkableSourcePosition = String.format(
-                Locale.UK,
-                "(%s.java:%d)",
-                filename.substring(0, filename.length() - DOT_CLASS),
-                trace.getLineNumber()
-        );
-        final String logPrefix = String.format("[%s][%s.%s] ", currentThread.getName(), linkableSourcePosition, trace.getMethodName());
+        String logPrefix;
+        if (callerLocationCaptured) {
+            logPrefix = "[" + currentThread.getName() + "]" + callerLocation(currentThread) + " ";
+        } else {
+            logPrefix = "[" + currentThread.getName() + "] ";
+        }
+
         Object[] detailedMessage = new Object[message.length + 1];
         detailedMessage[0] = logPrefix;
         System.arraycopy(message, 0, detailedMessage, 1, message.length);
         return detailedMessage;
     }
 
+    /**
+     * Looks for the first frame outside of this class, the number of frames above it differs between runtimes.
+     */
+    private static String callerLocation(Thread currentThread) {
+        boolean insideLogger = false;
+        for (StackTraceElement trace : currentThread.getStackTrace()) {
+            boolean loggerFrame = Logger.class.getName().equals(trace.getClassName());
+            if (loggerFrame) {
+                insideLogger = true;
+            } else if (insideLogger) {
+                String filename = trace.getFileName();
+                String linkableSourcePosition = filename == null
+                        ? String.format(Locale.UK, "(Unknown:%d)", trace.getLineNumber())
+                        : String.format(Locale.UK, "(%s.java:%d)", filename.substring(0, filename.length() - DOT_JAVA), trace.getLineNumber());
+                return String.format("[%s.%s]", linkableSourcePosition, trace.getMethodName());
+            }
+        }
+        return "";
+    }
+
 }
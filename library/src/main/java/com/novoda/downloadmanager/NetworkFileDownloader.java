@@ -4,34 +4,110 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 
+/**
+ * Downloads a file over http. Transient failures mid-stream are retried according to the
+ * {@link DownloadRetryPolicy}, reopening the connection with a Range request from the last byte received.
+ * The error is only reported to the {@link Callback} once the retries are exhausted.
+ *
+ * Stopping cancels the in-flight call, so a read blocked on a stalled socket returns immediately
+ * rather than holding the worker until the read timeout.
+ */
 class NetworkFileDownloader implements FileDownloader {
 
     private static final int BUFFER_SIZE = 8 * 512;
+    private static final long NO_BYTES = 0;
 
     private final HttpClient httpClient;
     private final NetworkRequestCreator requestCreator;
+    private final DownloadRetryPolicy retryPolicy;
+    private final DownloadMetricsRegistry metrics;
+    private final FileDownloadEvents events;
+    private final Object retryLock = new Object();
 
-    private boolean canDownload;
+    private volatile boolean canDownload;
+    private volatile HttpClient.NetworkResponse activeResponse;
 
-    NetworkFileDownloader(HttpClient httpClient, NetworkRequestCreator requestCreator) {
+    NetworkFileDownloader(HttpClient httpClient,
+                          NetworkRequestCreator requestCreator,
+                          DownloadMetricsRegistry metrics,
+                          FileDownloadEvents events) {
+        this(httpClient, requestCreator, DownloadRetryPolicy.createDefault(), metrics, events);
+    }
+
+    NetworkFileDownloader(HttpClient httpClient,
+                          NetworkRequestCreator requestCreator,
+                          DownloadRetryPolicy retryPolicy,
+                          DownloadMetricsRegistry metrics,
+                          FileDownloadEvents events) {
         this.httpClient = httpClient;
         this.requestCreator = requestCreator;
+        this.retryPolicy = retryPolicy;
+        this.metrics = metrics;
+        this.events = events;
     }
 
     @Override
     public void startDownloading(String url, FileSize fileSize, Callback callback) {
         canDownload = true;
 
+        long bytesDownloaded = fileSize.areBytesDownloadedKnown() ? fileSize.currentSize() : NO_BYTES;
+        int retries = 0;
+        boolean retrying = false;
         NetworkRequest request = createRequestFrom(url, fileSize);
+        while (true) {
+            DownloadAttempt attempt = new DownloadAttempt(retrying && bytesDownloaded > NO_BYTES);
+            try {
+                execute(request, attempt, callback, url);
+                break;
+            } catch (IOException e) {
+                bytesDownloaded += attempt.bytesRead;
+                if (attempt.bytesRead > NO_BYTES) {
+                    retries = 0;
+                }
+
+                if (!canDownload) {
+                    Logger.v(() -> "Download of " + url + " stopped while in flight");
+                    break;
+                }
+
+                if (attempt.rangeIgnored || !retryPolicy.canRetry(retries)) {
+                    Logger.e(e, "Exception with http request");
+                    callback.onError(e.getMessage());
+                    break;
+                }
+
+                long delayInMillis = retryPolicy.delayInMillisBeforeRetry(retries);
+                retries++;
+                metrics.recordRetry();
+                Logger.w("Retrying " + url + " from byte " + bytesDownloaded + " in " + delayInMillis + "ms, retry " + retries);
+                if (!waitBeforeRetry(delayInMillis)) {
+                    break;
+                }
+                retrying = true;
+                request = createRequestFrom(url, bytesDownloaded, fileSize.totalSize());
+            }
+        }
+
+        callback.onDownloadFinished();
+    }
+
+    private void execute(NetworkRequest request, DownloadAttempt attempt, Callback callback, String url) throws IOException {
         HttpClient.NetworkResponse response = null;
         try {
+            long requestStartedAtInNanos = System.nanoTime();
             response = httpClient.execute(request);
+            events.connectionAcquired();
+            metrics.recordResponseHeaders(System.nanoTime() - requestStartedAtInNanos);
+            activeResponse = response;
+            if (!canDownload) {
+                response.cancel();
+                return;
+            }
             int responseCode = response.code();
-            processResponse(callback, response, responseCode, url);
-        } catch (IOException e) {
-            Logger.e(e, "Exception with http request");
-            callback.onError(e.getMessage());
+            events.headersReceived(responseCode);
+            processResponse(callback, response, responseCode, url, attempt);
         } finally {
+            activeResponse = null;
             try {
                 if (response != null) {
                     response.closeByteStream();
@@ -40,11 +116,18 @@ class NetworkFileDownloader implements FileDownloader {
                 Logger.e(e, "Exception while closing the body response");
             }
         }
-
-        callback.onDownloadFinished();
     }
 
-    private void processResponse(Callback callback, HttpClient.NetworkResponse response, int responseCode, String url) throws IOException {
+    private void processResponse(Callback callback,
+                                 HttpClient.NetworkResponse response,
+                                 int responseCode,
+                                 String url,
+                                 DownloadAttempt attempt) throws IOException {
+        if (attempt.resumingAfterFailure && responseCode == HttpURLConnection.HTTP_OK) {
+            attempt.rangeIgnored = true;
+            throw new IOException("Request: " + url + " ignored the Range header, cannot resume in place.");
+        }
+
         if (isValid(responseCode)) {
             byte[] buffer = new byte[BUFFER_SIZE];
             int readLast = 0;
@@ -53,6 +136,7 @@ class NetworkFileDownloader implements FileDownloader {
                     readLast = in.read(buffer);
 
                     if (readLast != 0 && readLast != -1) {
+                        attempt.bytesRead += readLast;
                         callback.onBytesRead(buffer, readLast);
                     }
                 }
@@ -80,8 +164,49 @@ class NetworkFileDownloader implements FileDownloader {
         }
     }
 
+    private NetworkRequest createRequestFrom(String url, long bytesDownloaded, long totalSize) {
+        if (bytesDownloaded > NO_BYTES) {
+            return requestCreator.createDownloadRequestWithDownloadedBytesHeader(url, bytesDownloaded, totalSize);
+        } else {
+            return requestCreator.createDownloadRequest(url);
+        }
+    }
+
+    private boolean waitBeforeRetry(long delayInMillis) {
+        synchronized (retryLock) {
+            try {
+                if (canDownload && delayInMillis > 0) {
+                    retryLock.wait(delayInMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return canDownload;
+        }
+    }
+
     @Override
     public void stopDownloading() {
-        canDownload = false;
+        synchronized (retryLock) {
+            canDownload = false;
+            retryLock.notifyAll();
+        }
+
+        HttpClient.NetworkResponse response = activeResponse;
+        if (response != null) {
+            response.cancel();
+        }
+    }
+
+    private static class DownloadAttempt {
+
+        private final boolean resumingAfterFailure;
+        private long bytesRead;
+        private boolean rangeIgnored;
+
+        DownloadAttempt(boolean resumingAfterFailure) {
+            this.resumingAfterFailure = resumingAfterFailure;
+        }
     }
 }
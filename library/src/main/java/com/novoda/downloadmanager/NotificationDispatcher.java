@@ -0,0 +1,11 @@
+package com.novoda.downloadmanager;
+
+import android.support.annotation.WorkerThread;
+
+interface NotificationDispatcher<T> {
+
+    @WorkerThread
+    void updateNotification(T payload);
+
+    void setService(DownloadManagerService service);
+}
@@ -0,0 +1,132 @@
+package com.novoda.downloadmanager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static com.novoda.downloadmanager.DownloadBatchStatus.Status.DELETED;
+
+/**
+ * Decides whether a {@link DownloadBatchStatus} changes what its notification shows, and limits how often
+ * progress alone may redraw it. Android drops notification updates posted too quickly, and each one is a
+ * call into the system server.
+ *
+ * A change of status or title is always rendered, a change of percentage at most once per interval.
+ * Progress held back by the interval is kept and rendered by a trailing tick once the interval has passed,
+ * so a transfer that stalls right after a suppressed update does not leave the notification behind.
+ * Statuses and ticks both run on the notification lane, so the rendered states are not synchronized.
+ */
+class NotificationUpdateLimiter {
+
+    static final long DEFAULT_MIN_PROGRESS_INTERVAL_IN_MILLIS = 500;
+
+    private final Clock clock;
+    private final long minProgressIntervalInMillis;
+    private final ActionScheduler scheduler;
+    private final Executor notificationExecutor;
+    private final DownloadBatchStatusCallback trailingRender;
+    private final Map<DownloadBatchId, RenderedState> renderedStates = new HashMap<>();
+    private final ActionScheduler.Action trailingTick = this::postRenderPending;
+
+    NotificationUpdateLimiter(Clock clock,
+                              long minProgressIntervalInMillis,
+                              ActionScheduler scheduler,
+                              Executor notificationExecutor,
+                              DownloadBatchStatusCallback trailingRender) {
+        this.clock = clock;
+        this.minProgressIntervalInMillis = minProgressIntervalInMillis;
+        this.scheduler = scheduler;
+        this.notificationExecutor = notificationExecutor;
+        this.trailingRender = trailingRender;
+    }
+
+    boolean shouldRender(DownloadBatchStatus downloadBatchStatus) {
+        DownloadBatchId downloadBatchId = downloadBatchStatus.getDownloadBatchId();
+        if (downloadBatchStatus.status() == DELETED) {
+            renderedStates.remove(downloadBatchId);
+            return true;
+        }
+
+        long nowInMillis = clock.elapsedTimeInMillis();
+        RenderedState renderedState = renderedStates.get(downloadBatchId);
+        if (renderedState == null) {
+            renderedState = new RenderedState();
+            renderedStates.put(downloadBatchId, renderedState);
+        } else if (!renderedState.isVisiblyDifferentFrom(downloadBatchStatus, nowInMillis, minProgressIntervalInMillis)) {
+            holdBack(renderedState, downloadBatchStatus);
+            return false;
+        }
+
+        renderedState.update(downloadBatchStatus, nowInMillis);
+        return true;
+    }
+
+    private void holdBack(RenderedState renderedState, DownloadBatchStatus downloadBatchStatus) {
+        if (!renderedState.hasProgressDifferentFrom(downloadBatchStatus)) {
+            renderedState.pendingStatus = null;
+            return;
+        }
+
+        renderedState.pendingStatus = downloadBatchStatus;
+        if (!scheduler.isScheduled(trailingTick)) {
+            scheduler.schedule(trailingTick);
+        }
+    }
+
+    private void postRenderPending() {
+        notificationExecutor.execute(this::renderPending);
+    }
+
+    private void renderPending() {
+        long nowInMillis = clock.elapsedTimeInMillis();
+        boolean stillPending = false;
+        for (RenderedState renderedState : renderedStates.values()) {
+            DownloadBatchStatus pendingStatus = renderedState.pendingStatus;
+            if (pendingStatus == null) {
+                continue;
+            }
+
+            if (nowInMillis - renderedState.renderedAtInMillis < minProgressIntervalInMillis) {
+                stillPending = true;
+            } else if (renderedState.hasProgressDifferentFrom(pendingStatus)) {
+                renderedState.update(pendingStatus, nowInMillis);
+                trailingRender.onUpdate(pendingStatus);
+            } else {
+                renderedState.pendingStatus = null;
+            }
+        }
+
+        if (!stillPending) {
+            scheduler.cancel(trailingTick);
+        }
+    }
+
+    private static final class RenderedState {
+
+        private DownloadBatchStatus.Status status;
+        private String title;
+        private int percentageDownloaded;
+        private long renderedAtInMillis;
+        private DownloadBatchStatus pendingStatus;
+
+        boolean isVisiblyDifferentFrom(DownloadBatchStatus downloadBatchStatus, long nowInMillis, long minProgressIntervalInMillis) {
+            if (status != downloadBatchStatus.status() || !title.equals(downloadBatchStatus.getDownloadBatchTitle().asString())) {
+                return true;
+            }
+
+            return hasProgressDifferentFrom(downloadBatchStatus) && nowInMillis - renderedAtInMillis >= minProgressIntervalInMillis;
+        }
+
+        boolean hasProgressDifferentFrom(DownloadBatchStatus downloadBatchStatus) {
+            return percentageDownloaded != downloadBatchStatus.percentageDownloaded();
+        }
+
+        void update(DownloadBatchStatus downloadBatchStatus, long nowInMillis) {
+            status = downloadBatchStatus.status();
+            title = downloadBatchStatus.getDownloadBatchTitle().asString();
+            percentageDownloaded = downloadBatchStatus.percentageDownloaded();
+            renderedAtInMillis = nowInMillis;
+            pendingStatus = null;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.novoda.downloadmanager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The latest status of each batch waiting to be delivered, kept in one reusable slot per batch.
+ *
+ * A slot is linked into the pending list the first time its batch reports after a drain and only has its
+ * status replaced afterwards, so once a batch has a slot, reporting it again does not allocate. A slot is
+ * dropped once its deleted status has been drained.
+ *
+ * Not thread safe: {@link #put(DownloadBatchStatus)}, {@link #isEmpty()} and {@link #moveToDraining()} must be
+ * called under the owner's lock, {@link #deliverDraining(DownloadBatchStatusCallback)} by one drain at a time.
+ */
+final class PendingStatuses {
+
+    private final Map<DownloadBatchId, Slot> slots = new HashMap<>();
+
+    private Slot firstPending;
+    private Slot lastPending;
+    private Slot firstDraining;
+
+    void put(DownloadBatchStatus downloadBatchStatus) {
+        DownloadBatchId downloadBatchId = downloadBatchStatus.getDownloadBatchId();
+        Slot slot = slots.get(downloadBatchId);
+        if (slot == null) {
+            slot = new Slot();
+            slots.put(downloadBatchId, slot);
+        }
+
+        slot.pendingStatus = downloadBatchStatus;
+        if (slot.pending) {
+            return;
+        }
+
+        slot.pending = true;
+        if (lastPending == null) {
+            firstPending = slot;
+        } else {
+            lastPending.nextPending = slot;
+        }
+        lastPending = slot;
+    }
+
+    boolean isEmpty() {
+        return firstPending == null;
+    }
+
+    /**
+     * Hands every pending status over to the drain, in the order their batches first reported, and empties
+     * the pending list so that statuses put from now on are picked up by the next drain.
+     */
+    void moveToDraining() {
+        Slot lastDraining = null;
+        Slot slot = firstPending;
+        while (slot != null) {
+            Slot next = slot.nextPending;
+            slot.nextPending = null;
+            slot.drainingStatus = slot.pendingStatus;
+            slot.pendingStatus = null;
+            slot.pending = false;
+            if (slot.drainingStatus.status() == DownloadBatchStatus.Status.DELETED) {
+                slots.remove(slot.drainingStatus.getDownloadBatchId());
+            }
+
+            if (lastDraining == null) {
+                firstDraining = slot;
+            } else {
+                lastDraining.nextDraining = slot;
+            }
+            lastDraining = slot;
+            slot = next;
+        }
+        firstPending = null;
+        lastPending = null;
+    }
+
+    void deliverDraining(DownloadBatchStatusCallback delivery) {
+        Slot slot = firstDraining;
+        firstDraining = null;
+        try {
+            while (slot != null) {
+                DownloadBatchStatus downloadBatchStatus = slot.drainingStatus;
+                slot = release(slot);
+                delivery.onUpdate(downloadBatchStatus);
+            }
+        } finally {
+            while (slot != null) {
+                slot = release(slot);
+            }
+        }
+    }
+
+    private static Slot release(Slot slot) {
+        Slot next = slot.nextDraining;
+        slot.drainingStatus = null;
+        slot.nextDraining = null;
+        return next;
+    }
+
+    private static final class Slot {
+
+        private DownloadBatchStatus pendingStatus;
+        private DownloadBatchStatus drainingStatus;
+        private boolean pending;
+        private Slot nextPending;
+        private Slot nextDraining;
+    }
+}
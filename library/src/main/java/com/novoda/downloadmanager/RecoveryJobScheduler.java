@@ -0,0 +1,11 @@
+package com.novoda.downloadmanager;
+
+interface RecoveryJobScheduler {
+
+    boolean hasScheduledJob();
+
+    /**
+     * Replaces any scheduled job with one that runs once a connection of the given type is available.
+     */
+    void schedule(ConnectionType connectionType);
+}
@@ -8,13 +8,14 @@ import android.arch.persistence.room.migration.Migration;
 import android.content.Context;
 import android.support.annotation.NonNull;
 
-@Database(entities = {RoomBatch.class, RoomFile.class}, version = 4)
+@Database(entities = {RoomBatch.class, RoomFile.class}, version = 5)
 abstract class RoomAppDatabase extends RoomDatabase {
 
     private static final int VERSION_ONE = 1;
     private static final int VERSION_TWO = 2;
     private static final int VERSION_THREE = 3;
     private static final int VERSION_FOUR = 4;
+    private static final int VERSION_FIVE = 5;
 
     private static volatile RoomAppDatabase singleInstance;
 
@@ -44,6 +45,8 @@ abstract class RoomAppDatabase extends RoomDatabase {
                 .addMigrations(new VersionOneToVersionTwoMigration())
                 .addMigrations(new VersionTwoToVersionThreeMigration(storageRoot))
                 .addMigrations(new VersionThreeToVersionFourMigration())
+                .addMigrations(new VersionFourToVersionFiveMigration())
+                .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
                 .build();
     }
 
@@ -104,4 +107,18 @@ abstract class RoomAppDatabase extends RoomDatabase {
         }
     }
 
+    private static final class VersionFourToVersionFiveMigration extends Migration {
+
+        VersionFourToVersionFiveMigration() {
+            super(VERSION_FOUR, VERSION_FIVE);
+        }
+
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_RoomBatch_batch_status_batch_downloaded_date_time_in_millis` "
+                                     + "ON `RoomBatch` (`batch_status`, `batch_downloaded_date_time_in_millis`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_RoomBatch_storage_root` ON `RoomBatch` (`storage_root`)");
+        }
+    }
+
 }
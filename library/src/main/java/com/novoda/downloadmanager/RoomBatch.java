@@ -7,7 +7,11 @@ import android.arch.persistence.room.PrimaryKey;
 import android.support.annotation.NonNull;
 
 @SuppressWarnings("checkstyle:visibilitymodifier") // Accessors will add a lot of boilerplate code.
-@Entity(indices = {@Index("batch_id")})
+@Entity(indices = {
+        @Index("batch_id"),
+        @Index({"batch_status", "batch_downloaded_date_time_in_millis"}),
+        @Index("storage_root")
+})
 class RoomBatch {
 
     @NonNull
@@ -20,6 +20,18 @@ interface RoomBatchDao {
     @Query("SELECT * FROM RoomBatch")
     List<RoomBatch> loadAll();
 
+    @Transaction
+    @Query("SELECT * FROM RoomBatch WHERE batch_status = :status")
+    List<RoomBatch> loadAllWithStatus(String status);
+
+    @Transaction
+    @Query("SELECT * FROM RoomBatch WHERE batch_status = :status AND batch_downloaded_date_time_in_millis < :downloadedBeforeDateTimeInMillis")
+    List<RoomBatch> loadAllWithStatusDownloadedBefore(String status, long downloadedBeforeDateTimeInMillis);
+
+    @Transaction
+    @Query("SELECT * FROM RoomBatch WHERE storage_root = :storageRoot")
+    List<RoomBatch> loadAllInStorageRoot(String storageRoot);
+
     @Transaction
     @Query("SELECT * FROM RoomBatch WHERE RoomBatch.batch_id = :batchId")
     RoomBatch load(String batchId);
@@ -29,4 +41,13 @@ interface RoomBatchDao {
 
     @Update(onConflict = OnConflictStrategy.REPLACE)
     void update(RoomBatch... roomBatches);
+
+    @Query("UPDATE RoomBatch SET batch_status = :status WHERE batch_id = :batchId")
+    int updateStatus(String batchId, String status);
+
+    @Query("UPDATE RoomBatch SET notification_seen = :notificationSeen WHERE batch_id = :batchId")
+    int updateNotificationSeen(String batchId, boolean notificationSeen);
+
+    @Query("DELETE FROM RoomBatch WHERE batch_id = :batchId")
+    int delete(String batchId);
 }
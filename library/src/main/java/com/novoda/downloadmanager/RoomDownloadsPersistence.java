@@ -4,11 +4,9 @@ import android.content.Context;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 final class RoomDownloadsPersistence implements DownloadsPersistence {
 
-    private static final boolean NOTIFICATION_SEEN = true;
     private final RoomAppDatabase database;
 
     static RoomDownloadsPersistence newInstance(Context context) {
@@ -51,7 +49,31 @@ final class RoomDownloadsPersistence implements DownloadsPersistence {
     @Override
     public List<DownloadsBatchPersisted> loadBatches() {
         List<RoomBatch> roomBatches = database.roomBatchDao().loadAll();
+        return getDownloadsBatchPersisted(roomBatches);
+    }
+
+    @Override
+    public List<DownloadsBatchPersisted> loadBatches(DownloadBatchStatus.Status status) {
+        List<RoomBatch> roomBatches = database.roomBatchDao().loadAllWithStatus(status.toRawValue());
+        return getDownloadsBatchPersisted(roomBatches);
+    }
 
+    @Override
+    public List<DownloadsBatchPersisted> loadBatches(DownloadBatchStatus.Status status, long downloadedBeforeDateTimeInMillis) {
+        List<RoomBatch> roomBatches = database.roomBatchDao().loadAllWithStatusDownloadedBefore(
+                status.toRawValue(),
+                downloadedBeforeDateTimeInMillis
+        );
+        return getDownloadsBatchPersisted(roomBatches);
+    }
+
+    @Override
+    public List<DownloadsBatchPersisted> loadBatches(StorageRoot storageRoot) {
+        List<RoomBatch> roomBatches = database.roomBatchDao().loadAllInStorageRoot(storageRoot.path());
+        return getDownloadsBatchPersisted(roomBatches);
+    }
+
+    private List<DownloadsBatchPersisted> getDownloadsBatchPersisted(List<RoomBatch> roomBatches) {
         List<DownloadsBatchPersisted> batchPersistedList = new ArrayList<>(roomBatches.size());
         for (RoomBatch roomBatch : roomBatches) {
             DownloadsBatchPersisted batchPersisted = new LiteDownloadsBatchPersisted(
@@ -110,78 +132,24 @@ final class RoomDownloadsPersistence implements DownloadsPersistence {
 
     @Override
     public boolean delete(DownloadBatchId downloadBatchId) {
-        RoomBatch roomBatch = database.roomBatchDao().load(downloadBatchId.rawId());
-        if (roomBatch == null) {
-            return false;
-        }
-
-        database.roomBatchDao().delete(roomBatch);
-        return true;
+        int deletedRows = database.roomBatchDao().delete(downloadBatchId.rawId());
+        return deletedRows > 0;
     }
 
     @Override
     public boolean update(DownloadBatchId downloadBatchId, DownloadBatchStatus.Status status) {
-        RoomBatch roomBatch = database.roomBatchDao().load(downloadBatchId.rawId());
-        if (roomBatch == null) {
-            return false;
-        }
-
-        roomBatch.status = status.toRawValue();
-        database.roomBatchDao().update(roomBatch);
-        return true;
+        int updatedRows = database.roomBatchDao().updateStatus(downloadBatchId.rawId(), status.toRawValue());
+        return updatedRows > 0;
     }
 
     @Override
     public boolean update(DownloadBatchId downloadBatchId, boolean notificationSeen) {
-        RoomBatch roomBatch = database.roomBatchDao().load(downloadBatchId.rawId());
-        if (roomBatch == null) {
-            return false;
-        }
-        roomBatch.notificationSeen = notificationSeen;
-        database.roomBatchDao().update(roomBatch);
-        return true;
+        int updatedRows = database.roomBatchDao().updateNotificationSeen(downloadBatchId.rawId(), notificationSeen);
+        return updatedRows > 0;
     }
 
     @Override
     public void persistCompletedBatch(CompletedDownloadBatch completedDownloadBatch) {
-        DownloadBatchId downloadBatchId = completedDownloadBatch.downloadBatchId();
-        DownloadBatchTitle downloadBatchTitle = completedDownloadBatch.downloadBatchTitle();
-        DownloadBatchStatus.Status downloadBatchStatus = DownloadBatchStatus.Status.DOWNLOADED;
-        long downloadedDateTimeInMillis = completedDownloadBatch.downloadedDateTimeInMillis();
-        StorageRoot storageRoot = completedDownloadBatch.storageRoot();
-
-        DownloadsBatchPersisted persistedBatch = new LiteDownloadsBatchPersisted(
-                downloadBatchTitle,
-                downloadBatchId,
-                downloadBatchStatus,
-                downloadedDateTimeInMillis,
-                NOTIFICATION_SEEN,
-                storageRoot.path()
-        );
-        persistBatch(persistedBatch);
-
-        for (CompletedDownloadFile completedDownloadFile : completedDownloadBatch.completedDownloadFiles()) {
-            String url = completedDownloadFile.originalNetworkAddress();
-
-            String rawDownloadFileId = rawFileIdFrom(completedDownloadBatch.downloadBatchTitle(), completedDownloadFile);
-            DownloadFileId downloadFileId = DownloadFileIdCreator.createFrom(rawDownloadFileId);
-
-            DownloadsFilePersisted persistedFile = new LiteDownloadsFilePersisted(
-                    downloadBatchId,
-                    downloadFileId,
-                    new LiteFilePath(completedDownloadFile.newFileLocation()),
-                    completedDownloadFile.fileSize().totalSize(),
-                    url
-            );
-            persistFile(persistedFile);
-        }
-    }
-
-    private String rawFileIdFrom(DownloadBatchTitle batch, CompletedDownloadFile completedDownloadFile) {
-        if (completedDownloadFile.fileId() == null || completedDownloadFile.fileId().isEmpty()) {
-            return batch.asString() + UUID.randomUUID();
-        } else {
-            return completedDownloadFile.fileId();
-        }
+        CompletedDownloadBatchWriter.writeTo(this, completedDownloadBatch);
     }
 }
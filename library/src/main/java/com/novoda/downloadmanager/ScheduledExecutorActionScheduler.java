@@ -0,0 +1,77 @@
+package com.novoda.downloadmanager;
+
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs actions at a fixed rate on an executor that may be shared with other schedulers.
+ * Cancelling only affects the actions scheduled through this instance.
+ */
+class ScheduledExecutorActionScheduler implements ActionScheduler {
+
+    private static final long DELAY_IN_MILLIS = 0;
+
+    private final ScheduledExecutorService executor;
+    private final long frequencyInMillis;
+    private final Map<Action, ScheduledFuture<?>> scheduledActions;
+
+    ScheduledExecutorActionScheduler(ScheduledExecutorService executor,
+                                     long frequencyInMillis,
+                                     Map<Action, ScheduledFuture<?>> scheduledActions) {
+        this.executor = executor;
+        this.frequencyInMillis = frequencyInMillis;
+        this.scheduledActions = scheduledActions;
+    }
+
+    @Override
+    public synchronized void schedule(Action action) {
+        if (scheduledActions.containsKey(action)) {
+            return;
+        }
+
+        ScheduledFuture<?> scheduledAction = executor.scheduleAtFixedRate(
+                action::perform,
+                DELAY_IN_MILLIS,
+                frequencyInMillis,
+                TimeUnit.MILLISECONDS
+        );
+        scheduledActions.put(action, scheduledAction);
+    }
+
+    @Override
+    public synchronized void cancel(Action action) {
+        ScheduledFuture<?> scheduledAction = scheduledActions.remove(action);
+        if (scheduledAction != null) {
+            scheduledAction.cancel(false);
+            purgeCancelledActions();
+        }
+    }
+
+    @Override
+    public synchronized void cancelAll() {
+        for (ScheduledFuture<?> scheduledAction : scheduledActions.values()) {
+            scheduledAction.cancel(false);
+        }
+        scheduledActions.clear();
+        purgeCancelledActions();
+    }
+
+    @Override
+    public synchronized boolean isScheduled(Action action) {
+        return scheduledActions.containsKey(action);
+    }
+
+    /**
+     * Cancelled periodic tasks stay in the shared queue until their next run is due,
+     * {@code setRemoveOnCancelPolicy} is not available before API 21.
+     */
+    private void purgeCancelledActions() {
+        if (executor instanceof ScheduledThreadPoolExecutor) {
+            ((ScheduledThreadPoolExecutor) executor).purge();
+        }
+    }
+
+}
@@ -1,16 +1,36 @@
 package com.novoda.downloadmanager;
 
 import java.util.HashMap;
-import java.util.Timer;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 
 final class SchedulerFactory {
 
+    private static final String THROTTLE_THREAD_NAME = "download-manager-callback-throttle";
+
     private SchedulerFactory() {
         // Uses static methods.
     }
 
-    static ActionScheduler createFixedRateTimerScheduler(long frequencyInMillis) {
-        return new FixedRateTimerActionScheduler(new Timer(), frequencyInMillis, new HashMap<>());
+    static ActionScheduler createFixedRateScheduler(long frequencyInMillis) {
+        return new ScheduledExecutorActionScheduler(SharedThrottleExecutor.INSTANCE, frequencyInMillis, new HashMap<>());
+    }
+
+    /**
+     * Every time based throttle ticks on this single thread, so the number of threads
+     * does not grow with the number of batches.
+     */
+    private static final class SharedThrottleExecutor {
+
+        static final ScheduledExecutorService INSTANCE = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, THROTTLE_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private SharedThrottleExecutor() {
+            // Holds the lazily created executor.
+        }
     }
 
 }
@@ -4,7 +4,7 @@ import android.app.Notification;
 import android.support.annotation.WorkerThread;
 import android.support.v4.app.NotificationManagerCompat;
 
-class ServiceNotificationDispatcher<T> {
+class ServiceNotificationDispatcher<T> implements NotificationDispatcher<T> {
 
     private static final String NOTIFICATION_TAG = "download-manager";
 
@@ -23,8 +23,9 @@ class ServiceNotificationDispatcher<T> {
         this.notificationManager = notificationManager;
     }
 
+    @Override
     @WorkerThread
-    void updateNotification(T payload) {
+    public void updateNotification(T payload) {
         Wait.<Void>waitFor(service, waitForDownloadService)
                 .thenPerform(executeUpdateNotification(payload));
     }
@@ -89,7 +90,8 @@ class ServiceNotificationDispatcher<T> {
         }
     }
 
-    void setService(DownloadManagerService service) {
+    @Override
+    public void setService(DownloadManagerService service) {
         this.service = service;
     }
 }
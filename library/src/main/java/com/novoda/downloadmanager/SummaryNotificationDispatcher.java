@@ -0,0 +1,134 @@
+package com.novoda.downloadmanager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static com.novoda.downloadmanager.DownloadBatchStatus.Status.DOWNLOADING;
+import static com.novoda.downloadmanager.DownloadBatchStatus.Status.QUEUED;
+import static com.novoda.downloadmanager.DownloadBatchStatus.Status.WAITING_FOR_NETWORK;
+
+/**
+ * Folds the statuses of all batches into a single {@link DownloadBatchesSummary} notification,
+ * instead of one notification per batch.
+ *
+ * Statuses only update the running totals, the summary is rendered by one fixed rate tick and only when
+ * something changed since the previous render. The tick stops once the summary without any active batch
+ * has been shown. Statuses and renders both run on the notification executor, so the totals are not synchronized.
+ *
+ * Progress of a batch may arrive as the same live status instance every time, so the bytes of each batch
+ * are copied when a status arrives rather than read back from the previous status.
+ */
+class SummaryNotificationDispatcher implements NotificationDispatcher<DownloadBatchStatus> {
+
+    static final long DEFAULT_SUMMARY_INTERVAL_IN_MILLIS = 1000;
+
+    private static final long MILLIS_IN_SECOND = 1000;
+    private static final long NO_BYTES = 0;
+
+    private final NotificationDispatcher<DownloadBatchesSummary> summaryDispatcher;
+    private final Executor notificationExecutor;
+    private final ActionScheduler scheduler;
+    private final Clock clock;
+    private final Map<DownloadBatchId, ActiveBatch> activeBatches = new HashMap<>();
+    private final ActionScheduler.Action renderTick = this::postRender;
+
+    private long bytesDownloadedSinceRender;
+    private long renderedAtInMillis;
+    private boolean changedSinceRender;
+
+    SummaryNotificationDispatcher(NotificationDispatcher<DownloadBatchesSummary> summaryDispatcher,
+                                  Executor notificationExecutor,
+                                  ActionScheduler scheduler,
+                                  Clock clock) {
+        this.summaryDispatcher = summaryDispatcher;
+        this.notificationExecutor = notificationExecutor;
+        this.scheduler = scheduler;
+        this.clock = clock;
+    }
+
+    @Override
+    public void updateNotification(DownloadBatchStatus downloadBatchStatus) {
+        DownloadBatchId downloadBatchId = downloadBatchStatus.getDownloadBatchId();
+        long bytesDownloaded = downloadBatchStatus.bytesDownloaded();
+        if (isActive(downloadBatchStatus)) {
+            ActiveBatch activeBatch = activeBatches.get(downloadBatchId);
+            if (activeBatch == null) {
+                activeBatches.put(downloadBatchId, new ActiveBatch(bytesDownloaded, downloadBatchStatus.bytesTotalSize()));
+            } else {
+                bytesDownloadedSinceRender += Math.max(NO_BYTES, bytesDownloaded - activeBatch.bytesDownloaded);
+                activeBatch.update(bytesDownloaded, downloadBatchStatus.bytesTotalSize());
+            }
+        } else {
+            ActiveBatch activeBatch = activeBatches.remove(downloadBatchId);
+            if (activeBatch == null) {
+                return;
+            }
+            bytesDownloadedSinceRender += Math.max(NO_BYTES, bytesDownloaded - activeBatch.bytesDownloaded);
+        }
+        changedSinceRender = true;
+
+        if (!scheduler.isScheduled(renderTick)) {
+            renderedAtInMillis = clock.elapsedTimeInMillis();
+            scheduler.schedule(renderTick);
+        }
+    }
+
+    private static boolean isActive(DownloadBatchStatus downloadBatchStatus) {
+        DownloadBatchStatus.Status status = downloadBatchStatus.status();
+        return status == QUEUED || status == DOWNLOADING || status == WAITING_FOR_NETWORK;
+    }
+
+    private void postRender() {
+        notificationExecutor.execute(this::render);
+    }
+
+    private void render() {
+        if (changedSinceRender) {
+            summaryDispatcher.updateNotification(summarize());
+            changedSinceRender = false;
+        }
+
+        if (activeBatches.isEmpty()) {
+            scheduler.cancel(renderTick);
+        }
+    }
+
+    private DownloadBatchesSummary summarize() {
+        long bytesDownloaded = 0;
+        long bytesTotalSize = 0;
+        for (ActiveBatch activeBatch : activeBatches.values()) {
+            bytesDownloaded += activeBatch.bytesDownloaded;
+            bytesTotalSize += activeBatch.bytesTotalSize;
+        }
+
+        long nowInMillis = clock.elapsedTimeInMillis();
+        long elapsedInMillis = nowInMillis - renderedAtInMillis;
+        long bytesPerSecond = elapsedInMillis > 0 ? bytesDownloadedSinceRender * MILLIS_IN_SECOND / elapsedInMillis : NO_BYTES;
+        bytesDownloadedSinceRender = 0;
+        renderedAtInMillis = nowInMillis;
+
+        return new LiteDownloadBatchesSummary(activeBatches.size(), bytesDownloaded, bytesTotalSize, bytesPerSecond);
+    }
+
+    @Override
+    public void setService(DownloadManagerService service) {
+        summaryDispatcher.setService(service);
+    }
+
+    private static class ActiveBatch {
+
+        private long bytesDownloaded;
+        private long bytesTotalSize;
+
+        ActiveBatch(long bytesDownloaded, long bytesTotalSize) {
+            this.bytesDownloaded = bytesDownloaded;
+            this.bytesTotalSize = bytesTotalSize;
+        }
+
+        void update(long bytesDownloaded, long bytesTotalSize) {
+            this.bytesDownloaded = bytesDownloaded;
+            this.bytesTotalSize = bytesTotalSize;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.novoda.downloadmanager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the bytes downloaded for one file, batch or host. Marking is a single atomic add so it can be
+ * done for every buffer read, the rates are only computed when {@link #sample(long)} is called.
+ *
+ * Sampling is done from a single thread, the sampled rates are volatile for the readers of {@link #snapshot()}.
+ * An idle meter is detached before it is dropped, after which {@link #mark(long)} refuses bytes
+ * so that the caller can move on to a new meter instead of losing them.
+ */
+class ThroughputMeter {
+
+    private static final double AVERAGE_TIME_CONSTANT_IN_MILLIS = 10_000;
+    private static final long MILLIS_IN_SECOND = 1000;
+    private static final double IDLE_BYTES_PER_SECOND = 1;
+    private static final long DETACHED = -1;
+
+    private final AtomicLong bytesDownloaded = new AtomicLong();
+
+    private long sampledBytes;
+    private long sampledAtInMillis;
+    private volatile long currentBytesPerSecond;
+    private volatile double averageBytesPerSecond;
+
+    ThroughputMeter(long createdAtInMillis) {
+        this.sampledAtInMillis = createdAtInMillis;
+    }
+
+    /**
+     * @return false when the meter was detached, the bytes were not counted.
+     */
+    boolean mark(long bytes) {
+        while (true) {
+            long currentBytes = bytesDownloaded.get();
+            if (currentBytes == DETACHED) {
+                return false;
+            }
+            if (bytesDownloaded.compareAndSet(currentBytes, currentBytes + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Updates the current rate and its moving average with the bytes marked since the previous sample.
+     *
+     * @return false once nothing was marked since the previous sample and the average has decayed to nothing.
+     */
+    boolean sample(long nowInMillis) {
+        long elapsedInMillis = nowInMillis - sampledAtInMillis;
+        if (elapsedInMillis <= 0) {
+            return true;
+        }
+
+        long bytes = bytesDownloaded.get();
+        long bytesSinceSample = bytes - sampledBytes;
+        long bytesPerSecond = bytesSinceSample * MILLIS_IN_SECOND / elapsedInMillis;
+        double weight = 1 - Math.exp(-elapsedInMillis / AVERAGE_TIME_CONSTANT_IN_MILLIS);
+
+        currentBytesPerSecond = bytesPerSecond;
+        averageBytesPerSecond += weight * (bytesPerSecond - averageBytesPerSecond);
+        sampledBytes = bytes;
+        sampledAtInMillis = nowInMillis;
+
+        return bytesSinceSample > 0 || averageBytesPerSecond >= IDLE_BYTES_PER_SECOND;
+    }
+
+    /**
+     * Detaches the meter unless bytes were marked since the previous sample.
+     *
+     * @return true when the meter was detached and can be dropped.
+     */
+    boolean detachIfIdle() {
+        return bytesDownloaded.compareAndSet(sampledBytes, DETACHED);
+    }
+
+    DownloadThroughput snapshot() {
+        long bytes = bytesDownloaded.get();
+        if (bytes == DETACHED) {
+            bytes = sampledBytes;
+        }
+        return new LiteDownloadThroughput(bytes, currentBytesPerSecond, (long) averageBytesPerSecond);
+    }
+}
@@ -3,13 +3,16 @@ package com.novoda.downloadmanager;
 import java.io.IOException;
 import java.io.InputStream;
 
+import okhttp3.Call;
 import okhttp3.Response;
 
 class WrappedOkHttpResponse implements HttpClient.NetworkResponse {
 
+    private final Call call;
     private final Response response;
 
-    WrappedOkHttpResponse(Response response) {
+    WrappedOkHttpResponse(Call call, Response response) {
+        this.call = call;
         this.response = response;
     }
 
@@ -42,4 +45,9 @@ class WrappedOkHttpResponse implements HttpClient.NetworkResponse {
     public long bodyContentLength() {
         return response.body().contentLength();
     }
+
+    @Override
+    public void cancel() {
+        call.cancel();
+    }
 }
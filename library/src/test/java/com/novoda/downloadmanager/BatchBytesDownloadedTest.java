@@ -0,0 +1,37 @@
+package com.novoda.downloadmanager;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class BatchBytesDownloadedTest {
+
+    private final BatchBytesDownloaded batchBytesDownloaded = new BatchBytesDownloaded(3);
+
+    @Test
+    public void sumsBytesOfAllFiles() {
+        batchBytesDownloaded.update(0, 100);
+        batchBytesDownloaded.update(2, 50);
+
+        assertThat(batchBytesDownloaded.total()).isEqualTo(150L);
+    }
+
+    @Test
+    public void replacesPreviousBytesOfSameFile() {
+        batchBytesDownloaded.update(1, 100);
+
+        long total = batchBytesDownloaded.update(1, 400);
+
+        assertThat(total).isEqualTo(400L);
+    }
+
+    @Test
+    public void reducesTotal_whenFileRestartsFromLessBytes() {
+        batchBytesDownloaded.update(0, 300);
+        batchBytesDownloaded.update(1, 200);
+
+        long total = batchBytesDownloaded.update(0, 0);
+
+        assertThat(total).isEqualTo(200L);
+    }
+}
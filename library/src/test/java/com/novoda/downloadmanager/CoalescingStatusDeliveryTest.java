@@ -0,0 +1,125 @@
+package com.novoda.downloadmanager;
+
+import android.os.Handler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.novoda.downloadmanager.DownloadBatchIdFixtures.aDownloadBatchId;
+import static com.novoda.downloadmanager.InternalDownloadBatchStatusFixtures.anInternalDownloadsBatchStatus;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class CoalescingStatusDeliveryTest {
+
+    private static final long DRAIN_INTERVAL_IN_MILLIS = 16;
+    private static final DownloadBatchId BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("batch_01").build();
+    private static final DownloadBatchId OTHER_BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("batch_02").build();
+
+    private final Handler handler = mock(Handler.class);
+    private final List<DownloadBatchStatus> deliveredStatuses = new ArrayList<>();
+
+    private long nowInMillis = 1000;
+    private CoalescingStatusDelivery statusDelivery;
+
+    @Before
+    public void setUp() {
+        statusDelivery = new CoalescingStatusDelivery(handler, () -> nowInMillis, DRAIN_INTERVAL_IN_MILLIS, deliveredStatuses::add);
+    }
+
+    @Test
+    public void postsSingleDrain_whenSeveralBatchesUpdateBeforeDraining() {
+        statusDelivery.submit(aStatus(BATCH_ID, 10));
+        statusDelivery.submit(aStatus(OTHER_BATCH_ID, 20));
+        statusDelivery.submit(aStatus(BATCH_ID, 30));
+
+        verify(handler, times(1)).postDelayed(any(Runnable.class), anyLong());
+    }
+
+    @Test
+    public void postsSingleDrain_whenSameBatchUpdatesBeforeDraining() {
+        DownloadBatchStatus latestStatus = aStatus(BATCH_ID, 30);
+        statusDelivery.submit(aStatus(BATCH_ID, 10));
+        statusDelivery.submit(aStatus(BATCH_ID, 20));
+        statusDelivery.submit(latestStatus);
+
+        drain();
+
+        verify(handler, times(1)).postDelayed(any(Runnable.class), anyLong());
+        assertThat(deliveredStatuses).containsExactly(latestStatus);
+    }
+
+    @Test
+    public void postsSameDrain_whenSubmittingAfterDrain() {
+        statusDelivery.submit(aStatus(BATCH_ID, 10));
+        Runnable drain = drain();
+        nowInMillis += DRAIN_INTERVAL_IN_MILLIS;
+
+        statusDelivery.submit(aStatus(BATCH_ID, 20));
+
+        verify(handler, times(2)).postDelayed(same(drain), anyLong());
+    }
+
+    @Test
+    public void deliversOnlyLatestStatusPerBatch_whenDraining() {
+        DownloadBatchStatus latestStatus = aStatus(BATCH_ID, 30);
+        DownloadBatchStatus otherStatus = aStatus(OTHER_BATCH_ID, 20);
+        statusDelivery.submit(aStatus(BATCH_ID, 10));
+        statusDelivery.submit(otherStatus);
+        statusDelivery.submit(latestStatus);
+
+        drain();
+
+        assertThat(deliveredStatuses).containsExactly(latestStatus, otherStatus).inOrder();
+    }
+
+    @Test
+    public void drainsImmediately_whenIntervalElapsedSinceLastDrain() {
+        statusDelivery.submit(aStatus(BATCH_ID, 10));
+
+        verify(handler).postDelayed(any(Runnable.class), eq(0L));
+    }
+
+    @Test
+    public void waitsForRemainingInterval_whenDrainedRecently() {
+        statusDelivery.submit(aStatus(BATCH_ID, 10));
+        drain();
+        reset(handler);
+        nowInMillis += 6;
+
+        statusDelivery.submit(aStatus(BATCH_ID, 20));
+
+        verify(handler).postDelayed(any(Runnable.class), eq(DRAIN_INTERVAL_IN_MILLIS - 6));
+    }
+
+    @Test
+    public void doesNotDeliverAgain_whenNothingSubmittedSinceLastDrain() {
+        statusDelivery.submit(aStatus(BATCH_ID, 10));
+        Runnable drain = drain();
+        deliveredStatuses.clear();
+
+        drain.run();
+
+        assertThat(deliveredStatuses).isEmpty();
+    }
+
+    private Runnable drain() {
+        ArgumentCaptor<Runnable> drainCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(handler, atLeastOnce()).postDelayed(drainCaptor.capture(), anyLong());
+        Runnable drain = drainCaptor.getValue();
+        drain.run();
+        return drain;
+    }
+
+    private DownloadBatchStatus aStatus(DownloadBatchId downloadBatchId, int percentageDownloaded) {
+        return anInternalDownloadsBatchStatus()
+                .withDownloadBatchId(downloadBatchId)
+                .withPercentageDownloaded(percentageDownloaded)
+                .build();
+    }
+}
@@ -0,0 +1,206 @@
+package com.novoda.downloadmanager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.novoda.downloadmanager.DownloadBatchIdFixtures.aDownloadBatchId;
+import static com.novoda.downloadmanager.InternalDownloadBatchStatusFixtures.anInternalDownloadsBatchStatus;
+
+public class ConflatingStatusSubscriptionTest {
+
+    private static final DownloadBatchId BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("batch_01").build();
+    private static final DownloadBatchId OTHER_BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("batch_02").build();
+
+    private final Queue<Runnable> executedTasks = new ArrayDeque<>();
+    private final RejectingExecutor executor = new RejectingExecutor();
+    private final RecordingSubscriber subscriber = new RecordingSubscriber();
+
+    @Test
+    public void callsOnSubscribe_beforeDeliveringAnything() {
+        ConflatingStatusSubscription.subscribe(executor, subscriber, ConflatingStatusSubscription.Matcher.ALL_BATCHES);
+
+        runExecutedTasks();
+
+        assertThat(subscriber.subscription).isNotNull();
+        assertThat(subscriber.statuses).isEmpty();
+    }
+
+    @Test
+    public void deliversNothing_whenNothingRequested() {
+        ConflatingStatusSubscription subscription = givenSubscription(ConflatingStatusSubscription.Matcher.ALL_BATCHES);
+
+        subscription.offer(aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 10));
+        runExecutedTasks();
+
+        assertThat(subscriber.statuses).isEmpty();
+    }
+
+    @Test
+    public void deliversOnlyRequestedCount() {
+        ConflatingStatusSubscription subscription = givenSubscription(ConflatingStatusSubscription.Matcher.ALL_BATCHES);
+        DownloadBatchStatus firstStatus = aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 10);
+        subscription.offer(firstStatus);
+        subscription.offer(aStatus(OTHER_BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 10));
+
+        subscription.request(1);
+        runExecutedTasks();
+
+        assertThat(subscriber.statuses).containsExactly(firstStatus);
+    }
+
+    @Test
+    public void conflatesToLatestStatusPerBatch_whenNoDemand() {
+        ConflatingStatusSubscription subscription = givenSubscription(ConflatingStatusSubscription.Matcher.ALL_BATCHES);
+        DownloadBatchStatus latestStatus = aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 30);
+        subscription.offer(aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 10));
+        subscription.offer(aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 20));
+        subscription.offer(latestStatus);
+
+        subscription.request(Long.MAX_VALUE);
+        runExecutedTasks();
+
+        assertThat(subscriber.statuses).containsExactly(latestStatus);
+    }
+
+    @Test
+    public void deliversImmediately_whenDemandIsOutstanding() {
+        ConflatingStatusSubscription subscription = givenSubscription(ConflatingStatusSubscription.Matcher.ALL_BATCHES);
+        subscription.request(2);
+        DownloadBatchStatus status = aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 10);
+
+        subscription.offer(status);
+        runExecutedTasks();
+
+        assertThat(subscriber.statuses).containsExactly(status);
+    }
+
+    @Test
+    public void deliversOnlyMatchingBatch_whenSubscribedToBatch() {
+        ConflatingStatusSubscription subscription = givenSubscription(ConflatingStatusSubscription.forBatch(BATCH_ID));
+        subscription.request(Long.MAX_VALUE);
+        DownloadBatchStatus status = aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 10);
+
+        subscription.offer(aStatus(OTHER_BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 10));
+        subscription.offer(status);
+        runExecutedTasks();
+
+        assertThat(subscriber.statuses).containsExactly(status);
+    }
+
+    @Test
+    public void dropsPendingStatus_whenBatchLeavesSubscribedStatus() {
+        ConflatingStatusSubscription.Matcher downloading = ConflatingStatusSubscription.withStatus(DownloadBatchStatus.Status.DOWNLOADING);
+        ConflatingStatusSubscription subscription = givenSubscription(downloading);
+        subscription.offer(aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 10));
+        subscription.offer(aStatus(BATCH_ID, DownloadBatchStatus.Status.PAUSED, 10));
+
+        subscription.request(Long.MAX_VALUE);
+        runExecutedTasks();
+
+        assertThat(subscriber.statuses).isEmpty();
+    }
+
+    @Test
+    public void stopsDelivering_whenCancelled() {
+        ConflatingStatusSubscription subscription = givenSubscription(ConflatingStatusSubscription.Matcher.ALL_BATCHES);
+        subscription.request(Long.MAX_VALUE);
+
+        subscription.cancel();
+        boolean offered = subscription.offer(aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 10));
+        runExecutedTasks();
+
+        assertThat(offered).isFalse();
+        assertThat(subscriber.statuses).isEmpty();
+    }
+
+    @Test
+    public void subscribesOnNextOffer_whenSubscribingWasRejected() {
+        executor.rejectNext = true;
+        ConflatingStatusSubscription.Matcher allBatches = ConflatingStatusSubscription.Matcher.ALL_BATCHES;
+        ConflatingStatusSubscription subscription = ConflatingStatusSubscription.subscribe(executor, subscriber, allBatches);
+
+        subscription.offer(aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 10));
+        runExecutedTasks();
+
+        assertThat(subscriber.subscription).isSameAs(subscription);
+    }
+
+    @Test
+    public void deliversOnNextRequest_whenDeliveryWasRejected() {
+        ConflatingStatusSubscription subscription = givenSubscription(ConflatingStatusSubscription.Matcher.ALL_BATCHES);
+        DownloadBatchStatus status = aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 10);
+        subscription.offer(status);
+        executor.rejectNext = true;
+        subscription.request(1);
+
+        subscription.request(1);
+        runExecutedTasks();
+
+        assertThat(subscriber.statuses).containsExactly(status);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsException_whenRequestingNonPositiveCount() {
+        ConflatingStatusSubscription subscription = givenSubscription(ConflatingStatusSubscription.Matcher.ALL_BATCHES);
+
+        subscription.request(0);
+    }
+
+    private ConflatingStatusSubscription givenSubscription(ConflatingStatusSubscription.Matcher matcher) {
+        ConflatingStatusSubscription subscription = ConflatingStatusSubscription.subscribe(executor, subscriber, matcher);
+        runExecutedTasks();
+        return subscription;
+    }
+
+    private void runExecutedTasks() {
+        Runnable task;
+        while ((task = executedTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private static DownloadBatchStatus aStatus(DownloadBatchId downloadBatchId, DownloadBatchStatus.Status status, int percentageDownloaded) {
+        return anInternalDownloadsBatchStatus()
+                .withDownloadBatchId(downloadBatchId)
+                .withStatus(status)
+                .withPercentageDownloaded(percentageDownloaded)
+                .build();
+    }
+
+    private class RejectingExecutor implements Executor {
+
+        private boolean rejectNext;
+
+        @Override
+        public void execute(Runnable task) {
+            if (rejectNext) {
+                rejectNext = false;
+                throw new RejectedExecutionException();
+            }
+            executedTasks.add(task);
+        }
+    }
+
+    private static class RecordingSubscriber implements DownloadBatchStatusSubscriber {
+
+        private final List<DownloadBatchStatus> statuses = new ArrayList<>();
+        private DownloadBatchStatusSubscription subscription;
+
+        @Override
+        public void onSubscribe(DownloadBatchStatusSubscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(DownloadBatchStatus downloadBatchStatus) {
+            statuses.add(downloadBatchStatus);
+        }
+    }
+}
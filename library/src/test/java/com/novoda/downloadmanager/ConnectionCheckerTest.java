@@ -0,0 +1,125 @@
+package com.novoda.downloadmanager;
+
+import com.novoda.merlin.MerlinsBeard;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class ConnectionCheckerTest {
+
+    private static final long HOLD_WINDOW_IN_MILLIS = 1000;
+
+    private final MerlinsBeard merlinsBeard = mock(MerlinsBeard.class);
+
+    private long nowInMillis;
+    private ConnectionChecker connectionChecker;
+
+    @Before
+    public void setUp() {
+        connectionChecker = new ConnectionChecker(merlinsBeard, ConnectionType.UNMETERED, () -> nowInMillis, HOLD_WINDOW_IN_MILLIS);
+    }
+
+    @Test
+    public void isNotAllowed_whenNeverConnected() {
+        given(merlinsBeard.isConnectedToWifi()).willReturn(false);
+
+        assertThat(connectionChecker.isAllowedToDownload()).isFalse();
+    }
+
+    @Test
+    public void isAllowed_whenConnectionDropsForLessThanHoldWindow() {
+        givenConnectedToWifi();
+        connectionChecker.isAllowedToDownload();
+
+        givenDisconnected();
+        connectionChecker.onDisconnect();
+        nowInMillis += HOLD_WINDOW_IN_MILLIS - 1;
+
+        assertThat(connectionChecker.isAllowedToDownload()).isTrue();
+    }
+
+    @Test
+    public void isNotAllowed_whenConnectionDropsForHoldWindow() {
+        givenConnectedToWifi();
+        connectionChecker.isAllowedToDownload();
+
+        givenDisconnected();
+        connectionChecker.onDisconnect();
+        nowInMillis += HOLD_WINDOW_IN_MILLIS;
+
+        assertThat(connectionChecker.isAllowedToDownload()).isFalse();
+    }
+
+    @Test
+    public void isAllowed_whenConnectionDropsLongAfterLastCheck() {
+        givenConnectedToWifi();
+        connectionChecker.isAllowedToDownload();
+        nowInMillis += 10 * HOLD_WINDOW_IN_MILLIS;
+
+        givenDisconnected();
+        connectionChecker.onDisconnect();
+        nowInMillis += HOLD_WINDOW_IN_MILLIS - 1;
+
+        assertThat(connectionChecker.isAllowedToDownload()).isTrue();
+    }
+
+    @Test
+    public void isAllowed_whenDropIsObservedBeforeBeingReported() {
+        givenConnectedToWifi();
+        connectionChecker.isAllowedToDownload();
+        nowInMillis += 10 * HOLD_WINDOW_IN_MILLIS;
+
+        givenDisconnected();
+
+        assertThat(connectionChecker.isAllowedToDownload()).isTrue();
+    }
+
+    @Test
+    public void isNotAllowed_whenDropIsReportedHoldWindowAfterBeingObserved() {
+        givenConnectedToWifi();
+        connectionChecker.isAllowedToDownload();
+        givenDisconnected();
+        connectionChecker.isAllowedToDownload();
+
+        nowInMillis += HOLD_WINDOW_IN_MILLIS;
+        connectionChecker.onDisconnect();
+
+        assertThat(connectionChecker.isAllowedToDownload()).isFalse();
+    }
+
+    @Test
+    public void isNotAllowed_whenConnectionMovesToTypeThatIsNotAllowed() {
+        givenConnectedToWifi();
+        connectionChecker.isAllowedToDownload();
+
+        given(merlinsBeard.isConnectedToWifi()).willReturn(false);
+        given(merlinsBeard.isConnected()).willReturn(true);
+
+        assertThat(connectionChecker.isAllowedToDownload()).isFalse();
+    }
+
+    @Test
+    public void isNotAllowed_whenAllowedConnectionTypeChangesToUnavailableType() {
+        given(merlinsBeard.isConnectedToWifi()).willReturn(true);
+        given(merlinsBeard.isConnectedToMobileNetwork()).willReturn(false);
+        connectionChecker.isAllowedToDownload();
+
+        connectionChecker.updateAllowedConnectionType(ConnectionType.METERED);
+
+        assertThat(connectionChecker.isAllowedToDownload()).isFalse();
+    }
+
+    private void givenConnectedToWifi() {
+        given(merlinsBeard.isConnected()).willReturn(true);
+        given(merlinsBeard.isConnectedToWifi()).willReturn(true);
+    }
+
+    private void givenDisconnected() {
+        given(merlinsBeard.isConnected()).willReturn(false);
+        given(merlinsBeard.isConnectedToWifi()).willReturn(false);
+    }
+}
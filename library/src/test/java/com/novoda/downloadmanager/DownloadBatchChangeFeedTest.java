@@ -0,0 +1,97 @@
+package com.novoda.downloadmanager;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.novoda.downloadmanager.DownloadBatchIdFixtures.aDownloadBatchId;
+import static com.novoda.downloadmanager.InternalDownloadBatchStatusFixtures.anInternalDownloadsBatchStatus;
+
+public class DownloadBatchChangeFeedTest {
+
+    private static final int MAX_RETAINED_DELETIONS = 1;
+    private static final DownloadBatchId BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("batch_01").build();
+    private static final DownloadBatchId OTHER_BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("batch_02").build();
+    private static final DownloadBatchId THIRD_BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("batch_03").build();
+
+    private final DownloadBatchChangeFeed changeFeed = new DownloadBatchChangeFeed(MAX_RETAINED_DELETIONS);
+
+    @Test
+    public void returnsNoChanges_whenNothingRecorded() {
+        DownloadBatchStatusChanges changes = changeFeed.changesSince(0);
+
+        assertThat(changes.version()).isEqualTo(0L);
+        assertThat(changes.statuses()).isEmpty();
+        assertThat(changes.isFullSnapshot()).isFalse();
+    }
+
+    @Test
+    public void returnsOnlyBatchesChangedAfterVersion() {
+        changeFeed.record(aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING));
+        long version = changeFeed.changesSince(0).version();
+        DownloadBatchStatus laterStatus = aStatus(OTHER_BATCH_ID, DownloadBatchStatus.Status.QUEUED);
+        changeFeed.record(laterStatus);
+
+        DownloadBatchStatusChanges changes = changeFeed.changesSince(version);
+
+        assertThat(changes.statuses()).containsExactly(laterStatus);
+        assertThat(changes.version()).isGreaterThan(version);
+    }
+
+    @Test
+    public void returnsLatestChangeOnce_whenBatchChangedSeveralTimes() {
+        changeFeed.record(aStatus(BATCH_ID, DownloadBatchStatus.Status.QUEUED));
+        DownloadBatchStatus otherStatus = aStatus(OTHER_BATCH_ID, DownloadBatchStatus.Status.QUEUED);
+        changeFeed.record(otherStatus);
+        DownloadBatchStatus latestStatus = aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING);
+        changeFeed.record(latestStatus);
+
+        DownloadBatchStatusChanges changes = changeFeed.changesSince(0);
+
+        assertThat(changes.statuses()).containsExactly(otherStatus, latestStatus).inOrder();
+    }
+
+    @Test
+    public void returnsDeletion_whenRetained() {
+        changeFeed.record(aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING));
+        long version = changeFeed.changesSince(0).version();
+        DownloadBatchStatus deletedStatus = aStatus(BATCH_ID, DownloadBatchStatus.Status.DELETED);
+        changeFeed.record(deletedStatus);
+
+        DownloadBatchStatusChanges changes = changeFeed.changesSince(version);
+
+        assertThat(changes.statuses()).containsExactly(deletedStatus);
+        assertThat(changes.isFullSnapshot()).isFalse();
+    }
+
+    @Test
+    public void returnsFullSnapshot_whenDeletionsSinceVersionWereEvicted() {
+        DownloadBatchStatus liveStatus = aStatus(THIRD_BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING);
+        changeFeed.record(liveStatus);
+        changeFeed.record(aStatus(BATCH_ID, DownloadBatchStatus.Status.DELETED));
+        changeFeed.record(aStatus(OTHER_BATCH_ID, DownloadBatchStatus.Status.DELETED));
+
+        DownloadBatchStatusChanges changes = changeFeed.changesSince(1);
+
+        assertThat(changes.isFullSnapshot()).isTrue();
+        assertThat(changes.statuses()).containsExactly(liveStatus);
+    }
+
+    @Test
+    public void returnsIncrementalChanges_whenVersionIsAfterEvictedDeletions() {
+        changeFeed.record(aStatus(BATCH_ID, DownloadBatchStatus.Status.DELETED));
+        DownloadBatchStatus retainedDeletion = aStatus(OTHER_BATCH_ID, DownloadBatchStatus.Status.DELETED);
+        changeFeed.record(retainedDeletion);
+
+        DownloadBatchStatusChanges changes = changeFeed.changesSince(1);
+
+        assertThat(changes.isFullSnapshot()).isFalse();
+        assertThat(changes.statuses()).containsExactly(retainedDeletion);
+    }
+
+    private static DownloadBatchStatus aStatus(DownloadBatchId downloadBatchId, DownloadBatchStatus.Status status) {
+        return anInternalDownloadsBatchStatus()
+                .withDownloadBatchId(downloadBatchId)
+                .withStatus(status)
+                .build();
+    }
+}
@@ -0,0 +1,135 @@
+package com.novoda.downloadmanager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.novoda.downloadmanager.DownloadBatchIdFixtures.aDownloadBatchId;
+import static com.novoda.downloadmanager.InternalDownloadBatchStatusFixtures.anInternalDownloadsBatchStatus;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class DownloadBatchRegistryTest {
+
+    private static final DownloadBatchId BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("batch_01").build();
+    private static final DownloadBatchId ADDITIONAL_BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("batch_02").build();
+    private static final String INTERNAL_ROOT = "/internal";
+    private static final String EXTERNAL_ROOT = "/external";
+
+    private final DownloadBatch downloadBatch = mock(DownloadBatch.class);
+    private final DownloadBatch additionalDownloadBatch = mock(DownloadBatch.class);
+    private final DownloadsBatchStatusPersistence persistence = mock(DownloadsBatchStatusPersistence.class);
+
+    private DownloadBatchRegistry registry;
+
+    @Before
+    public void setUp() {
+        given(downloadBatch.getId()).willReturn(BATCH_ID);
+        givenStatus(downloadBatch, DownloadBatchStatus.Status.DOWNLOADING, INTERNAL_ROOT);
+        given(additionalDownloadBatch.getId()).willReturn(ADDITIONAL_BATCH_ID);
+        givenStatus(additionalDownloadBatch, DownloadBatchStatus.Status.WAITING_FOR_NETWORK, EXTERNAL_ROOT);
+
+        registry = new DownloadBatchRegistry();
+        registry.put(BATCH_ID, downloadBatch);
+        registry.put(ADDITIONAL_BATCH_ID, additionalDownloadBatch);
+    }
+
+    @Test
+    public void returnsOnlyBatchesWithRequestedStatus() {
+        assertThat(registry.withStatus(DownloadBatchStatus.Status.DOWNLOADING)).containsExactly(downloadBatch);
+        assertThat(registry.withStatus(DownloadBatchStatus.Status.PAUSED)).isEmpty();
+    }
+
+    @Test
+    public void movesBatchToNewStatus_whenReindexed() {
+        downloadBatch.status().markAsPaused(persistence);
+
+        registry.reindex(BATCH_ID);
+
+        assertThat(registry.withStatus(DownloadBatchStatus.Status.DOWNLOADING)).isEmpty();
+        assertThat(registry.withStatus(DownloadBatchStatus.Status.PAUSED)).containsExactly(downloadBatch);
+    }
+
+    @Test
+    public void keepsLiveStatusIndexed_whenOlderReportIsReindexedLast() {
+        InternalDownloadBatchStatus olderReport = downloadBatch.status().copy();
+        downloadBatch.status().markAsPaused(persistence);
+        registry.reindex(BATCH_ID);
+
+        registry.reindex(olderReport.getDownloadBatchId());
+
+        assertThat(registry.withStatus(DownloadBatchStatus.Status.PAUSED)).containsExactly(downloadBatch);
+    }
+
+    @Test
+    public void indexesBatch_whenStorageRootIsMissing() {
+        DownloadBatch batchWithoutRoot = mock(DownloadBatch.class);
+        DownloadBatchId batchWithoutRootId = aDownloadBatchId().withRawDownloadBatchId("batch_03").build();
+        given(batchWithoutRoot.getId()).willReturn(batchWithoutRootId);
+        givenStatus(batchWithoutRoot, DownloadBatchStatus.Status.QUEUED, null);
+
+        registry.put(batchWithoutRootId, batchWithoutRoot);
+
+        assertThat(registry.inStorageRoot(null)).containsExactly(batchWithoutRoot);
+        registry.remove(batchWithoutRootId);
+        assertThat(registry.inStorageRoot(null)).isEmpty();
+    }
+
+    @Test
+    public void doesNotReturnBatch_whenLiveStatusNoLongerMatchesIndex() {
+        givenStatus(downloadBatch, DownloadBatchStatus.Status.PAUSED, INTERNAL_ROOT);
+
+        assertThat(registry.withStatus(DownloadBatchStatus.Status.DOWNLOADING)).isEmpty();
+    }
+
+    @Test
+    public void returnsOnlyBatchesInRequestedStorageRoot() {
+        assertThat(registry.inStorageRoot(EXTERNAL_ROOT)).containsExactly(additionalDownloadBatch);
+        assertThat(registry.inStorageRoot("/unknown")).isEmpty();
+    }
+
+    @Test
+    public void removesBatchFromIndexes_whenRemoved() {
+        registry.remove(BATCH_ID);
+
+        assertThat(registry.contains(BATCH_ID)).isFalse();
+        assertThat(registry.withStatus(DownloadBatchStatus.Status.DOWNLOADING)).isEmpty();
+        assertThat(registry.inStorageRoot(INTERNAL_ROOT)).isEmpty();
+    }
+
+    @Test
+    public void ignoresReindex_whenBatchIsNotRegistered() {
+        registry.remove(BATCH_ID);
+
+        registry.reindex(BATCH_ID);
+
+        assertThat(registry.withStatus(DownloadBatchStatus.Status.DOWNLOADING)).isEmpty();
+        assertThat(registry.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void reportsRegisteredBatches_asChanges() {
+        DownloadBatchStatusChanges changes = registry.changesSince(0);
+
+        assertThat(changes.statuses()).containsExactly(downloadBatch.status(), additionalDownloadBatch.status()).inOrder();
+    }
+
+    @Test
+    public void ignoresReportedStatus_whenBatchIsNotRegistered() {
+        long version = registry.changesSince(0).version();
+        registry.remove(BATCH_ID);
+
+        registry.recordChange(downloadBatch.status());
+
+        assertThat(registry.changesSince(version).statuses()).isEmpty();
+    }
+
+    private void givenStatus(DownloadBatch batch, DownloadBatchStatus.Status status, String storageRoot) {
+        InternalDownloadBatchStatus batchStatus = anInternalDownloadsBatchStatus()
+                .withDownloadBatchId(batch.getId())
+                .withStatus(status)
+                .withStorageRoot(storageRoot)
+                .build();
+        given(batch.status()).willReturn(batchStatus);
+    }
+}
@@ -3,10 +3,13 @@ package com.novoda.downloadmanager;
 import org.junit.Test;
 
 import static com.google.common.truth.Truth.assertThat;
+import static com.novoda.downloadmanager.DownloadBatchIdFixtures.aDownloadBatchId;
 import static com.novoda.downloadmanager.InternalDownloadBatchStatusFixtures.anInternalDownloadsBatchStatus;
 
 public class DownloadBatchStatusFilterTest {
 
+    private static final DownloadBatchId DELETED_BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("deleted_batch").build();
+
     private final InternalDownloadBatchStatus firstPercentageStatus = anInternalDownloadsBatchStatus()
             .withPercentageDownloaded(75)
             .build();
@@ -25,8 +28,50 @@ public class DownloadBatchStatusFilterTest {
             .withStatus(DownloadBatchStatus.Status.DOWNLOADED)
             .build();
 
+    private final InternalDownloadBatchStatus otherBatchStatus = anInternalDownloadsBatchStatus()
+            .withDownloadBatchId(aDownloadBatchId().withRawDownloadBatchId("other_batch").build())
+            .withPercentageDownloaded(10)
+            .build();
+
+    private final InternalDownloadBatchStatus deletedStatus = anInternalDownloadsBatchStatus()
+            .withDownloadBatchId(DELETED_BATCH_ID)
+            .withStatus(DownloadBatchStatus.Status.DELETED)
+            .build();
+
     private final DownloadBatchStatusFilter downloadBatchStatusFilter = new DownloadBatchStatusFilter();
 
+    @Test
+    public void returnsTrue_whenDeletedStatusRepeats() {
+        givenPreviousUpdate(deletedStatus);
+
+        boolean shouldFilterOut = downloadBatchStatusFilter.shouldFilterOut(deletedStatus);
+
+        assertThat(shouldFilterOut).isTrue();
+    }
+
+    @Test
+    public void returnsTrue_whenBatchHasBeenDeleted() {
+        givenPreviousUpdate(deletedStatus);
+
+        boolean shouldFilterOut = downloadBatchStatusFilter.shouldFilterOut(
+                anInternalDownloadsBatchStatus().withDownloadBatchId(DELETED_BATCH_ID).withPercentageDownloaded(50).build()
+        );
+
+        assertThat(shouldFilterOut).isTrue();
+    }
+
+    @Test
+    public void returnsFalse_whenDeletedBatchIsAddedAgain() {
+        givenPreviousUpdate(deletedStatus);
+
+        downloadBatchStatusFilter.onBatchAdded(DELETED_BATCH_ID);
+        boolean shouldFilterOut = downloadBatchStatusFilter.shouldFilterOut(
+                anInternalDownloadsBatchStatus().withDownloadBatchId(DELETED_BATCH_ID).build()
+        );
+
+        assertThat(shouldFilterOut).isFalse();
+    }
+
     @Test
     public void returnsFalse_whenPercentageDoesNotMatchPrevious() {
         givenPreviousUpdate(firstPercentageStatus);
@@ -81,6 +126,25 @@ public class DownloadBatchStatusFilterTest {
         assertThat(shouldFilterOut).isTrue();
     }
 
+    @Test
+    public void returnsTrue_whenStatusIsUnchanged_andAnotherBatchUpdatedInBetween() {
+        givenPreviousUpdate(firstPercentageStatus);
+        givenPreviousUpdate(otherBatchStatus);
+
+        boolean shouldFilterOut = downloadBatchStatusFilter.shouldFilterOut(firstPercentageStatus);
+
+        assertThat(shouldFilterOut).isTrue();
+    }
+
+    @Test
+    public void returnsFalse_whenFirstUpdateOfBatchFollowsAnotherBatch() {
+        givenPreviousUpdate(firstPercentageStatus);
+
+        boolean shouldFilterOut = downloadBatchStatusFilter.shouldFilterOut(otherBatchStatus);
+
+        assertThat(shouldFilterOut).isFalse();
+    }
+
     private void givenPreviousUpdate(InternalDownloadBatchStatus downloadBatchStatus) {
         downloadBatchStatusFilter.shouldFilterOut(downloadBatchStatus);
     }
@@ -4,23 +4,45 @@ import java.util.HashSet;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
+import static com.novoda.downloadmanager.DownloadBatchIdFixtures.aDownloadBatchId;
 import static com.novoda.downloadmanager.InternalDownloadBatchStatusFixtures.anInternalDownloadsBatchStatus;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
 public class DownloadBatchStatusNotificationDispatcherTest {
 
+    private static final long MIN_PROGRESS_INTERVAL_IN_MILLIS = 500;
+    private static final DownloadBatchId BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("batch_01").build();
+
     private final ServiceNotificationDispatcher<DownloadBatchStatus> notificationDispatcher = mock(ServiceNotificationDispatcher.class);
     private final DownloadsNotificationSeenPersistence persistence = mock(DownloadsNotificationSeenPersistence.class);
+    private final ActionScheduler scheduler = mock(ActionScheduler.class);
+    private final ArgumentCaptor<ActionScheduler.Action> scheduledAction = ArgumentCaptor.forClass(ActionScheduler.Action.class);
 
     private DownloadBatchStatusNotificationDispatcher downloadBatchStatusNotificationDispatcher;
+    private long nowInMillis;
 
     @Before
     public void setUp() {
         HashSet<String> downloadBatchIdNotificationSeen = new HashSet<>();
-        downloadBatchStatusNotificationDispatcher = new DownloadBatchStatusNotificationDispatcher(persistence, notificationDispatcher, downloadBatchIdNotificationSeen);
+        downloadBatchStatusNotificationDispatcher = new DownloadBatchStatusNotificationDispatcher(
+                persistence,
+                notificationDispatcher,
+                downloadBatchIdNotificationSeen,
+                Optional.of(new NotificationUpdateLimiter(
+                        () -> nowInMillis,
+                        MIN_PROGRESS_INTERVAL_IN_MILLIS,
+                        scheduler,
+                        Runnable::run,
+                        notificationDispatcher::updateNotification
+                ))
+        );
     }
 
     @Test
@@ -50,6 +72,76 @@ public class DownloadBatchStatusNotificationDispatcherTest {
         verify(notificationDispatcher).updateNotification(notificationNotSeenStatus);
     }
 
+    @Test
+    public void doesNotUpdateNotification_whenVisibleContentIsUnchanged() {
+        downloadBatchStatusNotificationDispatcher.updateNotification(aDownloadingStatus(100));
+        nowInMillis += MIN_PROGRESS_INTERVAL_IN_MILLIS;
+
+        downloadBatchStatusNotificationDispatcher.updateNotification(aDownloadingStatus(100));
+
+        verify(notificationDispatcher, times(1)).updateNotification(any(DownloadBatchStatus.class));
+    }
+
+    @Test
+    public void doesNotUpdateNotification_whenProgressChangesWithinInterval() {
+        downloadBatchStatusNotificationDispatcher.updateNotification(aDownloadingStatus(100));
+        nowInMillis += MIN_PROGRESS_INTERVAL_IN_MILLIS - 1;
+        InternalDownloadBatchStatus progressedStatus = aDownloadingStatus(200);
+
+        downloadBatchStatusNotificationDispatcher.updateNotification(progressedStatus);
+
+        verify(notificationDispatcher, never()).updateNotification(progressedStatus);
+    }
+
+    @Test
+    public void rendersHeldBackProgress_whenIntervalHasPassedWithoutFurtherUpdates() {
+        downloadBatchStatusNotificationDispatcher.updateNotification(aDownloadingStatus(100));
+        nowInMillis += MIN_PROGRESS_INTERVAL_IN_MILLIS - 1;
+        InternalDownloadBatchStatus progressedStatus = aDownloadingStatus(200);
+        downloadBatchStatusNotificationDispatcher.updateNotification(progressedStatus);
+
+        nowInMillis += 1;
+        verify(scheduler).schedule(scheduledAction.capture());
+        scheduledAction.getValue().perform();
+
+        verify(notificationDispatcher).updateNotification(progressedStatus);
+        verify(scheduler).cancel(scheduledAction.getValue());
+    }
+
+    @Test
+    public void doesNotScheduleTrailingRender_whenVisibleContentIsUnchanged() {
+        downloadBatchStatusNotificationDispatcher.updateNotification(aDownloadingStatus(100));
+
+        downloadBatchStatusNotificationDispatcher.updateNotification(aDownloadingStatus(100));
+
+        verify(scheduler, never()).schedule(any(ActionScheduler.Action.class));
+    }
+
+    @Test
+    public void updatesNotification_whenProgressChangesAfterInterval() {
+        downloadBatchStatusNotificationDispatcher.updateNotification(aDownloadingStatus(100));
+        nowInMillis += MIN_PROGRESS_INTERVAL_IN_MILLIS;
+        InternalDownloadBatchStatus progressedStatus = aDownloadingStatus(200);
+
+        downloadBatchStatusNotificationDispatcher.updateNotification(progressedStatus);
+
+        verify(notificationDispatcher).updateNotification(progressedStatus);
+    }
+
+    @Test
+    public void updatesNotification_whenStatusChangesWithinInterval() {
+        downloadBatchStatusNotificationDispatcher.updateNotification(aDownloadingStatus(100));
+        InternalDownloadBatchStatus pausedStatus = anInternalDownloadsBatchStatus()
+                .withDownloadBatchId(BATCH_ID)
+                .withStatus(DownloadBatchStatus.Status.PAUSED)
+                .withBytesDownloaded(100)
+                .build();
+
+        downloadBatchStatusNotificationDispatcher.updateNotification(pausedStatus);
+
+        verify(notificationDispatcher).updateNotification(pausedStatus);
+    }
+
     @Test
     public void setsDownloadServiceOnNotificationDispatcher() {
         DownloadService downloadService = mock(LiteDownloadService.class);
@@ -59,4 +151,12 @@ public class DownloadBatchStatusNotificationDispatcherTest {
         verify(notificationDispatcher).setService(downloadService);
     }
 
+    private InternalDownloadBatchStatus aDownloadingStatus(long bytesDownloaded) {
+        return anInternalDownloadsBatchStatus()
+                .withDownloadBatchId(BATCH_ID)
+                .withStatus(DownloadBatchStatus.Status.DOWNLOADING)
+                .withBytesDownloaded(bytesDownloaded)
+                .withBytesTotalSize(1000)
+                .build();
+    }
 }
@@ -20,6 +20,8 @@ class DownloadFileFixtures {
     private FileSizeRequester fileSizeRequester = new InMemoryFileSizeRequester();
     private FilePersistence filePersistence = aFilePersistence().build();
     private DownloadsFilePersistence downloadsFilePersistence = mock(DownloadsFilePersistence.class);
+    private DownloadMetricsRegistry metrics = mock(DownloadMetricsRegistry.class);
+    private FileDownloadEvents events = mock(FileDownloadEvents.class);
 
     static DownloadFileFixtures aDownloadFile() {
         return new DownloadFileFixtures();
@@ -75,6 +77,16 @@ class DownloadFileFixtures {
         return this;
     }
 
+    DownloadFileFixtures withMetrics(DownloadMetricsRegistry metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    DownloadFileFixtures withEvents(FileDownloadEvents events) {
+        this.events = events;
+        return this;
+    }
+
     DownloadFile build() {
         return new DownloadFile(
                 downloadBatchId,
@@ -86,7 +98,9 @@ class DownloadFileFixtures {
                 fileDownloader,
                 fileSizeRequester,
                 filePersistence,
-                downloadsFilePersistence
+                downloadsFilePersistence,
+                metrics,
+                events
         );
     }
 }
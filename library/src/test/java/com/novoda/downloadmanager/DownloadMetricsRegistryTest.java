@@ -0,0 +1,143 @@
+package com.novoda.downloadmanager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.novoda.downloadmanager.DownloadBatchIdFixtures.aDownloadBatchId;
+import static com.novoda.downloadmanager.DownloadFileIdFixtures.aDownloadFileId;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class DownloadMetricsRegistryTest {
+
+    private static final DownloadBatchId BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("batch_01").build();
+    private static final DownloadFileId FILE_ID = aDownloadFileId().withRawDownloadFileId("file_01").build();
+    private static final Optional<String> HOST = Optional.of("example.com");
+    private static final long ONE_SECOND_IN_MILLIS = 1000;
+    private static final long ONE_MILLISECOND_IN_NANOS = 1_000_000;
+
+    private final ActionScheduler scheduler = mock(ActionScheduler.class);
+    private final DownloadMetricsListener listener = mock(DownloadMetricsListener.class);
+    private final ArgumentCaptor<ActionScheduler.Action> scheduledAction = ArgumentCaptor.forClass(ActionScheduler.Action.class);
+
+    private DownloadMetricsRegistry metricsRegistry;
+    private long nowInMillis;
+
+    @Before
+    public void setUp() {
+        metricsRegistry = new DownloadMetricsRegistry(scheduler, () -> nowInMillis, Runnable::run);
+    }
+
+    @Test
+    public void reportsThroughputOfFileBatchAndHost_afterSampling() {
+        metricsRegistry.recordBytesRead(BATCH_ID, FILE_ID, HOST, 500);
+        nowInMillis += ONE_SECOND_IN_MILLIS;
+
+        tick();
+
+        DownloadMetrics metrics = metricsRegistry.snapshot();
+        assertThat(metrics.fileThroughput().get(FILE_ID).currentBytesPerSecond()).isEqualTo(500);
+        assertThat(metrics.batchThroughput().get(BATCH_ID).bytesDownloaded()).isEqualTo(500);
+        assertThat(metrics.hostThroughput().get("example.com").currentBytesPerSecond()).isEqualTo(500);
+    }
+
+    @Test
+    public void smoothsAverageThroughput_acrossSamples() {
+        metricsRegistry.recordBytesRead(BATCH_ID, FILE_ID, HOST, 1000);
+        nowInMillis += ONE_SECOND_IN_MILLIS;
+        tick();
+
+        DownloadThroughput throughput = metricsRegistry.snapshot().fileThroughput().get(FILE_ID);
+
+        assertThat(throughput.averageBytesPerSecond()).isGreaterThan(0L);
+        assertThat(throughput.averageBytesPerSecond()).isLessThan(throughput.currentBytesPerSecond());
+    }
+
+    @Test
+    public void schedulesSingleTick_forManyReads() {
+        metricsRegistry.recordBytesRead(BATCH_ID, FILE_ID, HOST, 100);
+        metricsRegistry.recordBytesRead(BATCH_ID, FILE_ID, HOST, 100);
+
+        verify(scheduler, times(1)).schedule(any(ActionScheduler.Action.class));
+    }
+
+    @Test
+    public void dropsIdleMetersAndStopsTicking_whenNothingIsRead() {
+        metricsRegistry.recordBytesRead(BATCH_ID, FILE_ID, Optional.absent(), 1);
+        nowInMillis += ONE_SECOND_IN_MILLIS;
+        tick();
+
+        nowInMillis += ONE_SECOND_IN_MILLIS;
+        tick();
+
+        assertThat(metricsRegistry.snapshot().fileThroughput()).isEmpty();
+        verify(scheduler).cancel(scheduledAction.getValue());
+    }
+
+    @Test
+    public void countsBytesOnNewMeter_whenReadAfterMeterWasDropped() {
+        metricsRegistry.recordBytesRead(BATCH_ID, FILE_ID, Optional.absent(), 1);
+        nowInMillis += ONE_SECOND_IN_MILLIS;
+        tick();
+        nowInMillis += ONE_SECOND_IN_MILLIS;
+        tick();
+
+        metricsRegistry.recordBytesRead(BATCH_ID, FILE_ID, Optional.absent(), 200);
+
+        assertThat(metricsRegistry.snapshot().fileThroughput().get(FILE_ID).bytesDownloaded()).isEqualTo(200);
+    }
+
+    @Test
+    public void notifiesListeners_onEveryTick() {
+        metricsRegistry.addListener(listener);
+        metricsRegistry.recordBytesRead(BATCH_ID, FILE_ID, HOST, 100);
+
+        tick();
+
+        verify(listener).onMetricsUpdated(any(DownloadMetrics.class));
+    }
+
+    @Test
+    public void doesNotNotifyListener_onceRemoved() {
+        metricsRegistry.addListener(listener);
+        metricsRegistry.removeListener(listener);
+        metricsRegistry.recordBytesRead(BATCH_ID, FILE_ID, HOST, 100);
+
+        tick();
+
+        verify(listener, never()).onMetricsUpdated(any(DownloadMetrics.class));
+    }
+
+    @Test
+    public void reportsLatencies_inMicros() {
+        metricsRegistry.recordResponseHeaders(2 * ONE_MILLISECOND_IN_NANOS);
+        metricsRegistry.recordResponseHeaders(4 * ONE_MILLISECOND_IN_NANOS);
+
+        DownloadLatency responseHeadersLatency = metricsRegistry.snapshot().responseHeadersLatency();
+
+        assertThat(responseHeadersLatency.count()).isEqualTo(2);
+        assertThat(responseHeadersLatency.lastInMicros()).isEqualTo(4000);
+        assertThat(responseHeadersLatency.averageInMicros()).isEqualTo(3000);
+        assertThat(responseHeadersLatency.maxInMicros()).isEqualTo(4000);
+    }
+
+    @Test
+    public void reportsExecutorQueueDepths() {
+        metricsRegistry.trackExecutorQueue("downloads", Arrays.asList("first", "second"));
+
+        assertThat(metricsRegistry.snapshot().executorQueueDepths()).containsEntry("downloads", 2);
+    }
+
+    private void tick() {
+        verify(scheduler, atLeastOnce()).schedule(scheduledAction.capture());
+        scheduledAction.getValue().perform();
+    }
+}
@@ -0,0 +1,82 @@
+package com.novoda.downloadmanager;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import static com.novoda.downloadmanager.DownloadBatchIdFixtures.aDownloadBatchId;
+import static com.novoda.downloadmanager.InternalDownloadBatchStatusFixtures.anInternalDownloadsBatchStatus;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class DownloadsBatchPersistenceTest {
+
+    private static final DownloadBatchId BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("batch_01").build();
+    private static final DownloadBatchStatus DOWNLOAD_BATCH_STATUS = anInternalDownloadsBatchStatus().withDownloadBatchId(BATCH_ID).build();
+
+    private final Queue<Runnable> queuedWrites = new ArrayDeque<>();
+    private final Executor readExecutor = Runnable::run;
+    private final Executor writeExecutor = queuedWrites::add;
+    private final DownloadsPersistence downloadsPersistence = mock(DownloadsPersistence.class);
+    private final FileOperations fileOperations = mock(FileOperations.class);
+    private final DownloadsBatchPersistence.LoadBatchesCallback loadBatchesCallback = mock(DownloadsBatchPersistence.LoadBatchesCallback.class);
+
+    private DownloadsBatchPersistence downloadsBatchPersistence;
+
+    @Before
+    public void setUp() {
+        given(downloadsPersistence.delete(BATCH_ID)).willReturn(true);
+        given(downloadsPersistence.loadBatches()).willReturn(Collections.emptyList());
+
+        downloadsBatchPersistence = new DownloadsBatchPersistence(
+                readExecutor,
+                writeExecutor,
+                new DownloadsFilePersistence(downloadsPersistence),
+                downloadsPersistence,
+                CallbackThrottleCreator.byProgressIncrease(),
+                mock(ConnectionChecker.class),
+                mock(DownloadMetricsRegistry.class)
+        );
+    }
+
+    @Test
+    public void doesNotLoad_whileEarlierWritesAreQueued() {
+        downloadsBatchPersistence.deleteAsync(DOWNLOAD_BATCH_STATUS, downloadBatchId -> {
+            // no-op
+        });
+
+        downloadsBatchPersistence.loadAsync(fileOperations, loadBatchesCallback);
+
+        verify(downloadsPersistence, never()).loadBatches();
+    }
+
+    @Test
+    public void loadsAfterEarlierWrites_whenQueuedWritesHaveRun() {
+        downloadsBatchPersistence.deleteAsync(DOWNLOAD_BATCH_STATUS, downloadBatchId -> {
+            // no-op
+        });
+        downloadsBatchPersistence.loadAsync(fileOperations, loadBatchesCallback);
+
+        runQueuedWrites();
+
+        InOrder inOrder = inOrder(downloadsPersistence, loadBatchesCallback);
+        inOrder.verify(downloadsPersistence).delete(BATCH_ID);
+        inOrder.verify(downloadsPersistence).loadBatches();
+        inOrder.verify(loadBatchesCallback).onLoaded(Collections.emptyList());
+    }
+
+    private void runQueuedWrites() {
+        Runnable write;
+        while ((write = queuedWrites.poll()) != null) {
+            write.run();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.novoda.downloadmanager;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.novoda.downloadmanager.DownloadsBatchPersistedFixtures.aDownloadsBatchPersisted;
+
+public class DownloadsPersistenceTest {
+
+    private final Map<DownloadsBatchPersisted, List<DownloadsFilePersisted>> filesByBatches = new LinkedHashMap<>();
+    private final DownloadsPersistence persistence = new FakeDownloadsPersistence(filesByBatches);
+
+    @Test
+    public void filtersAllBatchesByStatus_whenStatusQueryIsNotOverridden() {
+        givenBatch(aBatch("downloaded", DownloadBatchStatus.Status.DOWNLOADED, 100));
+        givenBatch(aBatch("paused", DownloadBatchStatus.Status.PAUSED, 100));
+
+        List<DownloadsBatchPersisted> batches = persistence.loadBatches(DownloadBatchStatus.Status.DOWNLOADED);
+
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0).downloadBatchId().rawId()).isEqualTo("downloaded");
+    }
+
+    @Test
+    public void filtersAllBatchesByStatusAndTime_whenDownloadedBeforeQueryIsNotOverridden() {
+        givenBatch(aBatch("old_downloaded", DownloadBatchStatus.Status.DOWNLOADED, 100));
+        givenBatch(aBatch("new_downloaded", DownloadBatchStatus.Status.DOWNLOADED, 300));
+
+        List<DownloadsBatchPersisted> batches = persistence.loadBatches(DownloadBatchStatus.Status.DOWNLOADED, 200);
+
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0).downloadBatchId().rawId()).isEqualTo("old_downloaded");
+    }
+
+    @Test
+    public void filtersAllBatchesByStorageRoot_whenStorageRootQueryIsNotOverridden() {
+        givenBatch(aDownloadsBatchPersisted().withRawDownloadBatchId("internal").withStorageRoot("/internal").build());
+        givenBatch(aDownloadsBatchPersisted().withRawDownloadBatchId("external").withStorageRoot("/external").build());
+
+        List<DownloadsBatchPersisted> batches = persistence.loadBatches(() -> "/external");
+
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0).downloadBatchId().rawId()).isEqualTo("external");
+    }
+
+    private void givenBatch(DownloadsBatchPersisted batchPersisted) {
+        filesByBatches.put(batchPersisted, Collections.emptyList());
+    }
+
+    private DownloadsBatchPersisted aBatch(String rawBatchId, DownloadBatchStatus.Status status, long downloadedDateTimeInMillis) {
+        return aDownloadsBatchPersisted()
+                .withRawDownloadBatchId(rawBatchId)
+                .withDownloadBatchStatus(status)
+                .withDownloadedDateTimeInMillis(downloadedDateTimeInMillis)
+                .build();
+    }
+}
@@ -0,0 +1,118 @@
+package com.novoda.downloadmanager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.novoda.downloadmanager.DownloadBatchIdFixtures.aDownloadBatchId;
+import static com.novoda.downloadmanager.InternalDownloadBatchStatusFixtures.anInternalDownloadsBatchStatus;
+
+public class ExecutorStatusDeliveryTest {
+
+    private static final DownloadBatchId BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("batch_01").build();
+    private static final DownloadBatchId OTHER_BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("batch_02").build();
+
+    private static final DownloadBatchStatus FIRST_STATUS = aStatus(BATCH_ID, 10);
+    private static final DownloadBatchStatus RESUBMITTED_STATUS = aStatus(BATCH_ID, 20);
+
+    private final Queue<Runnable> executedTasks = new ArrayDeque<>();
+    private final Executor executor = executedTasks::add;
+    private final List<DownloadBatchStatus> deliveredStatuses = new ArrayList<>();
+
+    private final ExecutorStatusDelivery statusDelivery = new ExecutorStatusDelivery(executor, deliveredStatuses::add);
+
+    private ExecutorStatusDelivery statusDeliveryToResubmitTo;
+
+    @Test
+    public void executesSingleTask_whenSeveralStatusesArriveBeforeDelivering() {
+        statusDelivery.submit(aStatus(BATCH_ID, 10));
+        statusDelivery.submit(aStatus(OTHER_BATCH_ID, 20));
+        statusDelivery.submit(aStatus(BATCH_ID, 30));
+
+        assertThat(executedTasks).hasSize(1);
+    }
+
+    @Test
+    public void deliversOnlyLatestStatusPerBatch() {
+        DownloadBatchStatus latestStatus = aStatus(BATCH_ID, 30);
+        DownloadBatchStatus otherStatus = aStatus(OTHER_BATCH_ID, 20);
+        statusDelivery.submit(aStatus(BATCH_ID, 10));
+        statusDelivery.submit(otherStatus);
+        statusDelivery.submit(latestStatus);
+
+        runExecutedTasks();
+
+        assertThat(deliveredStatuses).containsExactly(latestStatus, otherStatus).inOrder();
+    }
+
+    @Test
+    public void deliversInNextTask_whenStatusArrivesDuringDelivery() {
+        ExecutorStatusDelivery resubmittingDelivery = new ExecutorStatusDelivery(executor, this::deliverAndResubmit);
+        statusDeliveryToResubmitTo = resubmittingDelivery;
+        resubmittingDelivery.submit(FIRST_STATUS);
+
+        executedTasks.poll().run();
+
+        assertThat(deliveredStatuses).containsExactly(FIRST_STATUS);
+        assertThat(executedTasks).hasSize(1);
+
+        runExecutedTasks();
+
+        assertThat(deliveredStatuses).containsExactly(FIRST_STATUS, RESUBMITTED_STATUS).inOrder();
+        assertThat(executedTasks).isEmpty();
+    }
+
+    @Test
+    public void deliversPendingStatuses_whenExecutorAcceptsAfterRejecting() {
+        RejectingOnceExecutor rejectingOnceExecutor = new RejectingOnceExecutor();
+        ExecutorStatusDelivery rejectedDelivery = new ExecutorStatusDelivery(rejectingOnceExecutor, deliveredStatuses::add);
+        DownloadBatchStatus otherStatus = aStatus(OTHER_BATCH_ID, 20);
+        rejectedDelivery.submit(FIRST_STATUS);
+
+        rejectedDelivery.submit(otherStatus);
+        runExecutedTasks();
+
+        assertThat(deliveredStatuses).containsExactly(FIRST_STATUS, otherStatus).inOrder();
+    }
+
+    private void deliverAndResubmit(DownloadBatchStatus downloadBatchStatus) {
+        deliveredStatuses.add(downloadBatchStatus);
+        if (downloadBatchStatus == FIRST_STATUS) {
+            statusDeliveryToResubmitTo.submit(RESUBMITTED_STATUS);
+        }
+    }
+
+    private void runExecutedTasks() {
+        Runnable task;
+        while ((task = executedTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private class RejectingOnceExecutor implements Executor {
+
+        private boolean rejected;
+
+        @Override
+        public void execute(Runnable task) {
+            if (!rejected) {
+                rejected = true;
+                throw new RejectedExecutionException();
+            }
+            executedTasks.add(task);
+        }
+    }
+
+    private static DownloadBatchStatus aStatus(DownloadBatchId downloadBatchId, int percentageDownloaded) {
+        return anInternalDownloadsBatchStatus()
+                .withDownloadBatchId(downloadBatchId)
+                .withPercentageDownloaded(percentageDownloaded)
+                .build();
+    }
+}
@@ -74,6 +74,30 @@ public class FileCallbackThrottleByTimeTest {
         verify(actionScheduler).cancelAll();
     }
 
+    @Test
+    public void emitsPendingStatus_whenStoppingUpdates() {
+        given(actionScheduler.isScheduled(any(ActionScheduler.Action.class))).willReturn(true);
+        callbackThrottleByTime.setCallback(callback);
+        callbackThrottleByTime.update(downloadBatchStatus);
+
+        callbackThrottleByTime.stopUpdates();
+
+        verify(callback).onUpdate(downloadBatchStatus);
+    }
+
+    @Test
+    public void skipsTick_whenNoNewStatusIsPending() {
+        final ArgumentCaptor<ActionScheduler.Action> actionCaptor = ArgumentCaptor.forClass(ActionScheduler.Action.class);
+        callbackThrottleByTime.setCallback(callback);
+        callbackThrottleByTime.update(downloadBatchStatus);
+        verify(actionScheduler).schedule(actionCaptor.capture());
+
+        actionCaptor.getValue().perform();
+        callbackThrottleByTime.stopUpdates();
+
+        verify(callback, times(1)).onUpdate(downloadBatchStatus);
+    }
+
     @Test
     public void doesNotEmitLastStatus_whenCallbackAbsent() {
         callbackThrottleByTime.stopUpdates();
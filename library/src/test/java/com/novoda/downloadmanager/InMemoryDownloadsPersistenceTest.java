@@ -0,0 +1,189 @@
+package com.novoda.downloadmanager;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.novoda.downloadmanager.DownloadBatchIdFixtures.aDownloadBatchId;
+import static com.novoda.downloadmanager.DownloadFileIdFixtures.aDownloadFileId;
+import static com.novoda.downloadmanager.DownloadsBatchPersistedFixtures.aDownloadsBatchPersisted;
+import static com.novoda.downloadmanager.DownloadsFilePersistedFixtures.aDownloadsFilePersisted;
+import static com.novoda.downloadmanager.FilePathFixtures.aFilePath;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class InMemoryDownloadsPersistenceTest {
+
+    private static final String RAW_BATCH_ID = "batch_01";
+    private static final DownloadBatchId BATCH_ID = aDownloadBatchId().withRawDownloadBatchId(RAW_BATCH_ID).build();
+    private static final Optional<ActionScheduler> NO_SCHEDULER = Optional.absent();
+    private static final Executor SAME_THREAD = Runnable::run;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final InMemoryDownloadsPersistence persistence = new InMemoryDownloadsPersistence(Optional.absent(), NO_SCHEDULER, SAME_THREAD);
+
+    @Test
+    public void loadsOnlyFilesOfRequestedBatch() {
+        persistBatchWithFile(persistence, RAW_BATCH_ID, "file_01");
+        persistBatchWithFile(persistence, "batch_02", "file_02");
+
+        List<DownloadsFilePersisted> files = persistence.loadFiles(BATCH_ID);
+
+        assertThat(files).hasSize(1);
+        assertThat(files.get(0).downloadFileId().rawId()).isEqualTo("file_01");
+    }
+
+    @Test
+    public void returnsFalse_whenUpdatingMissingBatch() {
+        boolean updated = persistence.update(BATCH_ID, DownloadBatchStatus.Status.PAUSED);
+
+        assertThat(updated).isFalse();
+    }
+
+    @Test
+    public void removesFiles_whenBatchIsDeleted() {
+        persistBatchWithFile(persistence, RAW_BATCH_ID, "file_01");
+
+        boolean deleted = persistence.delete(BATCH_ID);
+
+        assertThat(deleted).isTrue();
+        assertThat(persistence.loadAllFiles()).isEmpty();
+    }
+
+    @Test
+    public void loadsOnlyBatchesWithStatus_downloadedBeforeGivenTime() {
+        persistence.persistBatch(aBatch("old_downloaded", DownloadBatchStatus.Status.DOWNLOADED, 100));
+        persistence.persistBatch(aBatch("new_downloaded", DownloadBatchStatus.Status.DOWNLOADED, 300));
+        persistence.persistBatch(aBatch("old_waiting", DownloadBatchStatus.Status.WAITING_FOR_NETWORK, 100));
+
+        List<DownloadsBatchPersisted> batches = persistence.loadBatches(DownloadBatchStatus.Status.DOWNLOADED, 200);
+
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0).downloadBatchId().rawId()).isEqualTo("old_downloaded");
+    }
+
+    @Test
+    public void loadsOnlyBatchesInStorageRoot() {
+        persistence.persistBatch(aDownloadsBatchPersisted().withRawDownloadBatchId("internal").withStorageRoot("/internal").build());
+        persistence.persistBatch(aDownloadsBatchPersisted().withRawDownloadBatchId("external").withStorageRoot("/external").build());
+
+        List<DownloadsBatchPersisted> batches = persistence.loadBatches(() -> "/external");
+
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0).downloadBatchId().rawId()).isEqualTo("external");
+    }
+
+    @Test
+    public void restoresState_fromSnapshot() throws IOException {
+        File snapshotFile = new File(temporaryFolder.newFolder(), "downloads.snapshot");
+        InMemoryDownloadsPersistence snapshotPersistence = new InMemoryDownloadsPersistence(Optional.of(snapshotFile), NO_SCHEDULER, SAME_THREAD);
+        persistBatchWithFile(snapshotPersistence, RAW_BATCH_ID, "file_01");
+        snapshotPersistence.update(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADED);
+        snapshotPersistence.snapshotIfChanged();
+
+        InMemoryDownloadsPersistence restored = new InMemoryDownloadsPersistence(Optional.of(snapshotFile), NO_SCHEDULER, SAME_THREAD);
+
+        assertThat(restored.loadBatches()).hasSize(1);
+        assertThat(restored.loadBatches().get(0).downloadBatchStatus()).isEqualTo(DownloadBatchStatus.Status.DOWNLOADED);
+        assertThat(restored.loadFiles(BATCH_ID)).hasSize(1);
+    }
+
+    @Test
+    public void doesNotWriteSnapshot_whenNothingChanged() throws IOException {
+        File snapshotFile = new File(temporaryFolder.newFolder(), "downloads.snapshot");
+        InMemoryDownloadsPersistence snapshotPersistence = new InMemoryDownloadsPersistence(Optional.of(snapshotFile), NO_SCHEDULER, SAME_THREAD);
+
+        snapshotPersistence.loadBatches();
+        snapshotPersistence.snapshotIfChanged();
+
+        assertThat(snapshotFile.exists()).isFalse();
+    }
+
+    @Test
+    public void writesSnapshotOnSnapshotExecutor_whenSchedulerTriggers() throws IOException {
+        File snapshotFile = new File(temporaryFolder.newFolder(), "downloads.snapshot");
+        ActionScheduler snapshotScheduler = mock(ActionScheduler.class);
+        Queue<Runnable> queuedSnapshots = new ArrayDeque<>();
+        InMemoryDownloadsPersistence snapshotPersistence = new InMemoryDownloadsPersistence(
+                Optional.of(snapshotFile),
+                Optional.of(snapshotScheduler),
+                queuedSnapshots::add
+        );
+        persistBatchWithFile(snapshotPersistence, RAW_BATCH_ID, "file_01");
+        ActionScheduler.Action trigger = scheduledActionOf(snapshotScheduler);
+
+        trigger.perform();
+        trigger.perform();
+
+        assertThat(snapshotFile.exists()).isFalse();
+        assertThat(queuedSnapshots).hasSize(1);
+        queuedSnapshots.poll().run();
+        assertThat(snapshotFile.exists()).isTrue();
+    }
+
+    @Test
+    public void discardsStagedMutations_whenTransactionFails() {
+        persistence.startTransaction();
+        try {
+            persistBatchWithFile(persistence, RAW_BATCH_ID, "file_01");
+        } finally {
+            persistence.endTransaction();
+        }
+
+        assertThat(persistence.loadBatches()).isEmpty();
+        assertThat(persistence.loadAllFiles()).isEmpty();
+    }
+
+    @Test
+    public void appliesStagedMutations_whenTransactionSucceeds() {
+        persistence.startTransaction();
+        try {
+            persistBatchWithFile(persistence, RAW_BATCH_ID, "file_01");
+            assertThat(persistence.loadBatches()).isEmpty();
+            persistence.transactionSuccess();
+        } finally {
+            persistence.endTransaction();
+        }
+
+        assertThat(persistence.loadBatches()).hasSize(1);
+        assertThat(persistence.loadFiles(BATCH_ID)).hasSize(1);
+    }
+
+    private void persistBatchWithFile(InMemoryDownloadsPersistence persistence, String rawBatchId, String rawFileId) {
+        persistence.persistBatch(aDownloadsBatchPersisted().withRawDownloadBatchId(rawBatchId).build());
+        persistence.persistFile(
+                aDownloadsFilePersisted()
+                        .withDownloadBatchId(aDownloadBatchId().withRawDownloadBatchId(rawBatchId).build())
+                        .withDownloadFileId(aDownloadFileId().withRawDownloadFileId(rawFileId).build())
+                        .withFilePath(aFilePath().withRawPath("/downloads/" + rawFileId).build())
+                        .withTotalFileSize(1000)
+                        .withUrl("http://example.com/" + rawFileId)
+                        .build()
+        );
+    }
+
+    private DownloadsBatchPersisted aBatch(String rawBatchId, DownloadBatchStatus.Status status, long downloadedDateTimeInMillis) {
+        return aDownloadsBatchPersisted()
+                .withRawDownloadBatchId(rawBatchId)
+                .withDownloadBatchStatus(status)
+                .withDownloadedDateTimeInMillis(downloadedDateTimeInMillis)
+                .build();
+    }
+
+    private static ActionScheduler.Action scheduledActionOf(ActionScheduler actionScheduler) {
+        ArgumentCaptor<ActionScheduler.Action> actionCaptor = ArgumentCaptor.forClass(ActionScheduler.Action.class);
+        verify(actionScheduler).schedule(actionCaptor.capture());
+        return actionCaptor.getValue();
+    }
+}
@@ -0,0 +1,149 @@
+package com.novoda.downloadmanager;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.novoda.downloadmanager.DownloadBatchIdFixtures.aDownloadBatchId;
+import static com.novoda.downloadmanager.DownloadFileIdFixtures.aDownloadFileId;
+import static com.novoda.downloadmanager.DownloadsBatchPersistedFixtures.aDownloadsBatchPersisted;
+import static com.novoda.downloadmanager.DownloadsFilePersistedFixtures.aDownloadsFilePersisted;
+import static com.novoda.downloadmanager.FilePathFixtures.aFilePath;
+
+public class JournalDownloadsPersistenceTest {
+
+    private static final int COMPACTION_THRESHOLD = 10;
+    private static final String RAW_BATCH_ID = "batch_01";
+    private static final DownloadBatchId BATCH_ID = aDownloadBatchId().withRawDownloadBatchId(RAW_BATCH_ID).build();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File directory;
+    private JournalDownloadsPersistence persistence;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = temporaryFolder.newFolder();
+        persistence = new JournalDownloadsPersistence(directory, COMPACTION_THRESHOLD);
+    }
+
+    @Test
+    public void replaysBatchesAndFiles_whenReopened() {
+        persistBatchWithFile(DownloadBatchStatus.Status.QUEUED);
+
+        JournalDownloadsPersistence reopened = reopen();
+
+        List<DownloadsBatchPersisted> batches = reopened.loadBatches();
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0).downloadBatchId().rawId()).isEqualTo(RAW_BATCH_ID);
+        assertThat(batches.get(0).downloadBatchStatus()).isEqualTo(DownloadBatchStatus.Status.QUEUED);
+        assertThat(reopened.loadFiles(BATCH_ID)).hasSize(1);
+        assertThat(reopened.loadFiles(BATCH_ID).get(0).url()).isEqualTo("http://example.com/file");
+    }
+
+    @Test
+    public void replaysUpdates_whenReopened() {
+        persistBatchWithFile(DownloadBatchStatus.Status.QUEUED);
+        persistence.update(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADED);
+        persistence.update(BATCH_ID, true);
+
+        DownloadsBatchPersisted batch = reopen().loadBatches().get(0);
+
+        assertThat(batch.downloadBatchStatus()).isEqualTo(DownloadBatchStatus.Status.DOWNLOADED);
+        assertThat(batch.notificationSeen()).isTrue();
+    }
+
+    @Test
+    public void removesBatchAndFiles_whenDeleted() {
+        persistBatchWithFile(DownloadBatchStatus.Status.QUEUED);
+
+        boolean deleted = persistence.delete(BATCH_ID);
+
+        JournalDownloadsPersistence reopened = reopen();
+        assertThat(deleted).isTrue();
+        assertThat(reopened.loadBatches()).isEmpty();
+        assertThat(reopened.loadAllFiles()).isEmpty();
+    }
+
+    @Test
+    public void returnsFalse_whenUpdatingMissingBatch() {
+        boolean updated = persistence.update(BATCH_ID, DownloadBatchStatus.Status.PAUSED);
+
+        assertThat(updated).isFalse();
+    }
+
+    @Test
+    public void discardsChanges_whenTransactionIsNotSuccessful() {
+        persistence.startTransaction();
+        persistence.persistBatch(aBatch(DownloadBatchStatus.Status.QUEUED));
+        persistence.endTransaction();
+
+        assertThat(persistence.loadBatches()).isEmpty();
+        assertThat(reopen().loadBatches()).isEmpty();
+    }
+
+    @Test
+    public void ignoresTornRecord_whenReplayingJournal() throws IOException {
+        persistBatchWithFile(DownloadBatchStatus.Status.QUEUED);
+        try (FileOutputStream journal = new FileOutputStream(new File(directory, "downloads.journal"), true)) {
+            journal.write(new byte[]{0, 0, 0, 42, 1, 2});
+        }
+
+        JournalDownloadsPersistence reopened = reopen();
+        reopened.update(BATCH_ID, DownloadBatchStatus.Status.PAUSED);
+
+        DownloadsBatchPersisted batch = reopen().loadBatches().get(0);
+        assertThat(batch.downloadBatchStatus()).isEqualTo(DownloadBatchStatus.Status.PAUSED);
+    }
+
+    @Test
+    public void keepsState_whenJournalIsCompacted() {
+        persistBatchWithFile(DownloadBatchStatus.Status.QUEUED);
+        int recordsForBatchWithFile = 2;
+        for (int i = recordsForBatchWithFile; i < COMPACTION_THRESHOLD; i++) {
+            persistence.update(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING);
+        }
+
+        JournalDownloadsPersistence reopened = reopen();
+
+        assertThat(new File(directory, "downloads.snapshot").exists()).isTrue();
+        assertThat(new File(directory, "downloads.journal").length()).isEqualTo(0L);
+        assertThat(reopened.loadBatches().get(0).downloadBatchStatus()).isEqualTo(DownloadBatchStatus.Status.DOWNLOADING);
+        assertThat(reopened.loadFiles(BATCH_ID)).hasSize(1);
+    }
+
+    private void persistBatchWithFile(DownloadBatchStatus.Status status) {
+        persistence.startTransaction();
+        persistence.persistBatch(aBatch(status));
+        persistence.persistFile(
+                aDownloadsFilePersisted()
+                        .withDownloadBatchId(BATCH_ID)
+                        .withDownloadFileId(aDownloadFileId().withRawDownloadFileId("file_01").build())
+                        .withFilePath(aFilePath().withRawPath("/downloads/file_01").build())
+                        .withTotalFileSize(1000)
+                        .withUrl("http://example.com/file")
+                        .build()
+        );
+        persistence.transactionSuccess();
+        persistence.endTransaction();
+    }
+
+    private DownloadsBatchPersisted aBatch(DownloadBatchStatus.Status status) {
+        return aDownloadsBatchPersisted()
+                .withRawDownloadBatchId(RAW_BATCH_ID)
+                .withDownloadBatchStatus(status)
+                .build();
+    }
+
+    private JournalDownloadsPersistence reopen() {
+        return new JournalDownloadsPersistence(directory, COMPACTION_THRESHOLD);
+    }
+}
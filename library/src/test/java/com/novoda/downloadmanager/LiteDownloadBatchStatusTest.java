@@ -0,0 +1,112 @@
+package com.novoda.downloadmanager;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.novoda.downloadmanager.InternalDownloadBatchStatusFixtures.anInternalDownloadsBatchStatus;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class LiteDownloadBatchStatusTest {
+
+    private final DownloadsBatchStatusPersistence persistence = mock(DownloadsBatchStatusPersistence.class);
+
+    @Test
+    public void persistsNewStatus_whenTransitionIsAllowed() {
+        InternalDownloadBatchStatus batchStatus = aBatchStatusWith(DownloadBatchStatus.Status.QUEUED);
+
+        boolean moved = batchStatus.markAsDownloading(persistence);
+
+        assertThat(moved).isTrue();
+        assertThat(batchStatus.status()).isEqualTo(DownloadBatchStatus.Status.DOWNLOADING);
+        verify(persistence).updateStatusAsync(batchStatus.getDownloadBatchId(), DownloadBatchStatus.Status.DOWNLOADING);
+    }
+
+    @Test
+    public void keepsDeleting_whenWorkerMarksAsDownloading() {
+        InternalDownloadBatchStatus batchStatus = aBatchStatusWith(DownloadBatchStatus.Status.DELETING);
+
+        boolean moved = batchStatus.markAsDownloading(persistence);
+
+        assertThat(moved).isFalse();
+        assertThat(batchStatus.status()).isEqualTo(DownloadBatchStatus.Status.DELETING);
+        verify(persistence, never()).updateStatusAsync(any(DownloadBatchId.class), any(DownloadBatchStatus.Status.class));
+    }
+
+    @Test
+    public void keepsPaused_whenWorkerMarksAsWaitingForNetwork() {
+        InternalDownloadBatchStatus batchStatus = aBatchStatusWith(DownloadBatchStatus.Status.PAUSED);
+
+        boolean moved = batchStatus.markAsWaitingForNetwork(mock(DownloadsBatchPersistence.class));
+
+        assertThat(moved).isFalse();
+        assertThat(batchStatus.status()).isEqualTo(DownloadBatchStatus.Status.PAUSED);
+    }
+
+    @Test
+    public void marksAsDeletedOnlyOnce() {
+        InternalDownloadBatchStatus batchStatus = aBatchStatusWith(DownloadBatchStatus.Status.DELETING);
+
+        boolean firstMove = batchStatus.markAsDeleted();
+        boolean secondMove = batchStatus.markAsDeleted();
+
+        assertThat(firstMove).isTrue();
+        assertThat(secondMove).isFalse();
+    }
+
+    @Test
+    public void doesNotMarkAsDeleted_whenNotDeleting() {
+        InternalDownloadBatchStatus batchStatus = aBatchStatusWith(DownloadBatchStatus.Status.DOWNLOADING);
+
+        boolean moved = batchStatus.markAsDeleted();
+
+        assertThat(moved).isFalse();
+        assertThat(batchStatus.status()).isEqualTo(DownloadBatchStatus.Status.DOWNLOADING);
+    }
+
+    @Test
+    public void doesNotKeepError_whenTransitionIsRejected() {
+        InternalDownloadBatchStatus batchStatus = aBatchStatusWith(DownloadBatchStatus.Status.DOWNLOADED);
+
+        batchStatus.markAsError(Optional.of(DownloadErrorFactory.createNetworkError("cause")), persistence);
+
+        assertThat(batchStatus.status()).isEqualTo(DownloadBatchStatus.Status.DOWNLOADED);
+        assertThat(batchStatus.downloadError()).isNull();
+    }
+
+    @Test
+    public void returnsPreviousStatus_whenMarkedAsDeleting() {
+        InternalDownloadBatchStatus batchStatus = aBatchStatusWith(DownloadBatchStatus.Status.PAUSED);
+
+        DownloadBatchStatus.Status previousStatus = batchStatus.markAsDeleting();
+
+        assertThat(previousStatus).isEqualTo(DownloadBatchStatus.Status.PAUSED);
+        assertThat(batchStatus.status()).isEqualTo(DownloadBatchStatus.Status.DELETING);
+    }
+
+    @Test
+    public void returnsNoPreviousStatus_whenAlreadyDeleting() {
+        InternalDownloadBatchStatus batchStatus = aBatchStatusWith(DownloadBatchStatus.Status.DELETING);
+
+        DownloadBatchStatus.Status previousStatus = batchStatus.markAsDeleting();
+
+        assertThat(previousStatus).isNull();
+    }
+
+    @Test
+    public void keepsError_whenMarkedAsError() {
+        InternalDownloadBatchStatus batchStatus = aBatchStatusWith(DownloadBatchStatus.Status.DOWNLOADING);
+        DownloadError downloadError = DownloadErrorFactory.createNetworkError("cause");
+
+        batchStatus.markAsError(Optional.of(downloadError), persistence);
+
+        assertThat(batchStatus.status()).isEqualTo(DownloadBatchStatus.Status.ERROR);
+        assertThat(batchStatus.downloadError()).isEqualTo(downloadError);
+    }
+
+    private InternalDownloadBatchStatus aBatchStatusWith(DownloadBatchStatus.Status status) {
+        return anInternalDownloadsBatchStatus().withStatus(status).build();
+    }
+}
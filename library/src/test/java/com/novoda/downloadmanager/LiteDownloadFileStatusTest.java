@@ -0,0 +1,31 @@
+package com.novoda.downloadmanager;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.novoda.downloadmanager.DownloadFileStatusFixtures.aDownloadFileStatus;
+
+public class LiteDownloadFileStatusTest {
+
+    private final DownloadError downloadError = DownloadErrorFactory.createNetworkError("cause");
+
+    @Test
+    public void keepsError_whenMarkedAsError() {
+        InternalDownloadFileStatus fileStatus = aDownloadFileStatus().withStatus(InternalDownloadFileStatus.Status.DOWNLOADING).build();
+
+        fileStatus.markAsError(downloadError);
+
+        assertThat(fileStatus.isMarkedAsError()).isTrue();
+        assertThat(fileStatus.error()).isEqualTo(Optional.of(downloadError));
+    }
+
+    @Test
+    public void doesNotKeepError_whenTransitionIsRejected() {
+        InternalDownloadFileStatus fileStatus = aDownloadFileStatus().withStatus(InternalDownloadFileStatus.Status.PAUSED).build();
+
+        fileStatus.markAsError(downloadError);
+
+        assertThat(fileStatus.status()).isEqualTo(InternalDownloadFileStatus.Status.PAUSED);
+        assertThat(fileStatus.error().isPresent()).isFalse();
+    }
+}
@@ -9,12 +9,12 @@ import org.mockito.InOrder;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import static com.google.common.truth.Truth.assertThat;
@@ -25,9 +25,11 @@ import static com.novoda.downloadmanager.InternalDownloadBatchStatusFixtures.anI
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.willAnswer;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -38,6 +40,8 @@ public class LiteDownloadManagerTest {
     private static final InternalDownloadBatchStatus ADDITIONAL_BATCH_STATUS = anInternalDownloadsBatchStatus().build();
     private static final DownloadBatchId DOWNLOAD_BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("id01").build();
     private static final DownloadBatchId ADDITIONAL_DOWNLOAD_BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("id02").build();
+    private static final InternalDownloadBatchStatus STORED_BATCH_STATUS = anInternalDownloadsBatchStatus().build();
+    private static final DownloadBatchId STORED_DOWNLOAD_BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("id03").build();
     private static final Batch BATCH = Batch.with(TestStorageRootFactory.create(), DOWNLOAD_BATCH_ID, "title").build();
     private static final DownloadFileId DOWNLOAD_FILE_ID = aDownloadFileId().withRawDownloadFileId("file_id_01").build();
     private static final DownloadFileStatus DOWNLOAD_FILE_STATUS = aDownloadFileStatus().withDownloadFileId(DOWNLOAD_FILE_ID).build();
@@ -49,12 +53,12 @@ public class LiteDownloadManagerTest {
     private final DownloadService downloadService = mock(DownloadService.class);
     private final Object serviceLock = spy(new Object());
     private final Object callbackLock = spy(new Object());
-    private final ExecutorService executorService = mock(ExecutorService.class);
     private final Handler handler = mock(Handler.class);
     private final DownloadBatch downloadBatch = mock(DownloadBatch.class);
     private final DownloadBatch additionalDownloadBatch = mock(DownloadBatch.class);
     private final DownloadBatchStatusCallback downloadBatchCallback = mock(DownloadBatchStatusCallback.class);
     private final FileOperations fileOperations = mock(FileOperations.class);
+    private final DownloadMetricsRegistry metrics = mock(DownloadMetricsRegistry.class);
     private final FileDownloader fileDownloader = mock(FileDownloader.class);
     private final FileDownloaderCreator fileDownloaderCreator = mock(FileDownloaderCreator.class);
     private final DownloadsBatchPersistence downloadsBatchPersistence = mock(DownloadsBatchPersistence.class);
@@ -62,26 +66,33 @@ public class LiteDownloadManagerTest {
     private final ConnectionChecker connectionChecker = mock(ConnectionChecker.class);
 
     private LiteDownloadManager liteDownloadManager;
-    private Map<DownloadBatchId, DownloadBatch> downloadingBatches = new HashMap<>();
+    private DownloadBatchRegistry downloadingBatches = new DownloadBatchRegistry();
     private List<DownloadBatchStatus> downloadBatchStatuses = new ArrayList<>();
     private Set<DownloadBatchStatusCallback> downloadBatchCallbacks = new CopyOnWriteArraySet<>();
+    private Map<DownloadBatchStatusCallback, ExecutorStatusDelivery> executorDownloadBatchCallbacks = new ConcurrentHashMap<>();
     private DownloadFileStatus downloadFileStatus = null;
 
     @Before
     public void setUp() {
-        downloadingBatches = new HashMap<>();
+        given(downloadBatch.getId()).willReturn(DOWNLOAD_BATCH_ID);
+        given(downloadBatch.status()).willReturn(BATCH_STATUS);
+        given(additionalDownloadBatch.getId()).willReturn(ADDITIONAL_DOWNLOAD_BATCH_ID);
+        given(additionalDownloadBatch.status()).willReturn(ADDITIONAL_BATCH_STATUS);
+
+        downloadingBatches = new DownloadBatchRegistry();
         downloadingBatches.put(DOWNLOAD_BATCH_ID, downloadBatch);
         downloadingBatches.put(ADDITIONAL_DOWNLOAD_BATCH_ID, additionalDownloadBatch);
+        clearInvocations(downloadBatch, additionalDownloadBatch);
 
         downloadBatchCallbacks.add(downloadBatchCallback);
 
         liteDownloadManager = new LiteDownloadManager(
                 serviceLock,
                 callbackLock,
-                executorService,
                 handler,
                 downloadingBatches,
                 downloadBatchCallbacks,
+                executorDownloadBatchCallbacks,
                 fileOperations,
                 downloadsBatchPersistence,
                 downloadManagerDownloader,
@@ -94,15 +105,8 @@ public class LiteDownloadManagerTest {
         setupNetworkRecoveryCreator();
         setupFileOperations();
 
-        given(downloadBatch.status()).willReturn(BATCH_STATUS);
         given(downloadBatch.downloadFileStatusWith(DOWNLOAD_FILE_ID)).willReturn(DOWNLOAD_FILE_STATUS);
         given(additionalDownloadBatch.downloadFileStatusWith(DOWNLOAD_FILE_ID)).willReturn(DOWNLOAD_FILE_STATUS);
-        given(additionalDownloadBatch.status()).willReturn(ADDITIONAL_BATCH_STATUS);
-
-        willAnswer(invocation -> {
-            ((Runnable) invocation.getArgument(0)).run();
-            return null;
-        }).given(executorService).submit(any(Runnable.class));
 
         willAnswer(invocation -> {
             ((Runnable) invocation.getArgument(0)).run();
@@ -138,7 +142,8 @@ public class LiteDownloadManagerTest {
 
     private void setupFileOperations() {
         given(fileOperations.fileDownloaderCreator()).willReturn(fileDownloaderCreator);
-        given(fileDownloaderCreator.create()).willReturn(fileDownloader);
+        given(fileOperations.metrics()).willReturn(metrics);
+        given(fileDownloaderCreator.create(any(DownloadMetricsRegistry.class), any(FileDownloadEvents.class))).willReturn(fileDownloader);
     }
 
     @Test
@@ -173,9 +178,33 @@ public class LiteDownloadManagerTest {
         verify(allStoredDownloadsSubmittedCallback).onAllDownloadsSubmitted();
     }
 
+    @Test
+    public void submitsAllStoredDownloads_whenRecoveringNetworkBeforeStoredDownloadsAreLoaded() {
+        liteDownloadManager.submitNetworkRecoverableDownloads(allStoredDownloadsSubmittedCallback);
+
+        verify(downloadsBatchPersistence).loadAsync(any(FileOperations.class), any(DownloadsBatchPersistence.LoadBatchesCallback.class));
+    }
+
+    @Test
+    public void resumesOnlyBatchesWaitingForNetwork_whenRecoveringNetworkAfterStoredDownloadsAreLoaded() {
+        liteDownloadManager.submitAllStoredDownloads(allStoredDownloadsSubmittedCallback);
+        reset(downloadsBatchPersistence, downloadManagerDownloader);
+        given(downloadBatch.status()).willReturn(anInternalDownloadsBatchStatus().withStatus(DownloadBatchStatus.Status.WAITING_FOR_NETWORK).build());
+        downloadingBatches.put(DOWNLOAD_BATCH_ID, downloadBatch);
+        given(downloadBatch.isWaitingForNetworkRecovery()).willReturn(true);
+        given(additionalDownloadBatch.isWaitingForNetworkRecovery()).willReturn(false);
+
+        liteDownloadManager.submitNetworkRecoverableDownloads(allStoredDownloadsSubmittedCallback);
+
+        verify(downloadsBatchPersistence, never()).loadAsync(any(FileOperations.class), any(DownloadsBatchPersistence.LoadBatchesCallback.class));
+        verify(downloadBatch).resume();
+        verify(downloadManagerDownloader).download(downloadBatch, downloadingBatches);
+        verify(downloadManagerDownloader, never()).download(additionalDownloadBatch, downloadingBatches);
+    }
+
     @Test
     public void downloadGivenBatch_whenBatchIsNotAlreadyBeingDownloaded() {
-        downloadingBatches.clear();
+        downloadingBatches.remove(DOWNLOAD_BATCH_ID);
 
         liteDownloadManager.download(BATCH);
 
@@ -269,31 +298,78 @@ public class LiteDownloadManagerTest {
         assertThat(downloadBatchCallbacks).doesNotContain(downloadBatchCallback);
     }
 
-    @Test(timeout = 500)
-    public void waitsForServiceToExist_whenGettingAllBatchStatuses() {
-        notifyLockOnAnotherThread();
+    @Test
+    public void addsExecutorCallbackToInternalMap() {
+        DownloadBatchStatusCallback executorDownloadBatchCallback = mock(DownloadBatchStatusCallback.class);
+
+        liteDownloadManager.addDownloadBatchCallback(executorDownloadBatchCallback, Runnable::run);
+
+        assertThat(executorDownloadBatchCallbacks).containsKey(executorDownloadBatchCallback);
+        assertThat(downloadBatchCallbacks).doesNotContain(executorDownloadBatchCallback);
+    }
+
+    @Test
+    public void registersSubscriptionWithDownloader_whenSubscribing() {
+        DownloadBatchStatusSubscriber subscriber = mock(DownloadBatchStatusSubscriber.class);
+
+        liteDownloadManager.subscribe(DOWNLOAD_BATCH_ID, subscriber, Runnable::run);
+
+        verify(downloadManagerDownloader).subscribe(any(ConflatingStatusSubscription.class));
+        verify(subscriber).onSubscribe(any(DownloadBatchStatusSubscription.class));
+    }
+
+    @Test
+    public void removesExecutorCallbackFromInternalMap() {
+        DownloadBatchStatusCallback executorDownloadBatchCallback = mock(DownloadBatchStatusCallback.class);
+        liteDownloadManager.addDownloadBatchCallback(executorDownloadBatchCallback, Runnable::run);
+
+        liteDownloadManager.removeDownloadBatchCallback(executorDownloadBatchCallback);
+
+        assertThat(executorDownloadBatchCallbacks).doesNotContainKey(executorDownloadBatchCallback);
+    }
+
+    @Test
+    public void getsStoredAndRegisteredBatchStatuses_whenStoredDownloadsAreNotLoaded() {
+        DownloadBatch storedDownloadBatch = aStoredDownloadBatch();
+        given(downloadsBatchPersistence.loadSync(fileOperations)).willReturn(Arrays.asList(storedDownloadBatch, downloadBatch));
+
+        List<DownloadBatchStatus> allDownloadBatchStatuses = liteDownloadManager.getAllDownloadBatchStatuses();
+
+        assertThat(allDownloadBatchStatuses).containsExactly(STORED_BATCH_STATUS, BATCH_STATUS, ADDITIONAL_BATCH_STATUS);
+        verifyZeroInteractions(downloadService);
+    }
+
+    @Test
+    public void getsStoredAndRegisteredBatchStatusesAsynchronously_whenStoredDownloadsAreNotLoaded() {
+        willAnswer(invocation -> {
+            DownloadsBatchPersistence.LoadBatchesCallback loadBatchesCallback = invocation.getArgument(1);
+            loadBatchesCallback.onLoaded(Collections.singletonList(aStoredDownloadBatch()));
+            return null;
+        }).given(downloadsBatchPersistence).loadAsync(any(FileOperations.class), any(DownloadsBatchPersistence.LoadBatchesCallback.class));
 
         liteDownloadManager.getAllDownloadBatchStatuses(allBatchStatusesCallback);
 
-        assertThat(downloadBatchStatuses).containsExactly(BATCH_STATUS, ADDITIONAL_BATCH_STATUS);
+        assertThat(downloadBatchStatuses).containsExactly(STORED_BATCH_STATUS, BATCH_STATUS, ADDITIONAL_BATCH_STATUS);
     }
 
     @Test
-    public void getsAllBatchStatuses_whenServiceAlreadyExists() {
-        liteDownloadManager.initialise(mock(DownloadService.class));
+    public void getsRegisteredBatchStatuses_whenStoredDownloadsAreLoaded() {
+        liteDownloadManager.submitAllStoredDownloads(allStoredDownloadsSubmittedCallback);
+        reset(downloadsBatchPersistence);
 
         liteDownloadManager.getAllDownloadBatchStatuses(allBatchStatusesCallback);
 
         assertThat(downloadBatchStatuses).containsExactly(BATCH_STATUS, ADDITIONAL_BATCH_STATUS);
+        verifyZeroInteractions(downloadsBatchPersistence);
     }
 
-    @Test(timeout = 500)
-    public void waitsForServiceToExist_whenGettingAllBatchStatusesWithSynchronousCall() {
-        notifyLockOnAnotherThread();
+    @Test
+    public void getsAllBatchStatuses_whenServiceAlreadyExists() {
+        liteDownloadManager.initialise(mock(DownloadService.class));
 
-        List<DownloadBatchStatus> allDownloadBatchStatuses = liteDownloadManager.getAllDownloadBatchStatuses();
+        liteDownloadManager.getAllDownloadBatchStatuses(allBatchStatusesCallback);
 
-        assertThat(allDownloadBatchStatuses).containsExactly(BATCH_STATUS, ADDITIONAL_BATCH_STATUS);
+        assertThat(downloadBatchStatuses).containsExactly(BATCH_STATUS, ADDITIONAL_BATCH_STATUS);
     }
 
     @Test
@@ -306,9 +382,7 @@ public class LiteDownloadManagerTest {
     }
 
     @Test(timeout = 500)
-    public void waitsForServiceToExist_whenGettingDownloadStatusWithMatchingId() {
-        notifyLockOnAnotherThread();
-
+    public void getsDownloadStatusMatchingId_whenServiceDoesNotExistYet() {
         liteDownloadManager.getDownloadFileStatusWithMatching(DOWNLOAD_BATCH_ID, DOWNLOAD_FILE_ID, downloadFileStatusCallback);
 
         assertThat(downloadFileStatus).isEqualTo(DOWNLOAD_FILE_STATUS);
@@ -323,13 +397,16 @@ public class LiteDownloadManagerTest {
         assertThat(downloadFileStatus).isEqualTo(DOWNLOAD_FILE_STATUS);
     }
 
-    @Test(timeout = 500)
-    public void waitsForServiceToExist_whenGettingDownloadStatusWithMatchingIdWithSynchronousCall() {
-        notifyLockOnAnotherThread();
+    @Test
+    public void getsDownloadStatusMatchingIdFromStoredBatch_whenBatchIsNotRegisteredYet() {
+        DownloadBatch storedDownloadBatch = aStoredDownloadBatch();
+        DownloadFileStatus storedFileStatus = mock(DownloadFileStatus.class);
+        given(storedDownloadBatch.downloadFileStatusWith(DOWNLOAD_FILE_ID)).willReturn(storedFileStatus);
+        given(downloadsBatchPersistence.loadSync(fileOperations)).willReturn(Collections.singletonList(storedDownloadBatch));
 
-        DownloadFileStatus fileStatus = liteDownloadManager.getDownloadFileStatusWithMatching(DOWNLOAD_BATCH_ID, DOWNLOAD_FILE_ID);
+        DownloadFileStatus fileStatus = liteDownloadManager.getDownloadFileStatusWithMatching(STORED_DOWNLOAD_BATCH_ID, DOWNLOAD_FILE_ID);
 
-        assertThat(fileStatus).isEqualTo(DOWNLOAD_FILE_STATUS);
+        assertThat(fileStatus).isEqualTo(storedFileStatus);
     }
 
     @Test
@@ -354,7 +431,7 @@ public class LiteDownloadManagerTest {
 
         liteDownloadManager.updateAllowedConnectionType(ANY_CONNECTION_TYPE);
 
-        for (DownloadBatch batch : downloadingBatches.values()) {
+        for (DownloadBatch batch : downloadingBatches.all()) {
             verify(batch).waitForNetwork();
         }
     }
@@ -364,19 +441,11 @@ public class LiteDownloadManagerTest {
         liteDownloadManager.updateAllowedConnectionType(null);
     }
 
-    private void notifyLockOnAnotherThread() {
-        Executors.newSingleThreadExecutor()
-                .submit(() -> {
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-
-                    synchronized (serviceLock) {
-                        serviceLock.notifyAll();
-                    }
-                });
+    private DownloadBatch aStoredDownloadBatch() {
+        DownloadBatch storedDownloadBatch = mock(DownloadBatch.class);
+        given(storedDownloadBatch.getId()).willReturn(STORED_DOWNLOAD_BATCH_ID);
+        given(storedDownloadBatch.status()).willReturn(STORED_BATCH_STATUS);
+        return storedDownloadBatch;
     }
 
 }
@@ -0,0 +1,65 @@
+package com.novoda.downloadmanager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class LiteDownloadsNetworkRecoveryEnabledTest {
+
+    private static final long RESCHEDULE_WINDOW_IN_MILLIS = 10000;
+
+    private final RecoveryJobScheduler recoveryJobScheduler = mock(RecoveryJobScheduler.class);
+
+    private long nowInMillis;
+    private LiteDownloadsNetworkRecoveryEnabled networkRecovery;
+
+    @Before
+    public void setUp() {
+        networkRecovery = new LiteDownloadsNetworkRecoveryEnabled(recoveryJobScheduler, ConnectionType.UNMETERED, () -> nowInMillis);
+        given(recoveryJobScheduler.hasScheduledJob()).willReturn(true);
+    }
+
+    @Test
+    public void skipsScheduling_whenScheduledWithinRescheduleWindow() {
+        networkRecovery.scheduleRecovery();
+        nowInMillis += RESCHEDULE_WINDOW_IN_MILLIS - 1;
+
+        networkRecovery.scheduleRecovery();
+
+        verify(recoveryJobScheduler, times(1)).schedule(ConnectionType.UNMETERED);
+    }
+
+    @Test
+    public void schedulesAgain_whenRescheduleWindowHasPassed() {
+        networkRecovery.scheduleRecovery();
+        nowInMillis += RESCHEDULE_WINDOW_IN_MILLIS;
+
+        networkRecovery.scheduleRecovery();
+
+        verify(recoveryJobScheduler, times(2)).schedule(ConnectionType.UNMETERED);
+    }
+
+    @Test
+    public void schedulesAgain_whenScheduledJobHasAlreadyRun() {
+        networkRecovery.scheduleRecovery();
+        given(recoveryJobScheduler.hasScheduledJob()).willReturn(false);
+
+        networkRecovery.scheduleRecovery();
+
+        verify(recoveryJobScheduler, times(2)).schedule(ConnectionType.UNMETERED);
+    }
+
+    @Test
+    public void schedulesAgain_whenAllowedConnectionTypeChanges() {
+        networkRecovery.scheduleRecovery();
+
+        networkRecovery.updateAllowedConnectionType(ConnectionType.METERED);
+        networkRecovery.scheduleRecovery();
+
+        verify(recoveryJobScheduler).schedule(ConnectionType.METERED);
+    }
+}
@@ -0,0 +1,81 @@
+package com.novoda.downloadmanager;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class LoggerTest {
+
+    private final LogHandle logHandle = mock(LogHandle.class);
+
+    @After
+    public void tearDown() {
+        Logger.detachAll();
+        Logger.setMinimumLevel(LogLevel.VERBOSE);
+        Logger.captureCallerLocation(false);
+    }
+
+    @Test
+    public void doesNotBuildMessage_whenNoHandleIsAttached() {
+        Logger.v(() -> {
+            throw new AssertionError("Message should not be built");
+        });
+    }
+
+    @Test
+    public void doesNotBuildMessage_whenLevelIsBelowMinimum() {
+        Logger.attach(logHandle);
+        Logger.setMinimumLevel(LogLevel.INFO);
+
+        Logger.d(() -> {
+            throw new AssertionError("Message should not be built");
+        });
+
+        verify(logHandle, never()).d(any(Object[].class));
+    }
+
+    @Test
+    public void passesBuiltMessage_whenLevelIsEnabled() {
+        Logger.attach(logHandle);
+        Logger.setMinimumLevel(LogLevel.WARN);
+
+        Logger.w(() -> "low on space");
+
+        List<Object> message = capturedWarning();
+        assertThat(message.get(1)).isEqualTo("low on space");
+    }
+
+    @Test
+    public void prefixesThreadNameOnly_whenCallerLocationIsNotCaptured() {
+        Logger.attach(logHandle);
+
+        Logger.w("low on space");
+
+        assertThat(capturedWarning().get(0)).isEqualTo("[" + Thread.currentThread().getName() + "] ");
+    }
+
+    @Test
+    public void prefixesCallerLocation_whenCaptured() {
+        Logger.attach(logHandle);
+        Logger.captureCallerLocation(true);
+
+        Logger.w("low on space");
+
+        assertThat((String) capturedWarning().get(0)).contains("(LoggerTest.java:");
+        assertThat((String) capturedWarning().get(0)).contains(".prefixesCallerLocation_whenCaptured]");
+    }
+
+    private List<Object> capturedWarning() {
+        ArgumentCaptor<Object> messageCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(logHandle).w(messageCaptor.capture());
+        return messageCaptor.getAllValues();
+    }
+}
@@ -2,17 +2,23 @@ package com.novoda.downloadmanager;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.mockito.InOrder;
 
 import static com.novoda.downloadmanager.InternalFileSizeFixtures.aFileSize;
 import static com.novoda.downloadmanager.NetworkResponseFixtures.aNetworkResponse;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 public class NetworkFileDownloaderTest {
@@ -27,16 +33,20 @@ public class NetworkFileDownloaderTest {
     private static final FileSize KNOWN_FILE_SIZE = aFileSize().withAreBytesDownloadedKnown(true).build();
     private static final FileSize UNKNOWN_FILE_SIZE = aFileSize().withAreBytesDownloadedKnown(false).build();
     private static final HttpClient.NetworkResponse INVALID_RESPONSE = aNetworkResponse().withCode(418).build();
+    private static final int MAX_RETRIES = 2;
+    private static final DownloadRetryPolicy NO_DELAY_RETRY_POLICY = new DownloadRetryPolicy(MAX_RETRIES, 0, 0, new Random());
 
     private final FileDownloader.Callback callback = mock(FileDownloader.Callback.class);
     private final HttpClient httpClient = mock(HttpClient.class);
     private final NetworkRequestCreator requestCreator = new NetworkRequestCreator();
+    private final DownloadMetricsRegistry metrics = mock(DownloadMetricsRegistry.class);
+    private final FileDownloadEvents events = mock(FileDownloadEvents.class);
 
     private NetworkFileDownloader networkFileDownloader;
 
     @Before
     public void setUp() {
-        networkFileDownloader = new NetworkFileDownloader(httpClient, requestCreator);
+        networkFileDownloader = new NetworkFileDownloader(httpClient, requestCreator, NO_DELAY_RETRY_POLICY, metrics, events);
     }
 
     @Test
@@ -71,6 +81,26 @@ public class NetworkFileDownloaderTest {
         verify(callback).onError(expectedCause);
     }
 
+    @Test
+    public void reportsConnectionAndHeaders_whenResponseIsReceived() throws IOException {
+        given(httpClient.execute(requestCreator.createDownloadRequest(ANY_RAW_URL))).willReturn(INVALID_RESPONSE);
+
+        networkFileDownloader.startDownloading(ANY_RAW_URL, UNKNOWN_FILE_SIZE, callback);
+
+        InOrder inOrder = inOrder(events);
+        inOrder.verify(events).connectionAcquired();
+        inOrder.verify(events).headersReceived(418);
+    }
+
+    @Test
+    public void doesNotReportConnection_whenRequestExecutionFails() throws IOException {
+        given(httpClient.execute(requestCreator.createDownloadRequest(ANY_RAW_URL))).willThrow(IOException.class);
+
+        networkFileDownloader.startDownloading(ANY_RAW_URL, UNKNOWN_FILE_SIZE, callback);
+
+        verify(events, never()).connectionAcquired();
+    }
+
     @Test
     public void emitsDownloadFinished_whenResponseCodeIsInvalid() throws IOException {
         given(httpClient.execute(requestCreator.createDownloadRequest(ANY_RAW_URL))).willReturn(INVALID_RESPONSE);
@@ -100,6 +130,69 @@ public class NetworkFileDownloaderTest {
         verify(callback).onDownloadFinished();
     }
 
+    @Test
+    public void resumesFromLastByteRead_whenStreamFailsMidDownload() throws IOException {
+        HttpClient.NetworkResponse failingResponse = aNetworkResponse().withInputStream(new FailingInputStream(BYTES_TO_RECEIVE)).build();
+        HttpClient.NetworkResponse partialResponse = aNetworkResponse()
+                .withCode(206)
+                .withInputStream(new ByteArrayInputStream(BYTES_TO_RECEIVE))
+                .build();
+        given(httpClient.execute(requestCreator.createDownloadRequest(ANY_RAW_URL))).willReturn(failingResponse);
+        NetworkRequest resumeRequest = requestCreator.createDownloadRequestWithDownloadedBytesHeader(
+                ANY_RAW_URL,
+                BYTES_TO_RECEIVE.length,
+                UNKNOWN_FILE_SIZE.totalSize()
+        );
+        given(httpClient.execute(resumeRequest)).willReturn(partialResponse);
+
+        networkFileDownloader.startDownloading(ANY_RAW_URL, UNKNOWN_FILE_SIZE, callback);
+
+        verify(httpClient).execute(resumeRequest);
+        verify(callback, never()).onError(MESSAGE);
+        verify(callback).onDownloadFinished();
+    }
+
+    @Test
+    public void emitsErrorOnce_whenRetriesAreExhausted() throws IOException {
+        IOException ioException = mock(IOException.class);
+        given(ioException.getMessage()).willReturn(MESSAGE);
+        given(httpClient.execute(requestCreator.createDownloadRequest(ANY_RAW_URL))).willThrow(ioException);
+
+        networkFileDownloader.startDownloading(ANY_RAW_URL, UNKNOWN_FILE_SIZE, callback);
+
+        verify(httpClient, times(MAX_RETRIES + 1)).execute(requestCreator.createDownloadRequest(ANY_RAW_URL));
+        verify(callback).onError(MESSAGE);
+    }
+
+    @Test
+    public void emitsError_whenServerIgnoresRangeOnRetry() throws IOException {
+        HttpClient.NetworkResponse failingResponse = aNetworkResponse().withInputStream(new FailingInputStream(BYTES_TO_RECEIVE)).build();
+        given(httpClient.execute(requestCreator.createDownloadRequest(ANY_RAW_URL))).willReturn(failingResponse);
+        NetworkRequest resumeRequest = requestCreator.createDownloadRequestWithDownloadedBytesHeader(
+                ANY_RAW_URL,
+                BYTES_TO_RECEIVE.length,
+                UNKNOWN_FILE_SIZE.totalSize()
+        );
+        given(httpClient.execute(resumeRequest)).willReturn(aNetworkResponse().build());
+
+        networkFileDownloader.startDownloading(ANY_RAW_URL, UNKNOWN_FILE_SIZE, callback);
+
+        verify(httpClient, times(1)).execute(resumeRequest);
+        verify(callback).onError("Request: http://example.com ignored the Range header, cannot resume in place.");
+    }
+
+    @Test
+    public void cancelsInFlightResponseWithoutError_whenStoppingDownload() throws IOException {
+        HttpClient.NetworkResponse response = spy(aNetworkResponse().withInputStream(new StoppingInputStream()).build());
+        given(httpClient.execute(requestCreator.createDownloadRequest(ANY_RAW_URL))).willReturn(response);
+
+        networkFileDownloader.startDownloading(ANY_RAW_URL, UNKNOWN_FILE_SIZE, callback);
+
+        verify(response).cancel();
+        verify(callback, never()).onError(anyString());
+        verify(callback).onDownloadFinished();
+    }
+
     @Ignore // How can we test the `canDownload` flag?
     @Test
     public void stopsEmittingBytes_whenStoppingDownload() {
@@ -109,4 +202,31 @@ public class NetworkFileDownloaderTest {
 
         verify(callback, never()).onBytesRead(new byte[10], 0);
     }
+
+    private static class FailingInputStream extends InputStream {
+
+        private final InputStream bytes;
+
+        FailingInputStream(byte[] bytes) {
+            this.bytes = new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = bytes.read();
+            if (read == -1) {
+                throw new IOException(MESSAGE);
+            }
+            return read;
+        }
+    }
+
+    private class StoppingInputStream extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            networkFileDownloader.stopDownloading();
+            throw new IOException("Canceled");
+        }
+    }
 }
@@ -0,0 +1,78 @@
+package com.novoda.downloadmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.novoda.downloadmanager.DownloadBatchIdFixtures.aDownloadBatchId;
+import static com.novoda.downloadmanager.InternalDownloadBatchStatusFixtures.anInternalDownloadsBatchStatus;
+
+public class PendingStatusesTest {
+
+    private static final DownloadBatchId BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("batch_01").build();
+    private static final DownloadBatchId OTHER_BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("batch_02").build();
+
+    private final PendingStatuses pendingStatuses = new PendingStatuses();
+    private final List<DownloadBatchStatus> deliveredStatuses = new ArrayList<>();
+
+    @Test
+    public void deliversLatestStatusOfEachBatch_inOrderOfFirstReport() {
+        DownloadBatchStatus latestStatus = aStatus(BATCH_ID, 30);
+        DownloadBatchStatus otherStatus = aStatus(OTHER_BATCH_ID, 20);
+        pendingStatuses.put(aStatus(BATCH_ID, 10));
+        pendingStatuses.put(otherStatus);
+        pendingStatuses.put(latestStatus);
+
+        drain();
+
+        assertThat(deliveredStatuses).containsExactly(latestStatus, otherStatus).inOrder();
+    }
+
+    @Test
+    public void isEmpty_whenPendingStatusesHaveMovedToDraining() {
+        pendingStatuses.put(aStatus(BATCH_ID, 10));
+
+        pendingStatuses.moveToDraining();
+
+        assertThat(pendingStatuses.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void keepsStatusForNextDrain_whenPutWhileDraining() {
+        DownloadBatchStatus nextStatus = aStatus(BATCH_ID, 20);
+        pendingStatuses.put(aStatus(BATCH_ID, 10));
+        pendingStatuses.moveToDraining();
+
+        pendingStatuses.put(nextStatus);
+        pendingStatuses.deliverDraining(deliveredStatuses::add);
+        deliveredStatuses.clear();
+        drain();
+
+        assertThat(deliveredStatuses).containsExactly(nextStatus);
+    }
+
+    @Test
+    public void deliversNothing_whenNoStatusWasPutSinceLastDrain() {
+        pendingStatuses.put(aStatus(BATCH_ID, 10));
+        drain();
+        deliveredStatuses.clear();
+
+        drain();
+
+        assertThat(deliveredStatuses).isEmpty();
+    }
+
+    private void drain() {
+        pendingStatuses.moveToDraining();
+        pendingStatuses.deliverDraining(deliveredStatuses::add);
+    }
+
+    private static DownloadBatchStatus aStatus(DownloadBatchId downloadBatchId, int percentageDownloaded) {
+        return anInternalDownloadsBatchStatus()
+                .withDownloadBatchId(downloadBatchId)
+                .withPercentageDownloaded(percentageDownloaded)
+                .build();
+    }
+}
@@ -0,0 +1,198 @@
+package com.novoda.downloadmanager;
+
+import android.os.Handler;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.objenesis.ObjenesisStd;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.novoda.downloadmanager.InternalDownloadBatchStatusFixtures.anInternalDownloadsBatchStatus;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Drives progress from a file download through the real {@link DownloadBatch}, its progress throttle and the batch
+ * callback of {@link LiteDownloadManagerDownloader}, up to the status deliveries that hand over to other threads.
+ */
+public class ProgressNotificationAllocationTest {
+
+    private static final long TOTAL_BYTES = 10_000_000;
+    private static final int CHUNK_BYTES = 4096;
+    private static final int CHUNKS_PER_FRAME = 100;
+    private static final int WARM_UP_FRAMES = 400;
+    private static final int MEASURED_FRAMES = 20;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final long ALLOCATION_TOLERANCE_BYTES = 256;
+
+    private final ExecutorService executor = mock(ExecutorService.class);
+    private final PostRecordingHandler callbackHandler = new ObjenesisStd().newInstance(PostRecordingHandler.class);
+    private final FileOperations fileOperations = mock(FileOperations.class);
+    private final DownloadsBatchPersistence downloadsBatchPersistence = mock(DownloadsBatchPersistence.class);
+    private final ConnectionChecker connectionChecker = mock(ConnectionChecker.class);
+    private final DownloadService downloadService = mock(DownloadService.class);
+    private final DownloadFile downloadFile = mock(DownloadFile.class);
+    private final Queue<Runnable> notificationTasks = new ArrayDeque<>();
+    private final Executor notificationExecutor = notificationTasks::add;
+    private final DownloadBatchRegistry downloadBatchRegistry = new DownloadBatchRegistry();
+
+    private final InternalFileSize fileSize = new LiteFileSize(0, TOTAL_BYTES);
+    private final InternalDownloadFileStatus downloadFileStatus = DownloadFileStatusFixtures.aDownloadFileStatus()
+            .withStatus(InternalDownloadFileStatus.Status.DOWNLOADING)
+            .withFileSize(fileSize)
+            .build();
+    private final DownloadBatch downloadBatch = new DownloadBatch(
+            anInternalDownloadsBatchStatus().withBytesDownloaded(0).withBytesTotalSize(0).withPercentageDownloaded(0).build(),
+            Collections.singletonList(downloadFile),
+            new BatchBytesDownloaded(1),
+            downloadsBatchPersistence,
+            new FileCallbackThrottleByProgressIncrease(),
+            connectionChecker
+    );
+
+    private long measuredAllocatedBytes = -1;
+    private long measuredDeliveries;
+
+    @Before
+    public void setUp() {
+        willAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).given(executor).submit(any(Runnable.class));
+        given(fileOperations.eventListener()).willReturn(DownloadEventListener.NONE);
+        given(connectionChecker.isAllowedToDownload()).willReturn(true);
+        given(downloadFile.getTotalSize()).willReturn(TOTAL_BYTES);
+        willAnswer(invocation -> {
+            measureProgress(invocation.getArgument(0));
+            return null;
+        }).given(downloadFile).download(any(DownloadFile.Callback.class));
+    }
+
+    @Test
+    public void doesNotAllocate_whenEmittingProgress() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        downloadBatch.setCallback(batchCallbackOf(aDownloader()));
+
+        downloadBatch.download();
+
+        assertThat(measuredDeliveries).isGreaterThan(0L);
+        assertThat(measuredAllocatedBytes).isAtMost(ALLOCATION_TOLERANCE_BYTES);
+    }
+
+    private LiteDownloadManagerDownloader aDownloader() {
+        return new LiteDownloadManagerDownloader(
+                new Object(),
+                new Object(),
+                executor,
+                callbackHandler,
+                fileOperations,
+                downloadsBatchPersistence,
+                mock(DownloadsFilePersistence.class),
+                mock(DownloadBatchStatusNotificationDispatcher.class),
+                notificationExecutor,
+                connectionChecker,
+                new CopyOnWriteArraySet<>(),
+                new HashMap<>(),
+                CallbackThrottleCreator.byProgressIncrease(),
+                new DownloadBatchStatusFilter()
+        );
+    }
+
+    private DownloadBatchStatusCallback batchCallbackOf(LiteDownloadManagerDownloader downloader) {
+        downloader.setDownloadService(downloadService);
+        downloader.download(downloadBatch, downloadBatchRegistry);
+
+        ArgumentCaptor<DownloadBatchStatusCallback> callbackCaptor = ArgumentCaptor.forClass(DownloadBatchStatusCallback.class);
+        verify(downloadService).download(eq(downloadBatch), callbackCaptor.capture());
+        return callbackCaptor.getValue();
+    }
+
+    /**
+     * Only the progress ticks are measured, the drains in between run on the handler and notification threads
+     * in production. The quietest of several rounds is kept, since a round can catch the JIT recompiling the path,
+     * whereas anything allocated per progress tick shows up in every round.
+     */
+    private void measureProgress(DownloadFile.Callback fileCallback) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        for (int frame = 0; frame < WARM_UP_FRAMES; frame++) {
+            emitProgress(fileCallback, CHUNKS_PER_FRAME);
+            deliverPendingStatuses();
+        }
+        long versionBeforeMeasuring = downloadBatchRegistry.changesSince(0).version();
+        long measurementOverhead = allocatedBytesOfEmptyMeasurement(threadMXBean, threadId);
+        int postsBeforeMeasuring = callbackHandler.posts;
+
+        measuredAllocatedBytes = Long.MAX_VALUE;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            long allocatedBytes = 0;
+            for (int frame = 0; frame < MEASURED_FRAMES; frame++) {
+                long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+                emitProgress(fileCallback, CHUNKS_PER_FRAME);
+                allocatedBytes += threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore - measurementOverhead;
+                deliverPendingStatuses();
+            }
+            measuredAllocatedBytes = Math.min(measuredAllocatedBytes, allocatedBytes);
+        }
+        int measuredPosts = callbackHandler.posts - postsBeforeMeasuring;
+        measuredDeliveries = downloadBatchRegistry.changesSince(0).version() - versionBeforeMeasuring;
+        assertThat(measuredPosts).isEqualTo(MEASURED_ROUNDS * MEASURED_FRAMES);
+    }
+
+    private void emitProgress(DownloadFile.Callback fileCallback, int chunks) {
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            fileSize.setCurrentSize((fileSize.currentSize() + CHUNK_BYTES) % (TOTAL_BYTES - CHUNK_BYTES));
+            fileCallback.onUpdate(downloadFileStatus);
+        }
+    }
+
+    private void deliverPendingStatuses() {
+        Runnable drain = callbackHandler.postedDrain;
+        callbackHandler.postedDrain = null;
+        if (drain != null) {
+            drain.run();
+        }
+
+        Runnable notificationTask;
+        while ((notificationTask = notificationTasks.poll()) != null) {
+            notificationTask.run();
+        }
+    }
+
+    private static long allocatedBytesOfEmptyMeasurement(com.sun.management.ThreadMXBean threadMXBean, long threadId) {
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        return threadMXBean.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    /**
+     * Created without running the Android constructor, so that posting records the drain without allocating.
+     */
+    public static class PostRecordingHandler extends Handler {
+
+        private Runnable postedDrain;
+        private int posts;
+
+        @Override
+        public boolean postDelayed(Runnable runnable, long delayMillis) {
+            postedDrain = runnable;
+            posts++;
+            return true;
+        }
+    }
+}
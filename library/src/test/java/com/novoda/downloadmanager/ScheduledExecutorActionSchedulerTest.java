@@ -0,0 +1,129 @@
+package com.novoda.downloadmanager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.*;
+
+public class ScheduledExecutorActionSchedulerTest {
+
+    private static final long FREQUENCY = 100;
+
+    private final ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+    private final Map<ActionScheduler.Action, ScheduledFuture<?>> scheduledActions = new HashMap<>();
+    private final ActionScheduler.Action anyAction = mock(ActionScheduler.Action.class);
+    private final ScheduledFuture<?> scheduledFuture = mock(ScheduledFuture.class);
+    private Runnable scheduledRunnable;
+
+    private ScheduledExecutorActionScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new ScheduledExecutorActionScheduler(executor, FREQUENCY, scheduledActions);
+
+        final ArgumentCaptor<Runnable> argumentCaptor = ArgumentCaptor.forClass(Runnable.class);
+        willAnswer(invocation -> {
+            scheduledRunnable = argumentCaptor.getValue();
+            return scheduledFuture;
+        }).given(executor).scheduleAtFixedRate(argumentCaptor.capture(), eq(0L), eq(FREQUENCY), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void executesAction_whenSchedulingAction() {
+        scheduler.schedule(anyAction);
+
+        scheduledRunnable.run();
+
+        verify(anyAction).perform();
+    }
+
+    @Test
+    public void recordsAction_whenSchedulingAction() {
+        scheduler.schedule(anyAction);
+
+        assertThat(scheduledActions).containsEntry(anyAction, scheduledFuture);
+    }
+
+    @Test
+    public void doesNothing_whenActionAlreadyScheduled() {
+        givenScheduledAction();
+
+        scheduler.schedule(anyAction);
+
+        verifyZeroInteractions(executor);
+    }
+
+    @Test
+    public void cancelsScheduledAction_whenCancellingSpecificAction() {
+        givenScheduledAction();
+
+        scheduler.cancel(anyAction);
+
+        verify(scheduledFuture).cancel(false);
+    }
+
+    @Test
+    public void removesOnlySpecificAction_whenCancellingSpecificAction() {
+        ActionScheduler.Action additionalAction = mock(ActionScheduler.Action.class);
+        ScheduledFuture<?> additionalFuture = mock(ScheduledFuture.class);
+        scheduledActions.put(anyAction, scheduledFuture);
+        scheduledActions.put(additionalAction, additionalFuture);
+
+        scheduler.cancel(anyAction);
+
+        assertThat(scheduledActions).doesNotContainKey(anyAction);
+        assertThat(scheduledActions).containsEntry(additionalAction, additionalFuture);
+        verify(additionalFuture, never()).cancel(any(Boolean.class));
+    }
+
+    @Test
+    public void cancelsScheduledActions_whenCancellingAll() {
+        givenScheduledAction();
+
+        scheduler.cancelAll();
+
+        verify(scheduledFuture).cancel(false);
+    }
+
+    @Test
+    public void clearsAllActions_whenCancellingAll() {
+        givenScheduledAction();
+
+        scheduler.cancelAll();
+
+        assertThat(scheduledActions).isEmpty();
+    }
+
+    @Test
+    public void returnsTrue_whenActionIsScheduled() {
+        givenScheduledAction();
+
+        boolean scheduled = scheduler.isScheduled(anyAction);
+
+        assertThat(scheduled).isTrue();
+    }
+
+    @Test
+    public void returnsFalse_whenActionIsNotScheduled() {
+        boolean scheduled = scheduler.isScheduled(anyAction);
+
+        assertThat(scheduled).isFalse();
+    }
+
+    private void givenScheduledAction() {
+        scheduler.schedule(anyAction);
+        clearInvocations(executor);
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.novoda.downloadmanager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static com.novoda.downloadmanager.DownloadBatchIdFixtures.aDownloadBatchId;
+import static com.novoda.downloadmanager.InternalDownloadBatchStatusFixtures.anInternalDownloadsBatchStatus;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class SummaryNotificationDispatcherTest {
+
+    private static final DownloadBatchId BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("batch_01").build();
+    private static final DownloadBatchId ANOTHER_BATCH_ID = aDownloadBatchId().withRawDownloadBatchId("batch_02").build();
+    private static final long ONE_SECOND_IN_MILLIS = 1000;
+
+    private final NotificationDispatcher<DownloadBatchesSummary> summaryDispatcher = mock(NotificationDispatcher.class);
+    private final ActionScheduler scheduler = mock(ActionScheduler.class);
+    private final ArgumentCaptor<ActionScheduler.Action> scheduledAction = ArgumentCaptor.forClass(ActionScheduler.Action.class);
+
+    private SummaryNotificationDispatcher summaryNotificationDispatcher;
+    private long nowInMillis;
+
+    @Before
+    public void setUp() {
+        summaryNotificationDispatcher = new SummaryNotificationDispatcher(summaryDispatcher, Runnable::run, scheduler, () -> nowInMillis);
+    }
+
+    @Test
+    public void rendersCombinedProgressOfActiveBatches() {
+        summaryNotificationDispatcher.updateNotification(aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 100));
+        summaryNotificationDispatcher.updateNotification(aStatus(ANOTHER_BATCH_ID, DownloadBatchStatus.Status.QUEUED, 300));
+
+        tick();
+
+        verify(summaryDispatcher).updateNotification(new LiteDownloadBatchesSummary(2, 400, 2000, 0));
+    }
+
+    @Test
+    public void rendersBytesPerSecond_sinceThePreviousSummary() {
+        summaryNotificationDispatcher.updateNotification(aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 100));
+        tick();
+        given(scheduler.isScheduled(any(ActionScheduler.Action.class))).willReturn(true);
+        nowInMillis += ONE_SECOND_IN_MILLIS;
+
+        summaryNotificationDispatcher.updateNotification(aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 350));
+        tick();
+
+        verify(summaryDispatcher).updateNotification(new LiteDownloadBatchesSummary(1, 350, 1000, 250));
+    }
+
+    @Test
+    public void rendersBytesPerSecond_whenTheSameLiveStatusIsUpdated() {
+        DownloadBatchStatus liveStatus = mock(DownloadBatchStatus.class);
+        given(liveStatus.getDownloadBatchId()).willReturn(BATCH_ID);
+        given(liveStatus.status()).willReturn(DownloadBatchStatus.Status.DOWNLOADING);
+        given(liveStatus.bytesTotalSize()).willReturn(1000L);
+        given(liveStatus.bytesDownloaded()).willReturn(100L);
+        summaryNotificationDispatcher.updateNotification(liveStatus);
+        tick();
+        given(scheduler.isScheduled(any(ActionScheduler.Action.class))).willReturn(true);
+        nowInMillis += ONE_SECOND_IN_MILLIS;
+
+        given(liveStatus.bytesDownloaded()).willReturn(350L);
+        summaryNotificationDispatcher.updateNotification(liveStatus);
+        tick();
+
+        verify(summaryDispatcher).updateNotification(new LiteDownloadBatchesSummary(1, 350, 1000, 250));
+    }
+
+    @Test
+    public void schedulesSingleTick_forManyUpdates() {
+        summaryNotificationDispatcher.updateNotification(aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 100));
+        given(scheduler.isScheduled(any(ActionScheduler.Action.class))).willReturn(true);
+
+        summaryNotificationDispatcher.updateNotification(aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 200));
+        summaryNotificationDispatcher.updateNotification(aStatus(ANOTHER_BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 200));
+
+        verify(scheduler, times(1)).schedule(any(ActionScheduler.Action.class));
+        verify(summaryDispatcher, never()).updateNotification(any(DownloadBatchesSummary.class));
+    }
+
+    @Test
+    public void doesNotRender_whenNothingChangedSinceThePreviousSummary() {
+        summaryNotificationDispatcher.updateNotification(aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 100));
+        tick();
+
+        tick();
+
+        verify(summaryDispatcher, times(1)).updateNotification(any(DownloadBatchesSummary.class));
+    }
+
+    @Test
+    public void rendersEmptySummaryAndStopsTicking_whenLastBatchStops() {
+        summaryNotificationDispatcher.updateNotification(aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADING, 100));
+        tick();
+
+        summaryNotificationDispatcher.updateNotification(aStatus(BATCH_ID, DownloadBatchStatus.Status.DOWNLOADED, 1000));
+        tick();
+
+        verify(summaryDispatcher).updateNotification(new LiteDownloadBatchesSummary(0, 0, 0, 0));
+        verify(scheduler).cancel(scheduledAction.getValue());
+    }
+
+    @Test
+    public void ignoresBatches_thatWereNeverActive() {
+        summaryNotificationDispatcher.updateNotification(aStatus(BATCH_ID, DownloadBatchStatus.Status.PAUSED, 100));
+
+        verify(scheduler, never()).schedule(any(ActionScheduler.Action.class));
+    }
+
+    private void tick() {
+        verify(scheduler, atLeastOnce()).schedule(scheduledAction.capture());
+        scheduledAction.getValue().perform();
+    }
+
+    private InternalDownloadBatchStatus aStatus(DownloadBatchId downloadBatchId, DownloadBatchStatus.Status status, long bytesDownloaded) {
+        return anInternalDownloadsBatchStatus()
+                .withDownloadBatchId(downloadBatchId)
+                .withStatus(status)
+                .withBytesDownloaded(bytesDownloaded)
+                .withBytesTotalSize(1000)
+                .build();
+    }
+}